@@ -0,0 +1,222 @@
+package com.github.dgdevel.core.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Streams method calls from NDJSON or CSV input and writes one compact JSON result per call to the
+ * output, in input order. Calls are grouped into chunks of {@code batchSize}; up to
+ * {@code maxInFlight} chunks are outstanding at any time.
+ */
+public class BatchRunner {
+    private static final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    public interface Transport {
+        CompletableFuture<List<Object>> send(List<Call> calls);
+    }
+
+    public static final class Call {
+        public final long line;
+        public final String method;
+        public final Object[] params;
+        /** True when the params came from CSV and are still plain strings. */
+        public final boolean stringParams;
+
+        public Call(long line, String method, Object[] params, boolean stringParams) {
+            this.line = line;
+            this.method = method;
+            this.params = params;
+            this.stringParams = stringParams;
+        }
+    }
+
+    private final Transport transport;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    public BatchRunner(Transport transport, int batchSize, int maxInFlight) {
+        if (batchSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Batch size and concurrency must be positive");
+        }
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static BufferedReader open(String source) throws IOException {
+        if ("-".equals(source)) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs every call read from {@code in} and returns the number of calls that produced an error.
+     */
+    public int run(BufferedReader in, PrintStream out) throws IOException {
+        Deque<Chunk> window = new ArrayDeque<>();
+        List<Call> pending = new ArrayList<>(batchSize);
+        int failures = 0;
+        long lineNumber = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            Call call;
+            try {
+                call = parseLine(trimmed, lineNumber);
+            } catch (Exception e) {
+                if (!pending.isEmpty()) {
+                    window.add(new Chunk(pending, transport.send(pending)));
+                    pending = new ArrayList<>(batchSize);
+                }
+                window.add(new Chunk(List.of(new Call(lineNumber, null, null, false)),
+                    CompletableFuture.failedFuture(new IllegalArgumentException("Parse error: " + e.getMessage()))));
+                continue;
+            }
+            pending.add(call);
+            if (pending.size() >= batchSize) {
+                window.add(new Chunk(pending, transport.send(pending)));
+                pending = new ArrayList<>(batchSize);
+            }
+            while (window.size() >= maxInFlight) {
+                failures += drain(window.poll(), out);
+            }
+        }
+        if (!pending.isEmpty()) {
+            window.add(new Chunk(pending, transport.send(pending)));
+        }
+        while (!window.isEmpty()) {
+            failures += drain(window.poll(), out);
+        }
+        out.flush();
+        return failures;
+    }
+
+    private int drain(Chunk chunk, PrintStream out) {
+        List<Object> results;
+        try {
+            results = chunk.results.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            int failures = 0;
+            for (Call call : chunk.calls) {
+                failures += print(out, error(call.line, cause.getMessage()));
+            }
+            return failures;
+        }
+        int failures = 0;
+        for (Object result : results) {
+            failures += print(out, result);
+        }
+        return failures;
+    }
+
+    private static int print(PrintStream out, Object result) {
+        try {
+            out.println(objectMapper.writeValueAsString(result));
+        } catch (IOException e) {
+            out.println("{\"error\":\"Unserializable result\"}");
+            return 1;
+        }
+        return result instanceof Map && ((Map<?, ?>) result).get("error") != null ? 1 : 0;
+    }
+
+    private static Map<String, Object> error(long line, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", message);
+        error.put("id", line);
+        return error;
+    }
+
+    /**
+     * Parses one input line: a JSON object with {@code method} and optional {@code params}, or a CSV
+     * record whose first field is the method and the rest are string parameters.
+     */
+    static Call parseLine(String line, long lineNumber) throws IOException {
+        if (line.startsWith("{")) {
+            Map<?, ?> object = objectMapper.readValue(line, Map.class);
+            Object method = object.get("method");
+            if (!(method instanceof String)) {
+                throw new IllegalArgumentException("missing method");
+            }
+            Object params = object.get("params");
+            Object[] paramsArray;
+            if (params == null) {
+                paramsArray = new Object[0];
+            } else if (params instanceof List) {
+                paramsArray = ((List<?>) params).toArray();
+            } else {
+                throw new IllegalArgumentException("params must be an array");
+            }
+            return new Call(lineNumber, (String) method, paramsArray, false);
+        }
+        List<String> fields = splitCsv(line);
+        String[] params = fields.subList(1, fields.size()).toArray(new String[0]);
+        return new Call(lineNumber, fields.get(0), params, true);
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static final class Chunk {
+        final List<Call> calls;
+        final CompletableFuture<List<Object>> results;
+
+        Chunk(List<Call> calls, CompletableFuture<List<Object>> results) {
+            this.calls = calls;
+            this.results = results;
+        }
+    }
+}
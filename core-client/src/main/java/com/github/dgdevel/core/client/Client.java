@@ -5,39 +5,77 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.io.IOException;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class Client {
     private static final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
         .disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
+    private final String serverUrl;
+    private final HttpClient httpClient;
+    private final Path schemaCacheFile;
+    private Schema schema;
+    private String schemaEtag;
+
+    public Client(String serverUrl) {
+        this(serverUrl, defaultSchemaCacheDir());
+    }
+
+    public Client(String serverUrl, Path schemaCacheDir) {
+        this.serverUrl = serverUrl;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        this.schemaCacheFile = schemaCacheDir != null
+            ? schemaCacheDir.resolve(serverUrl.replaceAll("[^A-Za-z0-9]", "_") + ".json")
+            : null;
+    }
+
     public static void main(String[] args) {
         if (args.length == 0) {
             System.err.println("Usage: java -jar core-client-1.0.0.jar [--server <server-url>] <method-name> [param1] [param2] [...]");
+            System.err.println("       java -jar core-client-1.0.0.jar [--server <server-url>] --batch <file|-> [--batch-size <n>] [--concurrency <n>]");
             System.err.println("  --server <url>: Server URL (default: http://localhost:8080)");
             System.err.println("  method-name: JSON-RPC method to invoke (or 'schema' to list all methods)");
             System.err.println("  param1, param2, ...: Method parameters (as strings)");
+            System.err.println("  --batch <file|->: Read NDJSON or CSV calls from a file or stdin, one per line");
+            System.err.println("  --batch-size <n>: Calls per JSON-RPC batch request (default: 50)");
+            System.err.println("  --concurrency <n>: Batch requests in flight at once (default: 1)");
             System.err.println("");
             System.err.println("Examples:");
             System.err.println("  java -jar core-client-1.0.0.jar generic/ping");
             System.err.println("  java -jar core-client-1.0.0.jar generic/setConfigValue app theme dark");
             System.err.println("  java -jar core-client-1.0.0.jar --server http://example.com:9090 generic/ping");
             System.err.println("  java -jar core-client-1.0.0.jar schema");
+            System.err.println("  java -jar core-client-1.0.0.jar --batch changes.csv --batch-size 200");
             System.exit(1);
         }
 
         try {
             String serverUrl = "http://localhost:8080";
             String method = null;
+            String batchSource = null;
+            int batchSize = 50;
+            int concurrency = 1;
             List<String> paramList = new ArrayList<>();
             int i = 0;
 
@@ -49,6 +87,27 @@ public class Client {
                     }
                     serverUrl = args[i + 1];
                     i += 2;
+                } else if (method == null && "--batch".equals(args[i])) {
+                    if (i + 1 >= args.length) {
+                        System.err.println("Error: --batch flag requires a file argument (or - for stdin)");
+                        System.exit(1);
+                    }
+                    batchSource = args[i + 1];
+                    i += 2;
+                } else if (method == null && "--batch-size".equals(args[i])) {
+                    if (i + 1 >= args.length) {
+                        System.err.println("Error: --batch-size flag requires a number argument");
+                        System.exit(1);
+                    }
+                    batchSize = Integer.parseInt(args[i + 1]);
+                    i += 2;
+                } else if (method == null && "--concurrency".equals(args[i])) {
+                    if (i + 1 >= args.length) {
+                        System.err.println("Error: --concurrency flag requires a number argument");
+                        System.exit(1);
+                    }
+                    concurrency = Integer.parseInt(args[i + 1]);
+                    i += 2;
                 } else {
                     if (method == null) {
                         method = args[i];
@@ -59,22 +118,40 @@ public class Client {
                 }
             }
 
+            if (batchSource != null) {
+                if (method != null) {
+                    System.err.println("Error: --batch cannot be combined with a method name");
+                    System.exit(1);
+                }
+                Client client = new Client(serverUrl);
+                BatchRunner runner = new BatchRunner(client::callBatch, batchSize, concurrency);
+                int failures;
+                try (java.io.BufferedReader in = BatchRunner.open(batchSource)) {
+                    failures = runner.run(in, System.out);
+                }
+                if (failures > 0) {
+                    System.err.println("Batch finished with " + failures + " failed call(s)");
+                    System.exit(2);
+                }
+                return;
+            }
+
             if (method == null) {
                 System.err.println("Error: Method name is required");
                 System.err.println("Use 'schema' to list available methods");
                 System.exit(1);
             }
 
+            Client client = new Client(serverUrl);
+
             if ("schema".equalsIgnoreCase(method)) {
-                displaySchema(serverUrl);
+                displaySchema(client.refreshSchema());
                 return;
             }
 
             String[] paramStrings = paramList.toArray(new String[0]);
 
-            String schemaJson = fetchSchema(serverUrl);
-            Schema schema = objectMapper.readValue(schemaJson, Schema.class);
-            MethodDescriptor methodDescriptor = findMethod(schema, method);
+            MethodDescriptor methodDescriptor = client.describe(method);
 
             if (methodDescriptor == null) {
                 System.err.println("Error: Method '" + method + "' not found in schema");
@@ -82,12 +159,7 @@ public class Client {
                 System.exit(1);
             }
 
-            Object[] params = convertParams(paramStrings, methodDescriptor);
-
-            JsonRpcRequest request = new JsonRpcRequest(method, params);
-            String requestJson = objectMapper.writeValueAsString(request);
-            String responseJson = sendRequest(serverUrl, requestJson);
-            Object response = objectMapper.readValue(responseJson, Object.class);
+            Object response = client.call(method, convertParams(paramStrings, methodDescriptor));
 
             System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(response));
 
@@ -98,10 +170,7 @@ public class Client {
         }
     }
 
-    private static void displaySchema(String serverUrl) throws Exception {
-        String schemaJson = fetchSchema(serverUrl);
-        Schema schema = objectMapper.readValue(schemaJson, Schema.class);
-
+    private static void displaySchema(Schema schema) {
         System.out.println("JSON-RPC Service Schema");
         System.out.println("Version: " + schema.version);
         System.out.println("Methods:");
@@ -125,23 +194,160 @@ public class Client {
         }
     }
 
-    private static String fetchSchema(String serverUrl) throws Exception {
-        URL url = URI.create(serverUrl + "/schema").toURL();
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
+    public Schema getSchema() throws Exception {
+        if (schema == null && schemaCacheFile != null && Files.exists(schemaCacheFile)) {
+            try {
+                CachedSchema cached = objectMapper.readValue(schemaCacheFile.toFile(), CachedSchema.class);
+                schema = cached.schema;
+                schemaEtag = cached.etag;
+            } catch (IOException e) {
+                Files.deleteIfExists(schemaCacheFile);
+            }
+        }
+        if (schema == null) {
+            refreshSchema();
+        }
+        return schema;
+    }
+
+    public Schema refreshSchema() throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(serverUrl + "/schema")).GET();
+        if (schema != null && schemaEtag != null) {
+            builder.header("If-None-Match", schemaEtag);
+        }
+        HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+
+        if (response.statusCode() == 304) {
+            return schema;
+        }
+        if (response.statusCode() != 200) {
+            throw new Exception("Failed to fetch schema: " + response.statusCode());
+        }
+
+        schema = objectMapper.readValue(response.body(), Schema.class);
+        schemaEtag = response.headers().firstValue("ETag").orElse(null);
+        if (schemaCacheFile != null) {
+            CachedSchema cached = new CachedSchema();
+            cached.etag = schemaEtag;
+            cached.schema = schema;
+            Files.createDirectories(schemaCacheFile.getParent());
+            Path temp = Files.createTempFile(schemaCacheFile.getParent(), "schema", ".tmp");
+            objectMapper.writeValue(temp.toFile(), cached);
+            Files.move(temp, schemaCacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return schema;
+    }
+
+    public String getSchemaEtag() {
+        return schemaEtag;
+    }
 
-        if (connection.getResponseCode() != 200) {
-            throw new Exception("Failed to fetch schema: " + connection.getResponseCode());
+    public MethodDescriptor describe(String method) throws Exception {
+        MethodDescriptor descriptor = findMethod(getSchema(), method);
+        if (descriptor == null) {
+            descriptor = findMethod(refreshSchema(), method);
         }
+        return descriptor;
+    }
+
+    public Object call(String method, Object... params) throws Exception {
+        String requestJson = objectMapper.writeValueAsString(new JsonRpcRequest(method, params));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(serverUrl))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(requestJson))
+            .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+        if (response.statusCode() != 200) {
+            throw new Exception("Request failed: " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), Object.class);
+    }
+
+    /**
+     * Sends the calls as one JSON-RPC batch, using each call's line number as its request id, and
+     * completes with the responses in the order of {@code calls}. String params are converted with
+     * the schema; a call whose params fail to convert gets an error result and is not sent.
+     */
+    public CompletableFuture<List<Object>> callBatch(List<BatchRunner.Call> calls) {
+        Object[] results = new Object[calls.size()];
+        List<JsonRpcRequest> requests = new ArrayList<>(calls.size());
+        String requestJson;
+        try {
+            for (int i = 0; i < calls.size(); i++) {
+                BatchRunner.Call call = calls.get(i);
+                Object[] params = call.params;
+                if (call.stringParams) {
+                    MethodDescriptor descriptor = describe(call.method);
+                    if (descriptor != null) {
+                        try {
+                            params = convertParams((String[]) params, descriptor);
+                        } catch (RuntimeException e) {
+                            results[i] = batchError(call.line, -32602, e.getMessage());
+                            continue;
+                        }
+                    }
+                }
+                requests.add(new JsonRpcRequest(call.method, params, call.line));
+            }
+            if (requests.isEmpty()) {
+                return CompletableFuture.completedFuture(Arrays.asList(results));
+            }
+            requestJson = objectMapper.writeValueAsString(requests);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(serverUrl))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(requestJson))
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new CompletionException(new IOException("Request failed: " + response.statusCode()));
+            }
+            List<?> responses;
+            try {
+                responses = objectMapper.readValue(response.body(), List.class);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            Map<Long, Object> byId = new HashMap<>();
+            for (Object item : responses) {
+                Object id = item instanceof Map ? ((Map<?, ?>) item).get("id") : null;
+                if (id instanceof Number) {
+                    byId.put(((Number) id).longValue(), item);
+                }
+            }
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    long line = calls.get(i).line;
+                    Object result = byId.get(line);
+                    results[i] = result != null ? result : batchError(line, -32603, "No response");
+                }
             }
-            return response.toString();
+            return Arrays.asList(results);
+        });
+    }
+
+    private static Map<String, Object> batchError(long id, int code, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("jsonrpc", "2.0");
+        error.put("error", Map.of("code", code, "message", message));
+        error.put("id", id);
+        return error;
+    }
+
+    public Object invoke(String method, String... args) throws Exception {
+        MethodDescriptor descriptor = describe(method);
+        if (descriptor == null) {
+            throw new Exception("Method '" + method + "' not found in schema");
         }
+        return call(method, convertParams(args, descriptor));
+    }
+
+    private static Path defaultSchemaCacheDir() {
+        return Paths.get(System.getProperty("user.home"), ".core-client", "schema-cache");
     }
 
     private static MethodDescriptor findMethod(Schema schema, String methodName) {
@@ -202,32 +408,6 @@ public class Client {
         }
     }
 
-    private static String sendRequest(String serverUrl, String requestJson) throws Exception {
-        URL url = URI.create(serverUrl).toURL();
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setDoOutput(true);
-
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = requestJson.getBytes("utf-8");
-            os.write(input, 0, input.length);
-        }
-
-        if (connection.getResponseCode() != 200) {
-            throw new Exception("Request failed: " + connection.getResponseCode());
-        }
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            return response.toString();
-        }
-    }
-
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class JsonRpcRequest {
         @JsonProperty("jsonrpc")
@@ -240,11 +420,16 @@ public class Client {
         private final Object[] params;
 
         @JsonProperty("id")
-        private final Integer id = 1;
+        private final Long id;
 
         public JsonRpcRequest(String method, Object[] params) {
+            this(method, params, 1L);
+        }
+
+        public JsonRpcRequest(String method, Object[] params, Long id) {
             this.method = method;
             this.params = params;
+            this.id = id;
         }
 
         public String getJsonrpc() {
@@ -259,11 +444,19 @@ public class Client {
             return params;
         }
 
-        public Integer getId() {
+        public Long getId() {
             return id;
         }
     }
 
+    public static class CachedSchema {
+        @JsonProperty("etag")
+        public String etag;
+
+        @JsonProperty("schema")
+        public Schema schema;
+    }
+
     public static class Schema {
         @JsonProperty("jsonrpc")
         public String jsonrpc;
@@ -276,6 +469,24 @@ public class Client {
 
         @JsonProperty("methods")
         public List<MethodDescriptor> methods;
+
+        @JsonProperty("types")
+        public List<TypeDescriptor> types;
+    }
+
+    /**
+     * A model type that the MessagePack transport can pack positionally; see
+     * {@link MsgPackClient#useCompactEncoding(List)}.
+     */
+    public static class TypeDescriptor {
+        @JsonProperty("id")
+        public int id;
+
+        @JsonProperty("name")
+        public String name;
+
+        @JsonProperty("fields")
+        public List<String> fields;
     }
 
     public static class MethodDescriptor {
@@ -287,6 +498,9 @@ public class Client {
 
         @JsonProperty("params")
         public List<ParamDescriptor> params;
+
+        @JsonProperty("read_only")
+        public Boolean readOnly;
     }
 
     public static class ParamDescriptor {
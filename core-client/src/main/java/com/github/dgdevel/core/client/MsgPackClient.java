@@ -1,6 +1,7 @@
 package com.github.dgdevel.core.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.msgpack.core.ExtensionTypeHeader;
 import org.msgpack.core.MessagePack;
 import org.msgpack.core.MessagePacker;
 import org.msgpack.core.MessageUnpacker;
@@ -10,28 +11,68 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class MsgPackClient {
+public class MsgPackClient implements AutoCloseable {
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final String host;
+    private final int port;
+    private final long defaultTimeoutMillis;
+    private final Connection[] connections;
+    private final ExecutorService connector = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "msgpack-client-connect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile Map<Integer, Client.TypeDescriptor> compactTypes;
+    private volatile boolean closed;
+
+    public MsgPackClient(String host, int port) {
+        this(host, port, 4, 5000);
+    }
+
+    public MsgPackClient(String host, int port, int poolSize, long defaultTimeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.connections = new Connection[poolSize];
+    }
+
     public static void main(String[] args) {
         if (args.length == 0) {
             System.err.println("Usage: java -jar core-client-1.0.0.jar [--msgpack-host <host>] [--msgpack-port <port>] <method-name> [param1] [param2] [...]");
+            System.err.println("       java -jar core-client-1.0.0.jar [--msgpack-host <host>] [--msgpack-port <port>] --batch <file|-> [--concurrency <n>]");
             System.err.println("  --msgpack-host <host>: MessagePack server host (default: localhost)");
             System.err.println("  --msgpack-port <port>: MessagePack server port (default: 8081)");
             System.err.println("  method-name: Method to invoke");
             System.err.println("  param1, param2, ...: Method parameters (as strings)");
+            System.err.println("  --batch <file|->: Read NDJSON or CSV calls from a file or stdin, one per line");
+            System.err.println("  --concurrency <n>: Requests pipelined on the connection at once (default: 64)");
             System.err.println("");
             System.err.println("Examples:");
             System.err.println("  java -jar core-client-1.0.0.jar generic/ping");
             System.err.println("  java -jar core-client-1.0.0.jar generic/setConfigValue app theme dark");
             System.err.println("  java -jar core-client-1.0.0.jar --msgpack-host example.com --msgpack-port 9091 generic/ping");
+            System.err.println("  java -jar core-client-1.0.0.jar --batch changes.ndjson --concurrency 128");
             System.exit(1);
         }
 
@@ -39,6 +80,8 @@ public class MsgPackClient {
             String host = "localhost";
             int port = 8081;
             String method = null;
+            String batchSource = null;
+            int concurrency = 64;
             List<String> paramList = new ArrayList<>();
             int i = 0;
 
@@ -57,6 +100,20 @@ public class MsgPackClient {
                     }
                     port = Integer.parseInt(args[i + 1]);
                     i += 2;
+                } else if (method == null && "--batch".equals(args[i])) {
+                    if (i + 1 >= args.length) {
+                        System.err.println("Error: --batch flag requires a file argument (or - for stdin)");
+                        System.exit(1);
+                    }
+                    batchSource = args[i + 1];
+                    i += 2;
+                } else if (method == null && "--concurrency".equals(args[i])) {
+                    if (i + 1 >= args.length) {
+                        System.err.println("Error: --concurrency flag requires a number argument");
+                        System.exit(1);
+                    }
+                    concurrency = Integer.parseInt(args[i + 1]);
+                    i += 2;
                 } else {
                     if (method == null) {
                         method = args[i];
@@ -67,13 +124,35 @@ public class MsgPackClient {
                 }
             }
 
+            if (batchSource != null) {
+                if (method != null) {
+                    System.err.println("Error: --batch cannot be combined with a method name");
+                    System.exit(1);
+                }
+                int failures;
+                try (MsgPackClient client = new MsgPackClient(host, port, 1, 30000);
+                     java.io.BufferedReader in = BatchRunner.open(batchSource)) {
+                    failures = new BatchRunner(client::callBatch, 1, concurrency).run(in, System.out);
+                }
+                if (failures > 0) {
+                    System.err.println("Batch finished with " + failures + " failed call(s)");
+                    System.exit(2);
+                }
+                return;
+            }
+
             if (method == null) {
                 System.err.println("Error: Method name is required");
                 System.exit(1);
             }
 
             Object[] params = paramList.toArray(new String[0]);
-            Object response = sendRequest(host, port, method, params);
+            Object response;
+            try (MsgPackClient client = new MsgPackClient(host, port, 1, 30000)) {
+                response = client.call(method, params).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
 
             System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(response));
 
@@ -107,18 +186,250 @@ public class MsgPackClient {
         }
     }
 
+    /**
+     * Asks the server to pack the given model types positionally, as MessagePack extension values,
+     * and decodes them back to the same maps the default encoding yields. The types come from the
+     * server's schema ({@code Client.getSchema().types}). Must be called before the first call.
+     */
+    public void useCompactEncoding(List<Client.TypeDescriptor> types) {
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    throw new IllegalStateException("Compact encoding must be enabled before the first call");
+                }
+            }
+        }
+        Map<Integer, Client.TypeDescriptor> byId = new HashMap<>();
+        for (Client.TypeDescriptor type : types) {
+            byId.put(type.id, type);
+        }
+        compactTypes = byId;
+    }
+
+    public CompletableFuture<Object> call(String method, Object... params) {
+        return call(defaultTimeoutMillis, method, params);
+    }
+
+    /**
+     * Sends a call, or queues it while its connection is being opened in the background; the
+     * caller never waits for the connect, and {@code timeoutMillis} covers it.
+     */
+    public CompletableFuture<Object> call(long timeoutMillis, String method, Object[] params) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Client is closed"));
+        }
+        int id = nextId.incrementAndGet() & Integer.MAX_VALUE;
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Connection connection;
+        try {
+            connection = connection();
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        connection.pending.put(id, future);
+        future.whenComplete((result, error) -> connection.pending.remove(id));
+        try {
+            connection.send(packRequest(method, params, id, compactTypes != null
+                ? Map.of("keep_alive", true, "encoding", "compact")
+                : Map.of("keep_alive", true)));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        return future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pipelines the calls on the pool and completes with their results in the order of
+     * {@code calls}. A call that fails or times out yields an error map instead of failing the rest.
+     */
+    public CompletableFuture<List<Object>> callBatch(List<BatchRunner.Call> calls) {
+        List<CompletableFuture<Object>> futures = new ArrayList<>(calls.size());
+        for (BatchRunner.Call call : calls) {
+            futures.add(call(call.method, call.params).handle((result, error) -> error == null
+                ? result
+                : Map.of("error", String.valueOf(error.getCause() != null ? error.getCause() : error), "id", call.line)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<Object> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<Object> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    public int getOpenConnectionCount() {
+        int open = 0;
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                if (connection != null && connection.isOpen() && connection.isConnected()) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (connections) {
+            for (int i = 0; i < connections.length; i++) {
+                if (connections[i] != null) {
+                    connections[i].close(new IOException("Client closed"));
+                    connections[i] = null;
+                }
+            }
+        }
+        connector.shutdown();
+    }
+
+    private Connection connection() {
+        int slot = Math.floorMod(nextConnection.getAndIncrement(), connections.length);
+        synchronized (connections) {
+            Connection connection = connections[slot];
+            if (connection == null || !connection.isOpen()) {
+                Connection connecting = new Connection(compactTypes);
+                connector.execute(() -> connecting.connect(host, port, defaultTimeoutMillis));
+                connection = connecting;
+                connections[slot] = connection;
+            }
+            return connection;
+        }
+    }
+
+    /**
+     * One persistent socket. Requests are written as they come and a reader thread completes the
+     * matching future by response id, so any number of calls can be in flight at once. Requests
+     * sent while the socket is still connecting are queued and written, in order, once it is.
+     */
+    private static final class Connection {
+        private final Map<Integer, Client.TypeDescriptor> types;
+        private final Map<Integer, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+        private final List<byte[]> queued = new ArrayList<>();
+        private volatile Socket socket;
+        private OutputStream out;
+        private volatile boolean open = true;
+
+        Connection(Map<Integer, Client.TypeDescriptor> types) {
+            this.types = types;
+        }
+
+        void connect(String host, int port, long timeoutMillis) {
+            Socket connecting = new Socket();
+            try {
+                connecting.connect(new InetSocketAddress(host, port), (int) Math.min(Integer.MAX_VALUE, timeoutMillis));
+                connecting.setTcpNoDelay(true);
+                synchronized (this) {
+                    socket = connecting;
+                    if (!open) {
+                        connecting.close();
+                        return;
+                    }
+                    out = connecting.getOutputStream();
+                    for (byte[] data : queued) {
+                        out.write(data);
+                    }
+                    out.flush();
+                    queued.clear();
+                }
+            } catch (IOException e) {
+                try {
+                    connecting.close();
+                } catch (IOException closeError) {
+                    e.addSuppressed(closeError);
+                }
+                close(e);
+                return;
+            }
+            Thread reader = new Thread(this::readLoop, "msgpack-client-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        synchronized boolean isConnected() {
+            return out != null;
+        }
+
+        synchronized void send(byte[] data) throws IOException {
+            if (!open) {
+                throw new IOException("Connection closed");
+            }
+            if (out == null) {
+                queued.add(data);
+                return;
+            }
+            out.write(data);
+            out.flush();
+        }
+
+        private void readLoop() {
+            try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(socket.getInputStream())) {
+                while (unpacker.hasNext()) {
+                    Response response = readResponse(unpacker, types);
+                    CompletableFuture<Object> future = pending.remove(response.id);
+                    if (future != null) {
+                        future.complete(response.value);
+                    }
+                }
+                close(new EOFException("Connection closed by server"));
+            } catch (Exception e) {
+                close(e);
+            }
+        }
+
+        void close(Exception cause) {
+            open = false;
+            Socket connected = socket;
+            try {
+                if (connected != null) {
+                    connected.close();
+                }
+            } catch (IOException e) {
+                // already closed
+            }
+            for (CompletableFuture<Object> future : pending.values()) {
+                future.completeExceptionally(cause);
+            }
+            pending.clear();
+        }
+    }
+
+    private static final class Response {
+        final int id;
+        final Object value;
+
+        Response(int id, Object value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
     private static byte[] packRequest(String method, Object[] params) throws Exception {
+        return packRequest(method, params, 1, null);
+    }
+
+    private static byte[] packRequest(String method, Object[] params, int id, Map<String, Object> headers) throws Exception {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         MessagePacker packer = MessagePack.newDefaultPacker(out);
         try {
-            packer.packArrayHeader(4);
+            packer.packArrayHeader(headers != null ? 5 : 4);
             packer.packString("2.0");
             packer.packString(method);
             packer.packArrayHeader(params.length);
             for (Object param : params) {
                 packValue(packer, param);
             }
-            packer.packInt(1);
+            packer.packInt(id);
+            if (headers != null) {
+                packValue(packer, headers);
+            }
             packer.flush();
             return out.toByteArray();
         } finally {
@@ -168,23 +479,30 @@ public class MsgPackClient {
     private static Object unpackResponse(byte[] data) throws Exception {
         MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(new ByteArrayInputStream(data));
         try {
-            int arraySize = unpacker.unpackArrayHeader();
-            String jsonrpc = unpacker.unpackString();
-            Object result = unpackValue(unpacker);
-            Object error = unpackValue(unpacker);
-            int id = unpacker.unpackInt();
-
-            if (error == null) {
-                return result;
-            } else {
-                return Map.of("error", error, "id", id);
-            }
+            return readResponse(unpacker, null).value;
         } finally {
             unpacker.close();
         }
     }
 
-    private static Object unpackValue(MessageUnpacker unpacker) throws Exception {
+    private static Response readResponse(MessageUnpacker unpacker, Map<Integer, Client.TypeDescriptor> types) throws Exception {
+        int arraySize = unpacker.unpackArrayHeader();
+        String jsonrpc = unpacker.unpackString();
+        Object result = unpackValue(unpacker, types);
+        Object error = unpackValue(unpacker, types);
+        int id = unpacker.unpackInt();
+        for (int i = 4; i < arraySize; i++) {
+            unpacker.skipValue();
+        }
+
+        if (error == null) {
+            return new Response(id, result);
+        } else {
+            return new Response(id, Map.of("error", error, "id", id));
+        }
+    }
+
+    private static Object unpackValue(MessageUnpacker unpacker, Map<Integer, Client.TypeDescriptor> types) throws Exception {
         ValueType valueType = unpacker.getNextFormat().getValueType();
         if (valueType == ValueType.NIL) {
             unpacker.unpackNil();
@@ -206,7 +524,7 @@ public class MsgPackClient {
             int arraySize = unpacker.unpackArrayHeader();
             Object[] array = new Object[arraySize];
             for (int i = 0; i < arraySize; i++) {
-                array[i] = unpackValue(unpacker);
+                array[i] = unpackValue(unpacker, types);
             }
             return array;
         } else if (valueType == ValueType.MAP) {
@@ -214,12 +532,36 @@ public class MsgPackClient {
             Map<String, Object> map = new java.util.HashMap<>();
             for (int i = 0; i < mapSize; i++) {
                 String key = unpacker.unpackString();
-                Object value = unpackValue(unpacker);
+                Object value = unpackValue(unpacker, types);
                 map.put(key, value);
             }
             return map;
+        } else if (valueType == ValueType.EXTENSION) {
+            return unpackCompact(unpacker, types);
         } else {
             throw new IllegalArgumentException("Unsupported MessagePack format: " + valueType);
         }
     }
+
+    /**
+     * A compact model value: the extension type is the model id and the payload is the array of its
+     * field values, which is read in place. Trailing and null fields are left out of the map, as the
+     * default encoding does.
+     */
+    private static Object unpackCompact(MessageUnpacker unpacker, Map<Integer, Client.TypeDescriptor> types) throws Exception {
+        ExtensionTypeHeader header = unpacker.unpackExtensionTypeHeader();
+        Client.TypeDescriptor type = types != null ? types.get((int) header.getType()) : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown compact type: " + header.getType());
+        }
+        int size = unpacker.unpackArrayHeader();
+        Map<String, Object> map = new java.util.HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Object value = unpackValue(unpacker, types);
+            if (value != null && i < type.fields.size()) {
+                map.put(type.fields.get(i), value);
+            }
+        }
+        return map;
+    }
 }
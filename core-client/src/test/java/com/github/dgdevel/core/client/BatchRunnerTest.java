@@ -0,0 +1,93 @@
+package com.github.dgdevel.core.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dgdevel.core.server.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+    private Server server;
+    private final int jsonRpcTestPort = 18094;
+    private final int msgPackTestPort = 18095;
+    private final String testDbUrl = "jdbc:h2:mem:testbatch";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String INPUT = String.join("\n",
+        "# config changes",
+        "generic/setConfigValue,app,theme,dark",
+        "{\"method\": \"generic/setConfigValue\", \"params\": [\"app\", \"title\", \"My \\\"App\\\"\"]}",
+        "",
+        "generic/getConfigValue,app,theme",
+        "{\"method\": ",
+        "invalid/method",
+        "generic/getConfigValue,app,title");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new Server(jsonRpcTestPort, msgPackTestPort, testDbUrl, null, null);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    private List<JsonNode> run(BatchRunner runner, int expectedFailures) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+            assertEquals(expectedFailures, runner.run(new BufferedReader(new StringReader(INPUT)), out));
+        }
+        List<JsonNode> lines = new java.util.ArrayList<>();
+        for (String line : buffer.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    @Test
+    public void testJsonRpcBatchPreservesInputOrder() throws Exception {
+        Client client = new Client("http://localhost:" + jsonRpcTestPort, null);
+        List<JsonNode> results = run(new BatchRunner(client::callBatch, 2, 1), 2);
+
+        assertEquals(6, results.size());
+        assertEquals(2, results.get(0).get("id").asInt());
+        assertTrue(results.get(0).get("result").get("success").asBoolean());
+        assertEquals("dark", results.get(2).get("result").asText());
+        assertEquals(6, results.get(3).get("id").asInt());
+        assertTrue(results.get(3).get("error").asText().startsWith("Parse error"));
+        assertEquals(-32601, results.get(4).get("error").get("code").asInt());
+        assertEquals("My \"App\"", results.get(5).get("result").asText());
+    }
+
+    @Test
+    public void testMsgPackPipelinePreservesInputOrder() throws Exception {
+        try (MsgPackClient client = new MsgPackClient("localhost", msgPackTestPort, 1, 5000)) {
+            List<JsonNode> results = run(new BatchRunner(client::callBatch, 1, 8), 2);
+
+            assertEquals(6, results.size());
+            assertEquals("dark", results.get(2).asText());
+            assertTrue(results.get(3).get("error").asText().startsWith("Parse error"));
+            assertNotNull(results.get(4).get("error"));
+            assertEquals("My \"App\"", results.get(5).asText());
+            assertEquals(1, client.getOpenConnectionCount());
+        }
+    }
+
+    @Test
+    public void testSplitCsv() {
+        assertEquals(List.of("a", "b,c", "d\"e", ""), BatchRunner.splitCsv("a,\"b,c\",\"d\"\"e\","));
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.splitCsv("a,\"b"));
+    }
+}
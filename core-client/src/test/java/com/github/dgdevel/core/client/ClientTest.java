@@ -0,0 +1,80 @@
+package com.github.dgdevel.core.client;
+
+import com.github.dgdevel.core.server.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientTest {
+    private Server server;
+    private final int jsonRpcTestPort = 18092;
+    private final int msgPackTestPort = 18093;
+    private final String testDbUrl = "jdbc:h2:mem:testclient";
+    private final String serverUrl = "http://localhost:" + jsonRpcTestPort;
+
+    @TempDir
+    Path cacheDir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new Server(jsonRpcTestPort, msgPackTestPort, testDbUrl, null, null);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    public void testInvokeConvertsParams() throws Exception {
+        Client client = new Client(serverUrl, cacheDir);
+        client.invoke("generic/setConfigValue", "test", "key1", "value1");
+        Object response = client.invoke("generic/getConfigValue", "test", "key1");
+        assertTrue(response instanceof Map);
+        assertEquals("value1", ((Map<?, ?>) response).get("result"));
+    }
+
+    @Test
+    public void testSchemaCachedOnDisk() throws Exception {
+        Client client = new Client(serverUrl, cacheDir);
+        Client.Schema schema = client.getSchema();
+        assertNotNull(client.getSchemaEtag());
+        try (var files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+
+        server.shutdown();
+        Client offline = new Client(serverUrl, cacheDir);
+        assertEquals(schema.methods.size(), offline.getSchema().methods.size());
+        assertEquals(client.getSchemaEtag(), offline.getSchemaEtag());
+        assertNotNull(offline.describe("generic/ping"));
+
+        server = new Server(jsonRpcTestPort, msgPackTestPort, testDbUrl, null, null);
+        server.start();
+    }
+
+    @Test
+    public void testRefreshRevalidatesWithEtag() throws Exception {
+        Client client = new Client(serverUrl, cacheDir);
+        Client.Schema schema = client.getSchema();
+        String etag = client.getSchemaEtag();
+        assertSame(schema, client.refreshSchema());
+        assertEquals(etag, client.getSchemaEtag());
+    }
+
+    @Test
+    public void testUnknownMethodTriggersRefresh() throws Exception {
+        Client client = new Client(serverUrl, null);
+        assertNull(client.describe("invalid/method"));
+        Exception e = assertThrows(Exception.class, () -> client.invoke("invalid/method"));
+        assertTrue(e.getMessage().contains("not found"));
+    }
+}
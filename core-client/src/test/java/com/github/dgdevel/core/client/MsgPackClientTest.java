@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -227,4 +228,128 @@ public class MsgPackClientTest {
         Map<?, ?> result = (Map<?, ?>) response;
         assertEquals(0L, result.get("totalCount"));
     }
+
+    @Test
+    public void testSessionResolve() throws Exception {
+        Map<?, ?> created = (Map<?, ?>) MsgPackClient.sendRequest("localhost", msgPackTestPort, "user/create",
+            new Object[]{Map.of("display_name", "alice", "active", true)});
+        long userId = ((Number) created.get("id")).longValue();
+
+        MsgPackClient.sendRequest("localhost", msgPackTestPort, "auth/registerType",
+            new Object[]{"PASSWORD", true, true});
+        long now = System.currentTimeMillis();
+        MsgPackClient.sendRequest("localhost", msgPackTestPort, "auth/create",
+            new Object[]{userId, "PASSWORD", now - 1000, now + 86400000L, "alice", "secret"});
+
+        Map<?, ?> role = (Map<?, ?>) MsgPackClient.sendRequest("localhost", msgPackTestPort, "authorization/createRole",
+            new Object[]{Map.of("code", "ADMIN", "name", "Administrator")});
+        MsgPackClient.sendRequest("localhost", msgPackTestPort, "authorization/authorize",
+            new Object[]{userId, role.get("id"), now - 1000, now + 86400000L});
+
+        Object response = MsgPackClient.sendRequest("localhost", msgPackTestPort, "session/resolve",
+            new Object[]{"PASSWORD", "alice", "secret"});
+        assertTrue(response instanceof Map);
+        Map<?, ?> session = (Map<?, ?>) response;
+        assertEquals(userId, ((Number) ((Map<?, ?>) session.get("user")).get("id")).longValue());
+        Object[] roleCodes = (Object[]) session.get("role_codes");
+        assertArrayEquals(new Object[]{"ADMIN"}, roleCodes);
+
+        Object denied = MsgPackClient.sendRequest("localhost", msgPackTestPort, "session/resolve",
+            new Object[]{"PASSWORD", "alice", "wrong"});
+        assertNull(denied);
+    }
+
+    @Test
+    public void testPooledClientReusesConnections() throws Exception {
+        try (MsgPackClient client = new MsgPackClient("localhost", msgPackTestPort, 2, 5000)) {
+            client.call("generic/setConfigValue", "test", "pooled", "yes").get();
+            assertEquals("yes", client.call("generic/getConfigValue", "test", "pooled").get());
+            assertEquals(2, client.getOpenConnectionCount());
+
+            Object error = client.call("invalid/method").get();
+            assertTrue(error instanceof Map);
+            assertNotNull(((Map<?, ?>) error).get("error"));
+        }
+    }
+
+    @Test
+    public void testPooledClientMultiplexesConcurrentCalls() throws Exception {
+        try (MsgPackClient client = new MsgPackClient("localhost", msgPackTestPort, 2, 5000)) {
+            List<java.util.concurrent.CompletableFuture<Object>> futures = new java.util.ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(client.call("generic/ping"));
+            }
+            for (java.util.concurrent.CompletableFuture<Object> future : futures) {
+                assertTrue(future.get() instanceof String);
+            }
+            assertEquals(2, client.getOpenConnectionCount());
+        }
+    }
+
+    @Test
+    public void testPooledClientReconnectsAfterServerRestart() throws Exception {
+        try (MsgPackClient client = new MsgPackClient("localhost", msgPackTestPort, 1, 5000)) {
+            assertNotNull(client.call("generic/ping").get());
+
+            server.shutdown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.getOpenConnectionCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, client.getOpenConnectionCount());
+            server = new Server(jsonRpcTestPort, msgPackTestPort, testDbUrl, null, null);
+            server.start();
+
+            assertNotNull(client.call("generic/ping").get());
+        }
+    }
+
+    @Test
+    public void testCompactEncodingDecodesToSameResult() throws Exception {
+        MsgPackClient.sendRequest("localhost", msgPackTestPort, "user/create",
+            new Object[]{Map.of("display_name", "alice", "active", true)});
+        MsgPackClient.sendRequest("localhost", msgPackTestPort, "user/create",
+            new Object[]{Map.of("display_name", "bob", "active", false)});
+        Object paginator = Map.of("pageNumber", 1, "pageSize", 10);
+
+        List<Client.TypeDescriptor> types = new Client("http://localhost:" + jsonRpcTestPort, null).getSchema().types;
+        assertTrue(types.stream().anyMatch(type -> "User".equals(type.name) && type.fields.contains("display_name")));
+
+        com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
+        try (MsgPackClient plain = new MsgPackClient("localhost", msgPackTestPort, 1, 5000);
+             MsgPackClient compact = new MsgPackClient("localhost", msgPackTestPort, 1, 5000)) {
+            compact.useCompactEncoding(types);
+            Object expected = plain.call("user/findBy", paginator).get();
+            Object actual = compact.call("user/findBy", paginator).get();
+            assertEquals(objectMapper.valueToTree(expected), objectMapper.valueToTree(actual));
+            assertEquals(2L, ((Map<?, ?>) actual).get("totalCount"));
+
+            assertThrows(IllegalStateException.class, () -> compact.useCompactEncoding(types));
+        }
+    }
+
+    @Test
+    public void testPooledClientConnectsOffTheCallerThread() throws Exception {
+        // a non-routable address, where a connect hangs until its timeout
+        try (MsgPackClient client = new MsgPackClient("10.255.255.1", msgPackTestPort, 1, 5000)) {
+            long start = System.nanoTime();
+            java.util.concurrent.CompletableFuture<Object> future = client.call(200, "generic/ping", new Object[]{});
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+            java.util.concurrent.ExecutionException e =
+                assertThrows(java.util.concurrent.ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof java.util.concurrent.TimeoutException || e.getCause() instanceof java.io.IOException);
+            assertEquals(0, client.getOpenConnectionCount());
+        }
+    }
+
+    @Test
+    public void testPooledClientDeadline() throws Exception {
+        try (java.net.ServerSocket silent = new java.net.ServerSocket(0);
+             MsgPackClient client = new MsgPackClient("localhost", silent.getLocalPort(), 1, 5000)) {
+            java.util.concurrent.CompletableFuture<Object> future = client.call(100, "generic/ping", new Object[]{});
+            java.util.concurrent.ExecutionException e =
+                assertThrows(java.util.concurrent.ExecutionException.class, future::get);
+            assertTrue(e.getCause() instanceof java.util.concurrent.TimeoutException);
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package com.github.dgdevel.core.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An inverted index from attribute values to the users holding them, for the attribute names that
+ * are searched often. The user IDs of each value are kept sorted, so pages are cut by user ID the
+ * same way the database query cuts them.
+ */
+public final class AttributeIndex {
+    private final Map<String, NavigableMap<String, long[]>> byName;
+
+    private AttributeIndex(Map<String, NavigableMap<String, long[]>> byName) {
+        this.byName = byName;
+    }
+
+    /**
+     * @param prefix when true, matches every value starting with {@code value}
+     * @return up to {@code limit} user IDs greater than {@code afterUserId}, ascending
+     */
+    public List<Long> find(String name, String value, boolean prefix, long afterUserId, int limit) {
+        NavigableMap<String, long[]> values = byName.get(name);
+        List<Long> userIds = new ArrayList<>();
+        if (values == null) {
+            return userIds;
+        }
+        if (!prefix) {
+            long[] ids = values.get(value);
+            if (ids != null) {
+                int from = Arrays.binarySearch(ids, afterUserId);
+                for (int i = from < 0 ? -from - 1 : from + 1; i < ids.length && userIds.size() < limit; i++) {
+                    userIds.add(ids[i]);
+                }
+            }
+            return userIds;
+        }
+        TreeSet<Long> matches = new TreeSet<>();
+        for (long[] ids : values.subMap(value, true, value + Character.MAX_VALUE, false).values()) {
+            for (long id : ids) {
+                if (id > afterUserId) {
+                    matches.add(id);
+                    if (matches.size() > limit) {
+                        matches.pollLast();
+                    }
+                }
+            }
+        }
+        userIds.addAll(matches);
+        return userIds;
+    }
+
+    public static Builder builder(List<String> names) {
+        return new Builder(names);
+    }
+
+    public static final class Builder {
+        private final Map<String, NavigableMap<String, List<Long>>> byName = new HashMap<>();
+
+        private Builder(List<String> names) {
+            for (String name : names) {
+                byName.put(name, new TreeMap<>());
+            }
+        }
+
+        public Builder add(String name, String value, long userId) {
+            NavigableMap<String, List<Long>> values = byName.get(name);
+            if (values != null) {
+                values.computeIfAbsent(value, v -> new ArrayList<>()).add(userId);
+            }
+            return this;
+        }
+
+        public AttributeIndex build() {
+            Map<String, NavigableMap<String, long[]>> index = new HashMap<>();
+            for (Map.Entry<String, NavigableMap<String, List<Long>>> name : byName.entrySet()) {
+                NavigableMap<String, long[]> values = new TreeMap<>();
+                for (Map.Entry<String, List<Long>> value : name.getValue().entrySet()) {
+                    long[] ids = value.getValue().stream().mapToLong(Long::longValue).toArray();
+                    Arrays.sort(ids);
+                    values.put(value.getKey(), ids);
+                }
+                index.put(name.getKey(), values);
+            }
+            return new AttributeIndex(index);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.dgdevel.core.cache;
+
+import com.github.dgdevel.core.db.DatabaseManager;
+import com.github.dgdevel.core.db.LocalChanges;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the trigger-maintained counters in {@code table_changes} and bumps the tables whose
+ * counter moved, so writes made outside this process (other nodes, tools sharing the schema, hand
+ * fixes in the H2 console) invalidate the caches like local writes do. Increments made by this
+ * node's own transactions are taken off first, since those writes were bumped when they returned.
+ * The first poll only records where the counters stand.
+ */
+public class ChangePoller implements Runnable {
+    private final DatabaseManager databaseManager;
+    private final TableVersions tableVersions;
+    private Map<String, Long> lastSeen;
+
+    public ChangePoller(DatabaseManager databaseManager, TableVersions tableVersions) {
+        this.databaseManager = databaseManager;
+        this.tableVersions = tableVersions;
+    }
+
+    /**
+     * @return the tables changed since the previous poll
+     */
+    public synchronized Set<String> poll() throws SQLException {
+        Map<String, Long> counters = databaseManager.onPooledConnection(databaseManager::getTableChangeCounters);
+        LocalChanges localChanges = databaseManager.getLocalChanges();
+        Set<String> changed = new HashSet<>();
+        if (lastSeen != null) {
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                String table = counter.getKey();
+                Long last = lastSeen.get(table);
+                if (last == null) {
+                    changed.add(table);
+                    continue;
+                }
+                long delta = counter.getValue() - last;
+                if (delta > localChanges.take(table, delta)) {
+                    changed.add(table);
+                }
+            }
+        } else {
+            localChanges.clear();
+        }
+        lastSeen = new HashMap<>(counters);
+        tableVersions.bumpRemote(changed);
+        return changed;
+    }
+
+    @Override
+    public void run() {
+        try {
+            poll();
+        } catch (Exception e) {
+            System.out.println("[CACHE] Change poll failed: " + e.getMessage());
+        }
+    }
+}
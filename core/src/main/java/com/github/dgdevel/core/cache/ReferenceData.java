@@ -0,0 +1,211 @@
+package com.github.dgdevel.core.cache;
+
+import com.github.dgdevel.core.db.SqlWork;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Read-mostly datasets (roles, credential types, config, translations, the menu tree, the index of
+ * searched user attributes) kept in memory and rebuilt from the database when a table they are read
+ * from changes. Each dataset is loaded whole by its loader, either eagerly by {@link #preload()} at
+ * startup or on first use. A dataset registered with {@link #registerReloadedInBackground} is not
+ * dropped on a change: it keeps being served while one background load replaces it.
+ */
+public class ReferenceData {
+    public static final String CONFIG = "config";
+    public static final String TRANSLATIONS = "translations";
+    public static final String CREDENTIAL_TYPES = "credentialTypes";
+    public static final String ROLES = "roles";
+    public static final String MENU_TREE = "menuTree";
+    public static final String USER_ATTRIBUTE_INDEX = "userAttributeIndex";
+
+    private final Map<String, Dataset> datasets = new LinkedHashMap<>();
+    private final Map<String, Long> loadTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean warm;
+
+    /**
+     * @param tables the tables the dataset is read from
+     */
+    public void register(String name, SqlWork<?> loader, String... tables) {
+        datasets.put(name, new Dataset(name, loader, Set.of(tables), false));
+    }
+
+    /**
+     * Registers a dataset that is expensive to load and whose tables are written often. After a
+     * change the previous value is served until a reload finishes; changes arriving during a
+     * reload are covered by a single further reload rather than one each.
+     */
+    public void registerReloadedInBackground(String name, SqlWork<?> loader, String... tables) {
+        datasets.put(name, new Dataset(name, loader, Set.of(tables), true));
+    }
+
+    /**
+     * Invalidates datasets whenever one of their tables changes.
+     */
+    public void watch(TableVersions tableVersions) {
+        tableVersions.addListener(this::tablesChanged);
+    }
+
+    private void tablesChanged(Set<String> tables) {
+        for (Dataset dataset : datasets.values()) {
+            if (tables == null || !Collections.disjoint(tables, dataset.tables)) {
+                dataset.invalidate();
+            }
+        }
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * @return how long the last load of each dataset took, in milliseconds
+     */
+    public Map<String, Long> getLoadTimings() {
+        synchronized (loadTimings) {
+            return new LinkedHashMap<>(loadTimings);
+        }
+    }
+
+    /**
+     * Returns the dataset, loading it first if it is not in memory.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name) throws SQLException {
+        Dataset dataset = datasets.get(name);
+        if (dataset == null) {
+            throw new IllegalArgumentException("Unknown dataset: " + name);
+        }
+        return (T) dataset.get();
+    }
+
+    /**
+     * Drops the dataset so that the next read reloads it. Call after the write has committed: a
+     * load that started before the invalidation is not kept.
+     */
+    public void invalidate(String name) {
+        Dataset dataset = datasets.get(name);
+        if (dataset != null) {
+            dataset.invalidate();
+        }
+    }
+
+    /**
+     * Loads every dataset in parallel, one virtual thread each, and returns once all are in memory.
+     */
+    public void preload() throws SQLException {
+        long start = System.nanoTime();
+        List<Future<Object>> loads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Dataset dataset : datasets.values()) {
+                loads.add(executor.submit(dataset::get));
+            }
+            for (Future<Object> load : loads) {
+                load.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while preloading reference data", e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Failed to preload reference data: " + cause.getMessage(), cause);
+        }
+        warm = true;
+        System.out.println("[CACHE] Reference data warm in " + (System.nanoTime() - start) / 1_000_000 + " ms " + getLoadTimings());
+    }
+
+    private final class Dataset {
+        private final String name;
+        private final SqlWork<?> loader;
+        private final Set<String> tables;
+        private final boolean background;
+        private volatile Object value;
+        private long generation;
+        private boolean reloading;
+
+        Dataset(String name, SqlWork<?> loader, Set<String> tables, boolean background) {
+            this.name = name;
+            this.loader = loader;
+            this.tables = tables;
+            this.background = background;
+        }
+
+        Object get() throws SQLException {
+            Object current = value;
+            if (current != null) {
+                return current;
+            }
+            long startGeneration;
+            synchronized (this) {
+                startGeneration = generation;
+            }
+            Object loaded = load();
+            synchronized (this) {
+                if (generation == startGeneration) {
+                    value = loaded;
+                }
+            }
+            return loaded;
+        }
+
+        synchronized void invalidate() {
+            generation++;
+            if (!background || value == null) {
+                value = null;
+            } else if (!reloading) {
+                reloading = true;
+                Thread.startVirtualThread(this::reload);
+            }
+        }
+
+        /**
+         * Loads until a load completes with no change in between, then publishes it.
+         */
+        private void reload() {
+            while (true) {
+                long startGeneration;
+                synchronized (this) {
+                    startGeneration = generation;
+                }
+                Object loaded;
+                try {
+                    loaded = load();
+                } catch (Exception e) {
+                    System.out.println("[CACHE] Reloading " + name + " failed: " + e.getMessage());
+                    synchronized (this) {
+                        // the next read loads it again
+                        value = null;
+                        reloading = false;
+                    }
+                    return;
+                }
+                synchronized (this) {
+                    if (generation == startGeneration) {
+                        value = loaded;
+                        reloading = false;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private Object load() throws SQLException {
+            long start = System.nanoTime();
+            Object loaded = loader.run();
+            loadTimings.put(name, (System.nanoTime() - start) / 1_000_000);
+            return loaded;
+        }
+    }
+}
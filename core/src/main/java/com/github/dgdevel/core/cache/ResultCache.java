@@ -0,0 +1,111 @@
+package com.github.dgdevel.core.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dgdevel.core.db.SqlWork;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of read methods, keyed by method name and arguments and tagged with the versions of the
+ * tables the method reads. An entry is served only while none of those tables has been written
+ * since it was computed, so writes never have to say which entries they affect. Holds at most
+ * {@code maxEntries} results, evicting the least recently used.
+ */
+public class ResultCache {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TableVersions tableVersions;
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public ResultCache(TableVersions tableVersions, int maxEntries) {
+        this.tableVersions = tableVersions;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the cached result of {@code method} for {@code args}, or computes and caches it.
+     *
+     * @param tables the tables the result is derived from
+     */
+    public Object get(String method, Object[] args, List<String> tables, SqlWork<Object> compute) throws SQLException {
+        String key;
+        try {
+            key = method + objectMapper.writeValueAsString(args);
+        } catch (JsonProcessingException e) {
+            return compute.run();
+        }
+        Counters methodCounters = counters.computeIfAbsent(method, m -> new Counters());
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && tableVersions.isCurrent(tables, entry.versions)) {
+            methodCounters.hits.increment();
+            return entry.value;
+        }
+        methodCounters.misses.increment();
+        // taken before reading, so a write committing meanwhile leaves the entry already stale
+        long[] versions = tableVersions.snapshot(tables);
+        Object value = compute.run();
+        synchronized (entries) {
+            entries.put(key, new Entry(value, versions));
+        }
+        return value;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return hits, misses and hit rate of each cached method
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            long hits = entry.getValue().hits.sum();
+            long misses = entry.getValue().misses.sum();
+            Map<String, Object> methodStats = new LinkedHashMap<>();
+            methodStats.put("hits", hits);
+            methodStats.put("misses", misses);
+            methodStats.put("hit_rate", hits + misses > 0 ? (double) hits / (hits + misses) : 0d);
+            stats.put(entry.getKey(), methodStats);
+        }
+        return stats;
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long[] versions;
+
+        Entry(Object value, long[] versions) {
+            this.value = value;
+            this.versions = versions;
+        }
+    }
+
+    private static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.dgdevel.core.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory version counter per table, bumped after every committed write to it. Anything
+ * derived from a set of tables stays valid for as long as their versions have not moved.
+ */
+public class TableVersions {
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Set<String>>> publishers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Set<String>>> remoteListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param listener told which tables changed, or null when every table must be considered
+     *                 changed
+     */
+    public void addListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param publisher told which tables this node wrote, to pass on to other nodes; not told about
+     *                  changes learned from elsewhere, so they are not sent back
+     */
+    public void addPublisher(Consumer<Set<String>> publisher) {
+        publishers.add(publisher);
+    }
+
+    /**
+     * @param listener told which tables were written elsewhere, by another node or process, or
+     *                 null when every table must be considered changed; not told about this node's
+     *                 own writes
+     */
+    public void addRemoteListener(Consumer<Set<String>> listener) {
+        remoteListeners.add(listener);
+    }
+
+    /**
+     * @return the current versions of {@code tables}, preceded by the epoch
+     */
+    public long[] snapshot(List<String> tables) {
+        long[] snapshot = new long[tables.size() + 1];
+        snapshot[0] = epoch.get();
+        for (int i = 0; i < tables.size(); i++) {
+            snapshot[i + 1] = counter(tables.get(i)).get();
+        }
+        return snapshot;
+    }
+
+    public boolean isCurrent(List<String> tables, long[] snapshot) {
+        if (snapshot[0] != epoch.get()) {
+            return false;
+        }
+        for (int i = 0; i < tables.size(); i++) {
+            if (snapshot[i + 1] != counter(tables.get(i)).get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a write made by this node.
+     */
+    public void bump(Collection<String> tables) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        Set<String> changed = apply(tables);
+        for (Consumer<Set<String>> publisher : publishers) {
+            publisher.accept(changed);
+        }
+    }
+
+    /**
+     * Records a write learned from another node or from the database.
+     */
+    public void bumpRemote(Collection<String> tables) {
+        if (!tables.isEmpty()) {
+            Set<String> changed = apply(tables);
+            for (Consumer<Set<String>> listener : remoteListeners) {
+                listener.accept(changed);
+            }
+        }
+    }
+
+    private Set<String> apply(Collection<String> tables) {
+        for (String table : tables) {
+            counter(table).incrementAndGet();
+        }
+        Set<String> changed = Set.copyOf(tables);
+        for (Consumer<Set<String>> listener : listeners) {
+            listener.accept(changed);
+        }
+        return changed;
+    }
+
+    /**
+     * Invalidates everything derived from any table, for when it is no longer known what changed.
+     */
+    public void bumpAll() {
+        epoch.incrementAndGet();
+        for (Consumer<Set<String>> listener : listeners) {
+            listener.accept(null);
+        }
+        for (Consumer<Set<String>> listener : remoteListeners) {
+            listener.accept(null);
+        }
+    }
+
+    private AtomicLong counter(String table) {
+        return versions.computeIfAbsent(table, t -> new AtomicLong());
+    }
+}
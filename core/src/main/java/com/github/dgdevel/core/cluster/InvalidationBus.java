@@ -0,0 +1,251 @@
+package com.github.dgdevel.core.cluster;
+
+import com.github.dgdevel.core.cache.TableVersions;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells the other nodes sharing the database which tables this node wrote, so their caches drop
+ * stale entries without waiting for the change poll. Every node listens on its cluster port and
+ * connects to each configured peer; it sends on the connections it opened and receives on those it
+ * accepted.
+ *
+ * <p>An event is a MessagePack array {@code [nodeId, seq, tables]}, length-prefixed. Sequence
+ * numbers count up from 1 per node id, and the node id is drawn at random on every start. A
+ * connection opens with a hello, {@code [nodeId, seq, nil]}, carrying the sender's current
+ * sequence. When a receiver sees a sequence it did not expect (events sent while the connection
+ * was down, or a peer it has never heard from that already wrote), it cannot tell what it missed
+ * and flushes every cache with {@link TableVersions#bumpAll()}.
+ */
+public class InvalidationBus {
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final TableVersions tableVersions;
+    private final String bindAddress;
+    private final int port;
+    private final List<InetSocketAddress> peers;
+    private final long nodeId = ThreadLocalRandom.current().nextLong();
+    private final Map<InetSocketAddress, Channel> outbound = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lastSeq = new ConcurrentHashMap<>();
+    private final AtomicLong gapFlushes = new AtomicLong();
+    private long seq;
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private volatile boolean closed;
+
+    public InvalidationBus(TableVersions tableVersions, String bindAddress, int port, List<InetSocketAddress> peers) {
+        this.tableVersions = tableVersions;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.peers = peers;
+    }
+
+    public void start() throws InterruptedException {
+        group = new NioEventLoopGroup(1);
+        ServerBootstrap bootstrap = new ServerBootstrap()
+            .group(group)
+            .channel(NioServerSocketChannel.class)
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(65536, 0, 4, 0, 4));
+                    ch.pipeline().addLast(new Receiver());
+                }
+            });
+        serverChannel = bootstrap.bind(bindAddress, port).sync().channel();
+        tableVersions.addPublisher(this::publish);
+        for (InetSocketAddress peer : peers) {
+            connect(peer);
+        }
+        System.out.println("[CLUSTER] Node " + Long.toHexString(nodeId) + " listening on port " + port + ", peers " + peers);
+    }
+
+    public void close() {
+        closed = true;
+        if (serverChannel != null) {
+            serverChannel.close().awaitUninterruptibly();
+        }
+        for (Channel channel : outbound.values()) {
+            channel.close().awaitUninterruptibly();
+        }
+        if (group != null) {
+            group.shutdownGracefully(0, 2, TimeUnit.SECONDS).awaitUninterruptibly();
+        }
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    public int getConnectedPeers() {
+        return outbound.size();
+    }
+
+    /**
+     * @return how many times a sequence gap forced a full cache flush
+     */
+    public long getGapFlushes() {
+        return gapFlushes.get();
+    }
+
+    private void connect(InetSocketAddress peer) {
+        if (closed) {
+            return;
+        }
+        Bootstrap bootstrap = new Bootstrap()
+            .group(group)
+            .channel(NioSocketChannel.class)
+            .option(ChannelOption.TCP_NODELAY, true)
+            .handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(new LengthFieldPrepender(4));
+                    ch.pipeline().addLast(new Sender(peer));
+                }
+            });
+        bootstrap.connect(peer).addListener((ChannelFuture future) -> {
+            if (!future.isSuccess()) {
+                scheduleReconnect(peer);
+            }
+        });
+    }
+
+    private void scheduleReconnect(InetSocketAddress peer) {
+        if (!closed) {
+            group.schedule(() -> connect(peer), RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void publish(Set<String> tables) {
+        seq++;
+        ByteBuf frame = encode(seq, tables);
+        try {
+            for (Channel channel : outbound.values()) {
+                channel.writeAndFlush(frame.retainedDuplicate());
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    // under the publish lock, so that no event is sent to the peer ahead of its hello
+    private synchronized void connected(InetSocketAddress peer, Channel channel) {
+        outbound.put(peer, channel);
+        channel.writeAndFlush(encode(seq, null));
+    }
+
+    private ByteBuf encode(long seq, Set<String> tables) {
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            packer.packArrayHeader(3);
+            packer.packLong(nodeId);
+            packer.packLong(seq);
+            if (tables == null) {
+                packer.packNil();
+            } else {
+                packer.packArrayHeader(tables.size());
+                for (String table : tables) {
+                    packer.packString(table);
+                }
+            }
+            return Unpooled.wrappedBuffer(packer.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Applies an event, or a hello when {@code tables} is null.
+     */
+    void receive(long sender, long seq, Set<String> tables) {
+        Long last = lastSeq.put(sender, seq);
+        long expected = last == null ? 0 : tables == null ? last : last + 1;
+        if (seq != expected) {
+            System.out.println("[CLUSTER] Node " + Long.toHexString(sender) + " sent seq " + seq + ", expected " + expected + "; flushing caches");
+            tableVersions.bumpAll();
+            gapFlushes.incrementAndGet();
+        } else if (tables != null) {
+            tableVersions.bumpRemote(tables);
+        }
+    }
+
+    private final class Sender extends ChannelInboundHandlerAdapter {
+        private final InetSocketAddress peer;
+
+        Sender(InetSocketAddress peer) {
+            this.peer = peer;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            connected(peer, ctx.channel());
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            outbound.remove(peer, ctx.channel());
+            scheduleReconnect(peer);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+
+    private final class Receiver extends SimpleChannelInboundHandler<ByteBuf> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) throws IOException {
+            try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(ByteBufUtil.getBytes(frame))) {
+                unpacker.unpackArrayHeader();
+                long sender = unpacker.unpackLong();
+                long seq = unpacker.unpackLong();
+                Set<String> tables = null;
+                if (!unpacker.tryUnpackNil()) {
+                    int count = unpacker.unpackArrayHeader();
+                    tables = new HashSet<>();
+                    for (int i = 0; i < count; i++) {
+                        tables.add(unpacker.unpackString());
+                    }
+                }
+                receive(sender, seq, tables);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            System.out.println("[CLUSTER] Dropping peer connection: " + cause.getMessage());
+            ctx.close();
+        }
+    }
+}
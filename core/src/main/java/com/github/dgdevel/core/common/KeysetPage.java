@@ -0,0 +1,34 @@
+package com.github.dgdevel.core.common;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * A page of a keyset-paginated listing. The next page is requested with {@code nextAfter}, which
+ * is null on the last page.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class KeysetPage<T> {
+  @JsonProperty("page")
+  private List<T> page;
+
+  @JsonProperty("nextAfter")
+  private Long nextAfter;
+
+  public List<T> getPage() {
+    return page;
+  }
+
+  public void setPage(List<T> page) {
+    this.page = page;
+  }
+
+  public Long getNextAfter() {
+    return nextAfter;
+  }
+
+  public void setNextAfter(Long nextAfter) {
+    this.nextAfter = nextAfter;
+  }
+}
@@ -3,6 +3,10 @@ package com.github.dgdevel.core.config;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public class Config {
@@ -12,6 +16,35 @@ public class Config {
     private final String dbUrl;
     private final String dbUsername;
     private final String dbPassword;
+    private int dbPoolSize = 8;
+    private boolean groupCommit = false;
+    private long groupCommitWindowMillis = 5;
+    private int groupCommitMaxBatch = 64;
+    private List<String> dbReadUrls = new ArrayList<>();
+    private long readYourWritesMillis = 1000;
+    private int auditRetentionMonths = 0;
+    private String auditArchiveDir = "audit-archive";
+    private String auditBackend = "jdbc";
+    private String auditSegmentDir = "audit-segments";
+    private double rateLimitPerIp = 0;
+    private double rateLimitPerIpBurst = 0;
+    private double rateLimitPerPrincipal = 0;
+    private double rateLimitPerPrincipalBurst = 0;
+    private int maxInFlight = 0;
+    private Map<String, Integer> methodConcurrency = new LinkedHashMap<>();
+    private int workerThreads = 32;
+    private long defaultRequestTimeoutMillis = 0;
+    private Map<String, Long> methodTimeouts = new LinkedHashMap<>();
+    private long drainTimeoutMillis = 10000;
+    private boolean reusePort = false;
+    private String referenceDataLoading = "eager";
+    private int resultCacheSize = 10000;
+    private boolean changeTriggers = false;
+    private long changePollMillis = 200;
+    private int clusterPort = 0;
+    private List<String> clusterPeers = new ArrayList<>();
+    private List<String> indexedAttributes = new ArrayList<>();
+    private long healthCheckMillis = 1000;
     private static final String DEFAULT_CONFIG_FILE = "config.ini";
 
     public Config(String bindAddress, int jsonRpcPort, int msgPackPort, String dbUrl, String dbUsername, String dbPassword) {
@@ -47,6 +80,238 @@ public class Config {
         return dbPassword;
     }
 
+    public int getDbPoolSize() {
+        return dbPoolSize;
+    }
+
+    public void setDbPoolSize(int dbPoolSize) {
+        this.dbPoolSize = dbPoolSize;
+    }
+
+    public boolean isGroupCommit() {
+        return groupCommit;
+    }
+
+    public void setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    public long getGroupCommitWindowMillis() {
+        return groupCommitWindowMillis;
+    }
+
+    public void setGroupCommitWindowMillis(long groupCommitWindowMillis) {
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    public int getGroupCommitMaxBatch() {
+        return groupCommitMaxBatch;
+    }
+
+    public void setGroupCommitMaxBatch(int groupCommitMaxBatch) {
+        this.groupCommitMaxBatch = groupCommitMaxBatch;
+    }
+
+    public List<String> getDbReadUrls() {
+        return dbReadUrls;
+    }
+
+    public void setDbReadUrls(List<String> dbReadUrls) {
+        this.dbReadUrls = dbReadUrls;
+    }
+
+    public long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+
+    public void setReadYourWritesMillis(long readYourWritesMillis) {
+        this.readYourWritesMillis = readYourWritesMillis;
+    }
+
+    public int getAuditRetentionMonths() {
+        return auditRetentionMonths;
+    }
+
+    public void setAuditRetentionMonths(int auditRetentionMonths) {
+        this.auditRetentionMonths = auditRetentionMonths;
+    }
+
+    public String getAuditArchiveDir() {
+        return auditArchiveDir;
+    }
+
+    public void setAuditArchiveDir(String auditArchiveDir) {
+        this.auditArchiveDir = auditArchiveDir;
+    }
+
+    public String getAuditBackend() {
+        return auditBackend;
+    }
+
+    public void setAuditBackend(String auditBackend) {
+        this.auditBackend = auditBackend;
+    }
+
+    public String getAuditSegmentDir() {
+        return auditSegmentDir;
+    }
+
+    public void setAuditSegmentDir(String auditSegmentDir) {
+        this.auditSegmentDir = auditSegmentDir;
+    }
+
+    public double getRateLimitPerIp() {
+        return rateLimitPerIp;
+    }
+
+    public void setRateLimitPerIp(double rateLimitPerIp) {
+        this.rateLimitPerIp = rateLimitPerIp;
+    }
+
+    public double getRateLimitPerIpBurst() {
+        return rateLimitPerIpBurst;
+    }
+
+    public void setRateLimitPerIpBurst(double rateLimitPerIpBurst) {
+        this.rateLimitPerIpBurst = rateLimitPerIpBurst;
+    }
+
+    public double getRateLimitPerPrincipal() {
+        return rateLimitPerPrincipal;
+    }
+
+    public void setRateLimitPerPrincipal(double rateLimitPerPrincipal) {
+        this.rateLimitPerPrincipal = rateLimitPerPrincipal;
+    }
+
+    public double getRateLimitPerPrincipalBurst() {
+        return rateLimitPerPrincipalBurst;
+    }
+
+    public void setRateLimitPerPrincipalBurst(double rateLimitPerPrincipalBurst) {
+        this.rateLimitPerPrincipalBurst = rateLimitPerPrincipalBurst;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Map<String, Integer> getMethodConcurrency() {
+        return methodConcurrency;
+    }
+
+    public void setMethodConcurrency(Map<String, Integer> methodConcurrency) {
+        this.methodConcurrency = methodConcurrency;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public long getDefaultRequestTimeoutMillis() {
+        return defaultRequestTimeoutMillis;
+    }
+
+    public void setDefaultRequestTimeoutMillis(long defaultRequestTimeoutMillis) {
+        this.defaultRequestTimeoutMillis = defaultRequestTimeoutMillis;
+    }
+
+    public Map<String, Long> getMethodTimeouts() {
+        return methodTimeouts;
+    }
+
+    public void setMethodTimeouts(Map<String, Long> methodTimeouts) {
+        this.methodTimeouts = methodTimeouts;
+    }
+
+    public long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    public String getReferenceDataLoading() {
+        return referenceDataLoading;
+    }
+
+    public void setReferenceDataLoading(String referenceDataLoading) {
+        this.referenceDataLoading = referenceDataLoading;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public boolean isChangeTriggers() {
+        return changeTriggers;
+    }
+
+    public void setChangeTriggers(boolean changeTriggers) {
+        this.changeTriggers = changeTriggers;
+    }
+
+    public long getChangePollMillis() {
+        return changePollMillis;
+    }
+
+    public void setChangePollMillis(long changePollMillis) {
+        this.changePollMillis = changePollMillis;
+    }
+
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    public void setClusterPort(int clusterPort) {
+        this.clusterPort = clusterPort;
+    }
+
+    public List<String> getClusterPeers() {
+        return clusterPeers;
+    }
+
+    public void setClusterPeers(List<String> clusterPeers) {
+        this.clusterPeers = clusterPeers;
+    }
+
+    public List<String> getIndexedAttributes() {
+        return indexedAttributes;
+    }
+
+    public void setIndexedAttributes(List<String> indexedAttributes) {
+        this.indexedAttributes = indexedAttributes;
+    }
+
+    public long getHealthCheckMillis() {
+        return healthCheckMillis;
+    }
+
+    public void setHealthCheckMillis(long healthCheckMillis) {
+        this.healthCheckMillis = healthCheckMillis;
+    }
+
     public static Config load(String[] args) throws IOException {
         if (args.length > 0) {
             return fromArgs(args);
@@ -83,7 +348,68 @@ public class Config {
         String dbUsername = props.getProperty("dbUsername", null);
         String dbPassword = props.getProperty("dbPassword", null);
         
-        return new Config(bindAddress, jsonRpcPort, msgPackPort, dbUrl, dbUsername, dbPassword);
+        Config config = new Config(bindAddress, jsonRpcPort, msgPackPort, dbUrl, dbUsername, dbPassword);
+        config.setDbPoolSize(Integer.parseInt(props.getProperty("dbPoolSize", "8")));
+        config.setGroupCommit(Boolean.parseBoolean(props.getProperty("groupCommit", "false")));
+        config.setGroupCommitWindowMillis(Long.parseLong(props.getProperty("groupCommitWindowMillis", "5")));
+        config.setGroupCommitMaxBatch(Integer.parseInt(props.getProperty("groupCommitMaxBatch", "64")));
+        String dbReadUrls = props.getProperty("dbReadUrls", "");
+        for (String readUrl : dbReadUrls.split(",")) {
+            if (!readUrl.trim().isEmpty()) {
+                config.getDbReadUrls().add(readUrl.trim());
+            }
+        }
+        config.setReadYourWritesMillis(Long.parseLong(props.getProperty("readYourWritesMillis", "1000")));
+        config.setAuditRetentionMonths(Integer.parseInt(props.getProperty("auditRetentionMonths", "0")));
+        config.setAuditArchiveDir(props.getProperty("auditArchiveDir", "audit-archive"));
+        config.setAuditBackend(props.getProperty("auditBackend", "jdbc"));
+        config.setAuditSegmentDir(props.getProperty("auditSegmentDir", "audit-segments"));
+        config.setRateLimitPerIp(Double.parseDouble(props.getProperty("rateLimitPerIp", "0")));
+        config.setRateLimitPerIpBurst(Double.parseDouble(props.getProperty("rateLimitPerIpBurst", "0")));
+        config.setRateLimitPerPrincipal(Double.parseDouble(props.getProperty("rateLimitPerPrincipal", "0")));
+        config.setRateLimitPerPrincipalBurst(Double.parseDouble(props.getProperty("rateLimitPerPrincipalBurst", "0")));
+        config.setMaxInFlight(Integer.parseInt(props.getProperty("maxInFlight", "0")));
+        for (Map.Entry<String, String> entry : parseMethodMap(props.getProperty("methodConcurrency", "")).entrySet()) {
+            config.getMethodConcurrency().put(entry.getKey(), Integer.parseInt(entry.getValue()));
+        }
+        config.setWorkerThreads(Integer.parseInt(props.getProperty("workerThreads", "32")));
+        config.setDefaultRequestTimeoutMillis(Long.parseLong(props.getProperty("defaultRequestTimeoutMillis", "0")));
+        for (Map.Entry<String, String> entry : parseMethodMap(props.getProperty("methodTimeouts", "")).entrySet()) {
+            config.getMethodTimeouts().put(entry.getKey(), Long.parseLong(entry.getValue()));
+        }
+        config.setDrainTimeoutMillis(Long.parseLong(props.getProperty("drainTimeoutMillis", "10000")));
+        config.setReusePort(Boolean.parseBoolean(props.getProperty("reusePort", "false")));
+        config.setReferenceDataLoading(props.getProperty("referenceDataLoading", "eager"));
+        config.setResultCacheSize(Integer.parseInt(props.getProperty("resultCacheSize", "10000")));
+        config.setChangeTriggers(Boolean.parseBoolean(props.getProperty("changeTriggers", "false")));
+        config.setChangePollMillis(Long.parseLong(props.getProperty("changePollMillis", "200")));
+        config.setClusterPort(Integer.parseInt(props.getProperty("clusterPort", "0")));
+        for (String peer : props.getProperty("clusterPeers", "").split(",")) {
+            if (!peer.trim().isEmpty()) {
+                config.getClusterPeers().add(peer.trim());
+            }
+        }
+        config.setHealthCheckMillis(Long.parseLong(props.getProperty("healthCheckMillis", "1000")));
+        for (String name : props.getProperty("indexedAttributes", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                config.getIndexedAttributes().add(name.trim());
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Parses {@code method:value} pairs separated by commas, e.g. {@code user/findBy:8,audit/list:4}.
+     */
+    private static Map<String, String> parseMethodMap(String value) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator > 0) {
+                map.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+            }
+        }
+        return map;
     }
 
     private static Config defaults() {
@@ -0,0 +1,45 @@
+package com.github.dgdevel.core.db;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AuditRetentionJob implements Runnable {
+    private final DatabaseManager databaseManager;
+    private final Path archiveDir;
+    private final int retainMonths;
+
+    public AuditRetentionJob(DatabaseManager databaseManager, Path archiveDir, int retainMonths) {
+        this.databaseManager = databaseManager;
+        this.archiveDir = archiveDir;
+        this.retainMonths = retainMonths;
+    }
+
+    public List<Integer> archiveExpiredPartitions() throws SQLException {
+        int oldestRetained = DatabaseManager.partitionMonth(Timestamp.valueOf(LocalDateTime.now().minusMonths(retainMonths)));
+        List<Integer> archived = new ArrayList<>();
+        for (Integer partition : databaseManager.getAuditPartitions()) {
+            if (partition < oldestRetained) {
+                long rows = databaseManager.archiveAuditPartition(partition, archiveDir);
+                if (rows > 0) {
+                    // 0 when another node archived it first
+                    System.out.println("[AUDIT] Archived partition " + partition + " (" + rows + " rows) to " + archiveDir);
+                    archived.add(partition);
+                }
+            }
+        }
+        return archived;
+    }
+
+    @Override
+    public void run() {
+        try {
+            archiveExpiredPartitions();
+        } catch (Exception e) {
+            System.out.println("[AUDIT] Retention run failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.dgdevel.core.db;
+
+import com.github.dgdevel.core.common.PaginatedList;
+import com.github.dgdevel.core.common.Paginator;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Storage backend for audit/log and audit/list when the audit_log table is not used.
+ */
+public interface AuditStore extends AutoCloseable {
+    Long log(Long userId, String typeCode, String payload) throws SQLException;
+
+    PaginatedList<Map<String, Object>> list(Paginator paginator) throws SQLException;
+
+    /**
+     * Makes buffered entries durable and visible to {@link #list}; a no-op for stores that do not
+     * buffer.
+     */
+    default void flush() throws SQLException {
+    }
+
+    @Override
+    void close() throws SQLException;
+}
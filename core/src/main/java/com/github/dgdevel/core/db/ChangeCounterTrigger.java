@@ -0,0 +1,57 @@
+package com.github.dgdevel.core.db;
+
+import org.h2.api.Trigger;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Statement-level trigger bumping the row of its table in {@code table_changes} once per writing
+ * statement, however many rows it touches. It runs in the writer's transaction, so the counter
+ * moves exactly when the write commits, whichever tool made it. The triggers are installed only
+ * when {@code changeTriggers} is set, and from then on the class has to be on the classpath of
+ * every process writing to the database.
+ *
+ * <p>Each increment is also counted in a variable of the writing session, which
+ * {@link LocalChanges} reads to tell this node's writes from everyone else's.
+ */
+public class ChangeCounterTrigger implements Trigger {
+    private String tableName;
+    private String countSql;
+
+    static String variable(String tableName) {
+        return "@table_changes_" + tableName;
+    }
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) {
+        this.tableName = tableName.toLowerCase(Locale.ROOT);
+        String variable = variable(this.tableName);
+        this.countSql = "SET " + variable + " = COALESCE(" + variable + ", 0) + 1";
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        // H2 suspends autocommit only around row-level triggers; without this an autocommit writer's
+        // statement would try to commit from inside the trigger
+        Session session = conn.unwrap(JdbcConnection.class).getSession();
+        boolean autoCommit = session.getAutoCommit();
+        session.setAutoCommit(false);
+        try {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE table_changes SET version = version + 1 WHERE table_name = ?")) {
+                stmt.setString(1, tableName);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(countSql)) {
+                stmt.execute();
+            }
+        } finally {
+            session.setAutoCommit(autoCommit);
+        }
+    }
+}
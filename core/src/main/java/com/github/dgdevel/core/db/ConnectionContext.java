@@ -0,0 +1,68 @@
+package com.github.dgdevel.core.db;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binds a connection to the current thread for the duration of a unit of work, so that
+ * registries built on the shared connection transparently run their statements on it. When a
+ * {@link QueryDeadline} is bound as well, the resolved connection applies it to every statement.
+ * Actions registered with {@link #afterCommit} run once the unit of work has committed.
+ */
+public final class ConnectionContext {
+    private static final ThreadLocal<Connection> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<List<Runnable>> AFTER_COMMIT = new ThreadLocal<>();
+
+    private ConnectionContext() {
+    }
+
+    public static Connection resolve(Connection fallback) {
+        Connection bound = CURRENT.get();
+        Connection connection = bound != null ? bound : fallback;
+        QueryDeadline deadline = QueryDeadline.current();
+        return deadline != null && connection != null ? deadline.wrap(connection) : connection;
+    }
+
+    public static boolean isBound() {
+        return CURRENT.get() != null;
+    }
+
+    static Connection current() {
+        return CURRENT.get();
+    }
+
+    static void bind(Connection connection) {
+        CURRENT.set(connection);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Runs {@code action} after the current unit of work commits, or drops it if the unit rolls
+     * back. Outside a unit of work the statements already ran in auto-commit, so it runs now.
+     */
+    public static void afterCommit(Runnable action) {
+        List<Runnable> actions = AFTER_COMMIT.get();
+        if (actions != null) {
+            actions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    static void beginUnit() {
+        AFTER_COMMIT.set(new ArrayList<>());
+    }
+
+    /**
+     * @return the actions registered since {@link #beginUnit}
+     */
+    static List<Runnable> endUnit() {
+        List<Runnable> actions = AFTER_COMMIT.get();
+        AFTER_COMMIT.remove();
+        return actions != null ? actions : List.of();
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.dgdevel.core.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+public class ConnectionPool implements AutoCloseable {
+    private final String dbUrl;
+    private final String dbUsername;
+    private final String dbPassword;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private int open;
+    private boolean closed;
+
+    public ConnectionPool(String dbUrl, String dbUsername, String dbPassword, int maxSize, long acquireTimeoutMillis) {
+        this.dbUrl = dbUrl;
+        this.dbUsername = dbUsername;
+        this.dbPassword = dbPassword;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public Connection acquire() throws SQLException {
+        long deadline = System.currentTimeMillis() + acquireTimeoutMillis;
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                Connection connection = idle.pollFirst();
+                if (connection != null) {
+                    if (!connection.isClosed()) {
+                        return connection;
+                    }
+                    open--;
+                    continue;
+                }
+                if (open < maxSize) {
+                    open++;
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out waiting for a database connection");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection", e);
+                }
+            }
+        }
+        try {
+            return openConnection(dbUrl, dbUsername, dbPassword);
+        } catch (SQLException e) {
+            synchronized (this) {
+                open--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    public void release(Connection connection) {
+        synchronized (this) {
+            if (!closed) {
+                idle.addFirst(connection);
+                notifyAll();
+                return;
+            }
+            open--;
+        }
+        closeQuietly(connection);
+    }
+
+    public synchronized int getOpenCount() {
+        return open;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void close() {
+        Deque<Connection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            open -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        for (Connection connection : toClose) {
+            closeQuietly(connection);
+        }
+    }
+
+    static Connection openConnection(String dbUrl, String dbUsername, String dbPassword) throws SQLException {
+        if (dbUsername != null && !dbUsername.isEmpty()) {
+            return DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
+        }
+        return DriverManager.getConnection(dbUrl);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.out.println("[POOL] Closing a connection failed: " + e.getMessage());
+        }
+    }
+}
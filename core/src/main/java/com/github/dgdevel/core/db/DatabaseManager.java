@@ -2,42 +2,100 @@ package com.github.dgdevel.core.db;
 
 import com.github.dgdevel.core.common.PaginatedList;
 import com.github.dgdevel.core.common.Paginator;
+import com.github.dgdevel.core.config.Config;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatabaseManager {
     private Connection connection;
     private final String dbUrl;
     private final String dbUsername;
     private final String dbPassword;
+    private final int poolSize;
+    private final boolean groupCommit;
+    private final long groupCommitWindowMillis;
+    private final int groupCommitMaxBatch;
+    private final List<String> dbReadUrls;
+    private final long readYourWritesMillis;
+    private final String auditBackend;
+    private final String auditSegmentDir;
+    private final boolean changeTriggers;
+    private AuditStore auditStore;
+    private ConnectionPool pool;
+    private TransactionManager transactionManager;
+    private LocalChanges localChanges;
+    private final List<ConnectionPool> replicaPools = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
 
     public DatabaseManager(String dbUrl, String dbUsername, String dbPassword) {
-        this.dbUrl = dbUrl;
-        this.dbUsername = dbUsername;
-        this.dbPassword = dbPassword;
+        this(new Config("0.0.0.0", 8080, 8081, dbUrl, dbUsername, dbPassword));
+    }
+
+    public DatabaseManager(Config config) {
+        this.dbUrl = config.getDbUrl();
+        this.dbUsername = config.getDbUsername();
+        this.dbPassword = config.getDbPassword();
+        this.poolSize = config.getDbPoolSize();
+        this.groupCommit = config.isGroupCommit();
+        this.groupCommitWindowMillis = config.getGroupCommitWindowMillis();
+        this.groupCommitMaxBatch = config.getGroupCommitMaxBatch();
+        this.dbReadUrls = config.getDbReadUrls();
+        this.readYourWritesMillis = config.getReadYourWritesMillis();
+        this.auditBackend = config.getAuditBackend();
+        this.auditSegmentDir = config.getAuditSegmentDir();
+        this.changeTriggers = config.isChangeTriggers();
     }
 
     public void connect() throws SQLException {
-        if (dbUsername != null && !dbUsername.isEmpty()) {
-            connection = DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
+        connection = ConnectionPool.openConnection(dbUrl, dbUsername, dbPassword);
+        initializeSchema();
+        if (changeTriggers) {
+            installChangeTriggers();
+        }
+        localChanges = new LocalChanges(changeTriggers ? new TreeSet<>(getTableChangeCounters().keySet()) : java.util.Set.of());
+        pool = new ConnectionPool(dbUrl, dbUsername, dbPassword, poolSize, 30000);
+        if (groupCommit) {
+            transactionManager = new TransactionManager(pool, localChanges,
+                    ConnectionPool.openConnection(dbUrl, dbUsername, dbPassword), groupCommitWindowMillis, groupCommitMaxBatch);
         } else {
-            connection = DriverManager.getConnection(dbUrl);
+            transactionManager = new TransactionManager(pool, localChanges);
+        }
+        for (String readUrl : dbReadUrls) {
+            replicaPools.add(new ConnectionPool(readUrl, dbUsername, dbPassword, poolSize, 30000));
+        }
+        if ("segment".equals(auditBackend)) {
+            auditStore = new SegmentAuditStore(java.nio.file.Paths.get(auditSegmentDir));
         }
-        initializeSchema();
     }
 
     public void disconnect() throws SQLException {
+        if (auditStore != null) {
+            auditStore.close();
+            auditStore = null;
+        }
+        for (ConnectionPool replicaPool : replicaPools) {
+            replicaPool.close();
+        }
+        replicaPools.clear();
+        if (transactionManager != null) {
+            transactionManager.close();
+            transactionManager = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
         if (connection != null && !connection.isClosed()) {
             connection.close();
         }
@@ -56,58 +114,102 @@ public class DatabaseManager {
         return connection;
     }
 
-    private void initializeSchema() throws SQLException {
+    public AuditStore getAuditStore() {
+        return auditStore;
+    }
+
+    /**
+     * Opens a primary connection outside the pool, for background work that must not wait behind
+     * requests for a pooled one. The caller closes it.
+     */
+    public Connection openConnection() throws SQLException {
+        return ConnectionPool.openConnection(dbUrl, dbUsername, dbPassword);
+    }
+
+    /**
+     * The {@code table_changes} increments made by this node's own write transactions.
+     */
+    public LocalChanges getLocalChanges() {
+        return localChanges;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public TransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        return transactionManager.execute(work);
+    }
+
+    public boolean hasReplicas() {
+        return !replicaPools.isEmpty();
+    }
+
+    public <T> T onReplica(SqlWork<T> work) throws SQLException {
+        return onReplica(work, 0);
+    }
+
+    /**
+     * Runs a read-only unit of work on the next replica in round-robin order. Falls back to the
+     * primary when no replica is configured, when already inside a transaction, or when the caller
+     * wrote less than readYourWritesMillis ago and must see its own changes.
+     */
+    public <T> T onReplica(SqlWork<T> work, long lastWriteMillis) throws SQLException {
+        if (replicaPools.isEmpty() || ConnectionContext.isBound()
+                || System.currentTimeMillis() - lastWriteMillis < readYourWritesMillis) {
+            return work.run();
+        }
+        ConnectionPool replicaPool = replicaPools.get(Math.floorMod(nextReplica.getAndIncrement(), replicaPools.size()));
+        Connection replica = replicaPool.acquire();
         try {
-            var schemaFiles = getClass().getClassLoader().getResources("schema");
-            java.util.ArrayList<String> schemaPaths = new java.util.ArrayList<>();
-            while (schemaFiles.hasMoreElements()) {
-                java.net.URL url = schemaFiles.nextElement();
-                if ("file".equals(url.getProtocol())) {
-                    java.io.File dir = new java.io.File(url.toURI());
-                    java.io.File[] files = dir.listFiles((d, name) -> name.endsWith(".sql"));
-                    if (files != null) {
-                        for (java.io.File file : files) {
-                            schemaPaths.add(file.getAbsolutePath());
-                        }
-                    }
-                } else if ("jar".equals(url.getProtocol())) {
-                    try (java.util.jar.JarFile jarFile = new java.util.jar.JarFile(url.getPath().split("!")[0].substring("file:".length()))) {
-                        java.util.Enumeration<java.util.jar.JarEntry> entries = jarFile.entries();
-                        while (entries.hasMoreElements()) {
-                            java.util.jar.JarEntry entry = entries.nextElement();
-                            if (entry.getName().startsWith("schema/") && entry.getName().endsWith(".sql")) {
-                                schemaPaths.add(entry.getName());
-                            }
-                        }
-                    }
-                }
+            ConnectionContext.bind(replica);
+            try {
+                return work.run();
+            } finally {
+                ConnectionContext.unbind();
             }
-            java.util.Collections.sort(schemaPaths);
-            for (String schemaPath : schemaPaths) {
-                String resourceName = schemaPath.contains("/") ? schemaPath.substring(schemaPath.indexOf("schema/")) : "schema/" + new java.io.File(schemaPath).getName();
-                InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourceName);
-                if (inputStream != null) {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                    StringBuilder sql = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sql.append(line).append("\n");
-                    }
-                    try (Statement stmt = connection.createStatement()) {
-                        stmt.execute(sql.toString());
-                    }
-                    reader.close();
-                    inputStream.close();
-                }
+        } finally {
+            replicaPool.release(replica);
+        }
+    }
+
+    /**
+     * Runs a read on a pooled primary connection of its own, outside any transaction or replica the
+     * calling thread is bound to, so it sees exactly what has been committed.
+     */
+    public <T> T onPooledConnection(SqlWork<T> work) throws SQLException {
+        Connection previous = ConnectionContext.current();
+        Connection pooled = pool.acquire();
+        try {
+            ConnectionContext.bind(pooled);
+            return work.run();
+        } finally {
+            if (previous != null) {
+                ConnectionContext.bind(previous);
+            } else {
+                ConnectionContext.unbind();
             }
-        } catch (Exception e) {
-            throw new SQLException("Failed to initialize database schema: " + e.getMessage(), e);
+            pool.release(pooled);
+        }
+    }
+
+    private Connection connection() {
+        return ConnectionContext.resolve(connection);
+    }
+
+    private void initializeSchema() throws SQLException {
+        try (Connection lockConnection = openConnection()) {
+            new SchemaMigrator(connection, lockConnection).migrate();
         }
     }
 
     public Timestamp getCurrentTimestamp() throws SQLException {
         String sql = "SELECT CURRENT_TIMESTAMP";
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+        try (PreparedStatement stmt = connection().prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) {
                 return rs.getTimestamp(1);
@@ -118,7 +220,7 @@ public class DatabaseManager {
 
     public boolean setConfigValue(String namespace, String key, String value) throws SQLException {
         String sql = "MERGE INTO config (namespace, config_key, config_value, updated_at) KEY (namespace, config_key) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement stmt = connection().prepareStatement(sql)) {
             stmt.setString(1, namespace);
             stmt.setString(2, key);
             stmt.setString(3, value);
@@ -129,7 +231,7 @@ public class DatabaseManager {
 
     public String getConfigValue(String namespace, String key) throws SQLException {
         String sql = "SELECT config_value FROM config WHERE namespace = ? AND config_key = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement stmt = connection().prepareStatement(sql)) {
             stmt.setString(1, namespace);
             stmt.setString(2, key);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -143,7 +245,7 @@ public class DatabaseManager {
 
     public Map<String, String> getAllConfigValues() throws SQLException {
         String sql = "SELECT namespace, config_key, config_value FROM config ORDER BY namespace, config_key";
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+        try (PreparedStatement stmt = connection().prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             Map<String, String> configValues = new HashMap<>();
             while (rs.next()) {
@@ -157,9 +259,53 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * @return every configuration value, by namespace and then by key
+     */
+    public Map<String, Map<String, String>> getConfigTable() throws SQLException {
+        String sql = "SELECT namespace, config_key, config_value FROM config";
+        try (PreparedStatement stmt = connection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            Map<String, Map<String, String>> table = new HashMap<>();
+            while (rs.next()) {
+                table.computeIfAbsent(rs.getString(1), namespace -> new HashMap<>()).put(rs.getString(2), rs.getString(3));
+            }
+            return table;
+        }
+    }
+
+    /**
+     * @return the change counter of every tracked table, maintained by {@link ChangeCounterTrigger}
+     */
+    /**
+     * Puts a {@link ChangeCounterTrigger} on every table listed in {@code table_changes}. The
+     * triggers stay once installed, so every process writing to the database needs the trigger
+     * class from then on.
+     */
+    private void installChangeTriggers() throws SQLException {
+        for (String table : new TreeSet<>(getTableChangeCounters().keySet())) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_changes AFTER INSERT, UPDATE, DELETE ON " + table
+                    + " CALL '" + ChangeCounterTrigger.class.getName() + "'");
+            }
+        }
+    }
+
+    public Map<String, Long> getTableChangeCounters() throws SQLException {
+        String sql = "SELECT table_name, version FROM table_changes";
+        try (PreparedStatement stmt = connection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            Map<String, Long> counters = new HashMap<>();
+            while (rs.next()) {
+                counters.put(rs.getString(1), rs.getLong(2));
+            }
+            return counters;
+        }
+    }
+
     private Long getOrCreateLogTypeId(String typeCode) throws SQLException {
         String selectSql = "SELECT id FROM audit_log_type WHERE code = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(selectSql)) {
+        try (PreparedStatement stmt = connection().prepareStatement(selectSql)) {
             stmt.setString(1, typeCode);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -169,7 +315,7 @@ public class DatabaseManager {
         }
 
         String insertSql = "INSERT INTO audit_log_type (code) VALUES (?)";
-        try (PreparedStatement stmt = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = connection().prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, typeCode);
             int affectedRows = stmt.executeUpdate();
             if (affectedRows > 0) {
@@ -184,9 +330,12 @@ public class DatabaseManager {
     }
 
     public Long auditLog(Long userId, String typeCode, String payload) throws SQLException {
+        if (auditStore != null) {
+            return auditStore.log(userId, typeCode, payload);
+        }
         Long logTypeId = getOrCreateLogTypeId(typeCode);
         String sql = "INSERT INTO audit_log (instant_at, user_id, log_type_id, payload) VALUES (CURRENT_TIMESTAMP, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = connection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             if (userId != null) {
                 stmt.setLong(1, userId);
             } else {
@@ -207,6 +356,9 @@ public class DatabaseManager {
     }
 
     public PaginatedList auditLogList(Paginator paginator) throws SQLException {
+        if (auditStore != null) {
+            return auditStore.list(paginator);
+        }
         StringBuilder baseSql = new StringBuilder("SELECT COUNT(*) FROM audit_log al JOIN audit_log_type alt ON al.log_type_id = alt.id");
         StringBuilder selectSql = new StringBuilder("SELECT al.id, al.instant_at, al.user_id, alt.code as type_code, al.payload FROM audit_log al JOIN audit_log_type alt ON al.log_type_id = alt.id");
 
@@ -217,7 +369,7 @@ public class DatabaseManager {
         }
 
         String countSql = baseSql.toString();
-        try (PreparedStatement countStmt = connection.prepareStatement(countSql)) {
+        try (PreparedStatement countStmt = connection().prepareStatement(countSql)) {
             setFilterParams(countStmt, paginator.getFilters());
             try (ResultSet countRs = countStmt.executeQuery()) {
                 if (countRs.next()) {
@@ -228,7 +380,7 @@ public class DatabaseManager {
 
                     selectSql.append(orderBy).append(pagination);
 
-                    try (PreparedStatement selectStmt = connection.prepareStatement(selectSql.toString())) {
+                    try (PreparedStatement selectStmt = connection().prepareStatement(selectSql.toString())) {
                         setFilterParams(selectStmt, paginator.getFilters());
                         try (ResultSet rs = selectStmt.executeQuery()) {
                             java.util.List<java.util.Map<String, Object>> page = new java.util.ArrayList<>();
@@ -267,6 +419,12 @@ public class DatabaseManager {
                 case "user_id":
                     conditions.add("al.user_id = ?");
                     break;
+                case "instant_from":
+                    conditions.add("al.partition_month >= ? AND al.instant_at >= ?");
+                    break;
+                case "instant_to":
+                    conditions.add("al.partition_month <= ? AND al.instant_at < ?");
+                    break;
                 default:
                     break;
             }
@@ -303,13 +461,176 @@ public class DatabaseManager {
                 stmt.setString(paramIndex++, filters.get(key));
             } else if (key.equals("user_id")) {
                 stmt.setLong(paramIndex++, Long.parseLong(filters.get(key)));
+            } else if (key.equals("instant_from") || key.equals("instant_to")) {
+                Timestamp instant = parseFilterTimestamp(filters.get(key));
+                stmt.setInt(paramIndex++, partitionMonth(instant));
+                stmt.setTimestamp(paramIndex++, instant);
+            }
+        }
+    }
+
+    static Timestamp parseFilterTimestamp(String value) {
+        try {
+            return Timestamp.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            try {
+                return new Timestamp(Long.parseLong(value));
+            } catch (NumberFormatException ex) {
+                try {
+                    return Timestamp.from(java.time.Instant.parse(value));
+                } catch (java.time.format.DateTimeParseException | NullPointerException invalid) {
+                    throw new IllegalArgumentException("Invalid timestamp format: " + value);
+                }
             }
         }
     }
 
+    static int partitionMonth(Timestamp instant) {
+        java.time.LocalDateTime dateTime = instant.toLocalDateTime();
+        return dateTime.getYear() * 100 + dateTime.getMonthValue();
+    }
+
+    public java.util.List<Integer> getAuditPartitions() throws SQLException {
+        String sql = "SELECT DISTINCT partition_month FROM audit_log ORDER BY partition_month";
+        try (PreparedStatement stmt = connection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            java.util.List<Integer> partitions = new java.util.ArrayList<>();
+            while (rs.next()) {
+                partitions.add(rs.getInt(1));
+            }
+            return partitions;
+        }
+    }
+
+    /**
+     * Writes a partition to a gzipped NDJSON file in {@code archiveDir}, records it in
+     * {@code audit_log_archive} and drops its rows. The catalog row is inserted first, so when
+     * several nodes run the retention job only one archives a partition; the others wait for it
+     * and then skip the partition, as they skip one archived before. The file is written under a
+     * temporary name and moved into place, never onto an existing file.
+     *
+     * @return the number of rows archived, 0 when there was nothing to archive
+     */
+    public long archiveAuditPartition(int partitionMonth, java.nio.file.Path archiveDir) throws SQLException {
+        java.nio.file.Path[] archived = new java.nio.file.Path[1];
+        try {
+            return inTransaction(() -> {
+                String claimSql = "INSERT INTO audit_log_archive (partition_month, file_path, row_count, archived_at) "
+                        + "VALUES (?, '', 0, CURRENT_TIMESTAMP)";
+                try (PreparedStatement stmt = connection().prepareStatement(claimSql)) {
+                    stmt.setInt(1, partitionMonth);
+                    stmt.executeUpdate();
+                } catch (SQLException e) {
+                    if ("23505".equals(e.getSQLState())) {
+                        // archived already, by this node or another one
+                        return 0L;
+                    }
+                    throw e;
+                }
+
+                long rowCount;
+                java.nio.file.Path file;
+                try {
+                    java.nio.file.Files.createDirectories(archiveDir);
+                    java.nio.file.Path temp = java.nio.file.Files.createTempFile(archiveDir, "audit_log_" + partitionMonth, ".tmp");
+                    try {
+                        rowCount = writeAuditPartition(partitionMonth, temp);
+                        if (rowCount == 0) {
+                            java.nio.file.Files.delete(temp);
+                            try (PreparedStatement stmt = connection().prepareStatement(
+                                    "DELETE FROM audit_log_archive WHERE partition_month = ?")) {
+                                stmt.setInt(1, partitionMonth);
+                                stmt.executeUpdate();
+                            }
+                            return 0L;
+                        }
+                        file = archiveDir.resolve("audit_log_" + partitionMonth + ".ndjson.gz");
+                        for (int attempt = 1; java.nio.file.Files.exists(file); attempt++) {
+                            file = archiveDir.resolve("audit_log_" + partitionMonth + "." + attempt + ".ndjson.gz");
+                        }
+                        java.nio.file.Files.move(temp, file, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                        archived[0] = file;
+                    } finally {
+                        java.nio.file.Files.deleteIfExists(temp);
+                    }
+                } catch (java.io.IOException e) {
+                    throw new SQLException("Failed to archive audit partition " + partitionMonth + ": " + e.getMessage(), e);
+                }
+
+                String catalogSql = "UPDATE audit_log_archive SET file_path = ?, row_count = ? WHERE partition_month = ?";
+                try (PreparedStatement stmt = connection().prepareStatement(catalogSql)) {
+                    stmt.setString(1, file.toAbsolutePath().toString());
+                    stmt.setLong(2, rowCount);
+                    stmt.setInt(3, partitionMonth);
+                    stmt.executeUpdate();
+                }
+
+                String deleteSql = "DELETE FROM audit_log WHERE partition_month = ?";
+                try (PreparedStatement stmt = connection().prepareStatement(deleteSql)) {
+                    stmt.setInt(1, partitionMonth);
+                    stmt.executeUpdate();
+                }
+                return rowCount;
+            });
+        } catch (SQLException | RuntimeException e) {
+            // the rows are still in audit_log, so an archive of them must not stay behind
+            if (archived[0] != null) {
+                try {
+                    java.nio.file.Files.deleteIfExists(archived[0]);
+                } catch (java.io.IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private long writeAuditPartition(int partitionMonth, java.nio.file.Path file) throws SQLException, java.io.IOException {
+        String selectSql = "SELECT al.id, al.instant_at, al.user_id, alt.code as type_code, al.payload FROM audit_log al "
+                + "JOIN audit_log_type alt ON al.log_type_id = alt.id WHERE al.partition_month = ? ORDER BY al.id";
+        long rowCount = 0;
+        try (PreparedStatement stmt = connection().prepareStatement(selectSql)) {
+            stmt.setInt(1, partitionMonth);
+            try (ResultSet rs = stmt.executeQuery();
+                 java.io.Writer writer = new java.io.OutputStreamWriter(new java.util.zip.GZIPOutputStream(
+                         java.nio.file.Files.newOutputStream(file)), java.nio.charset.StandardCharsets.UTF_8)) {
+                com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
+                while (rs.next()) {
+                    java.util.Map<String, Object> entry = new java.util.LinkedHashMap<>();
+                    entry.put("id", rs.getLong("id"));
+                    entry.put("instant_at", rs.getTimestamp("instant_at").toInstant().toString());
+                    entry.put("user_id", rs.getObject("user_id"));
+                    entry.put("type_code", rs.getString("type_code"));
+                    entry.put("payload", rs.getString("payload"));
+                    writer.write(objectMapper.writeValueAsString(entry));
+                    writer.write('\n');
+                    rowCount++;
+                }
+            }
+        }
+        return rowCount;
+    }
+
+    public java.util.List<java.util.Map<String, Object>> getAuditArchives() throws SQLException {
+        String sql = "SELECT partition_month, file_path, row_count, archived_at FROM audit_log_archive ORDER BY partition_month";
+        try (PreparedStatement stmt = connection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            java.util.List<java.util.Map<String, Object>> archives = new java.util.ArrayList<>();
+            while (rs.next()) {
+                java.util.Map<String, Object> archive = new java.util.HashMap<>();
+                archive.put("partition_month", rs.getInt("partition_month"));
+                archive.put("file_path", rs.getString("file_path"));
+                archive.put("row_count", rs.getLong("row_count"));
+                archive.put("archived_at", rs.getTimestamp("archived_at"));
+                archives.add(archive);
+            }
+            return archives;
+        }
+    }
+
     public boolean setLocalization(String key, String languageCode, String translation) throws SQLException {
         String sql = "MERGE INTO translations (translation_key, language_code, translation, updated_at) KEY (translation_key, language_code) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement stmt = connection().prepareStatement(sql)) {
             stmt.setString(1, key);
             stmt.setString(2, languageCode);
             stmt.setString(3, translation);
@@ -320,7 +641,7 @@ public class DatabaseManager {
 
     public String getTranslation(String key, String languageCode) throws SQLException {
         String sql = "SELECT translation FROM translations WHERE translation_key = ? AND language_code = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement stmt = connection().prepareStatement(sql)) {
             stmt.setString(1, key);
             stmt.setString(2, languageCode);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -331,4 +652,19 @@ public class DatabaseManager {
             }
         }
     }
+
+    /**
+     * @return every translation, by language code and then by key
+     */
+    public Map<String, Map<String, String>> getAllTranslations() throws SQLException {
+        String sql = "SELECT translation_key, language_code, translation FROM translations";
+        try (PreparedStatement stmt = connection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            Map<String, Map<String, String>> translations = new HashMap<>();
+            while (rs.next()) {
+                translations.computeIfAbsent(rs.getString(2), language -> new HashMap<>()).put(rs.getString(1), rs.getString(3));
+            }
+            return translations;
+        }
+    }
 }
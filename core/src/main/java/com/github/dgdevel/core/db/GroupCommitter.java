@@ -0,0 +1,152 @@
+package com.github.dgdevel.core.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs units of work from concurrent requests on one connection, each isolated by a savepoint,
+ * and commits them together once the batch window elapses or the batch is full. Callers only
+ * return after the commit that covers their work, so durability is unchanged.
+ */
+class GroupCommitter implements AutoCloseable {
+    private final Connection connection;
+    private final LocalChanges localChanges;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong commitCount = new AtomicLong();
+    private CompletableFuture<Void> batch = new CompletableFuture<>();
+    private int batchSize;
+    private Map<String, Long> batchCounts = new HashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    GroupCommitter(Connection connection, LocalChanges localChanges, long windowMillis, int maxBatchSize)
+            throws SQLException {
+        this.connection = connection;
+        this.localChanges = localChanges;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.connection.setAutoCommit(false);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "group-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    <T> T execute(SqlWork<T> work) throws SQLException {
+        T result;
+        Map<String, Long> counts;
+        List<Runnable> afterCommit;
+        CompletableFuture<Void> committed;
+        lock.lock();
+        try {
+            Savepoint savepoint = connection.setSavepoint();
+            ConnectionContext.bind(connection);
+            ConnectionContext.beginUnit();
+            try {
+                result = work.run();
+                counts = localChanges.collect(connection);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback(savepoint);
+                TransactionManager.discardCounts(localChanges, connection, e);
+                throw e;
+            } finally {
+                afterCommit = ConnectionContext.endUnit();
+                ConnectionContext.unbind();
+            }
+            connection.releaseSavepoint(savepoint);
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                batchCounts.merge(count.getKey(), count.getValue(), Long::sum);
+            }
+            committed = batch;
+            batchSize++;
+            if (batchSize >= maxBatchSize) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = flusher.schedule(this::flushNow, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitCommit(committed);
+        TransactionManager.runAll(afterCommit);
+        return result;
+    }
+
+    long getCommitCount() {
+        return commitCount.get();
+    }
+
+    void flushNow() {
+        lock.lock();
+        try {
+            flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (batchSize == 0) {
+            return;
+        }
+        CompletableFuture<Void> committed = batch;
+        Map<String, Long> counts = batchCounts;
+        batch = new CompletableFuture<>();
+        batchSize = 0;
+        batchCounts = new HashMap<>();
+        localChanges.add(counts);
+        try {
+            connection.commit();
+            commitCount.incrementAndGet();
+            committed.complete(null);
+        } catch (SQLException e) {
+            localChanges.remove(counts);
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            committed.completeExceptionally(e);
+        }
+    }
+
+    private static void awaitCommit(CompletableFuture<Void> committed) throws SQLException {
+        try {
+            committed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Group commit failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        flushNow();
+        flusher.shutdown();
+        connection.close();
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.dgdevel.core.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code table_changes} increments made by this node's own transactions. Besides bumping the
+ * shared counter, {@link ChangeCounterTrigger} counts each increment in a variable of the writing
+ * session; those counts are collected when a unit of work succeeds, just before its commit, and
+ * the change poller takes them off the counter deltas it sees, so it reports only the writes made
+ * elsewhere.
+ */
+public class LocalChanges {
+    private final List<String> tables;
+    private final String collectSql;
+    private final Map<String, Long> pending = new HashMap<>();
+
+    public LocalChanges(Collection<String> tables) {
+        this.tables = new ArrayList<>(tables);
+        List<String> variables = new ArrayList<>();
+        for (String table : this.tables) {
+            variables.add(ChangeCounterTrigger.variable(table));
+        }
+        this.collectSql = "SELECT " + String.join(", ", variables);
+    }
+
+    /**
+     * Reads and resets the counts of the writes made on {@code connection} since the last call.
+     */
+    Map<String, Long> collect(Connection connection) throws SQLException {
+        Map<String, Long> counts = new HashMap<>();
+        if (tables.isEmpty()) {
+            return counts;
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(collectSql)) {
+            rs.next();
+            for (int i = 0; i < tables.size(); i++) {
+                long count = rs.getLong(i + 1);
+                if (count > 0) {
+                    counts.put(tables.get(i), count);
+                }
+            }
+        }
+        for (String table : counts.keySet()) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("SET " + ChangeCounterTrigger.variable(table) + " = NULL");
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Records the counts of a unit of work about to commit.
+     */
+    synchronized void add(Map<String, Long> counts) {
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            pending.merge(count.getKey(), count.getValue(), Long::sum);
+        }
+    }
+
+    /**
+     * Withdraws the counts of a commit that failed.
+     */
+    synchronized void remove(Map<String, Long> counts) {
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            pending.computeIfPresent(count.getKey(), (table, value) -> value > count.getValue() ? value - count.getValue() : null);
+        }
+    }
+
+    /**
+     * @return how many of the {@code delta} increments seen on {@code table}'s counter were made
+     *     by this node; they are not counted again
+     */
+    public synchronized long take(String table, long delta) {
+        Long local = pending.get(table);
+        if (local == null || delta <= 0) {
+            return 0;
+        }
+        long taken = Math.min(local, delta);
+        if (taken == local) {
+            pending.remove(table);
+        } else {
+            pending.put(table, local - taken);
+        }
+        return taken;
+    }
+
+    public synchronized void clear() {
+        pending.clear();
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.dgdevel.core.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The deadline of the request running on the current thread. While one is bound, the connections
+ * handed out by {@link ConnectionContext} give every statement they create a query timeout that
+ * ends at the deadline, and {@link #expire()} cancels the statements still running.
+ */
+public final class QueryDeadline {
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+    private volatile boolean expired;
+
+    public QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    public void unbind() {
+        CURRENT.remove();
+        statements.clear();
+    }
+
+    public long remainingMillis() {
+        return (deadlineNanos - System.nanoTime()) / 1_000_000;
+    }
+
+    public boolean isExpired() {
+        return expired || System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Marks the deadline as passed and cancels the statements created under it. Safe to call
+     * from another thread while the request is still running.
+     */
+    public void expire() {
+        expired = true;
+        for (Statement statement : statements) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // already closed or finished
+            }
+        }
+    }
+
+    Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                Object result;
+                try {
+                    result = method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Statement) {
+                    track((Statement) result);
+                }
+                return result;
+            });
+    }
+
+    private void track(Statement statement) throws SQLException {
+        long remaining = remainingMillis();
+        if (expired || remaining <= 0) {
+            statement.close();
+            throw new SQLTimeoutException("Deadline exceeded");
+        }
+        statement.setQueryTimeout((int) Math.max(1, (remaining + 999) / 1000));
+        statements.add(statement);
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.dgdevel.core.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the scripts listed in {@code schema/index.list}, in order, recording each one in
+ * {@code schema_version} with a checksum of its text. Scripts already recorded are not run again,
+ * so a node starting against an up-to-date database only reads the version table. A recorded
+ * script whose text has changed is refused: schema changes go into a new script.
+ *
+ * <p>Nodes starting together take turns: the migration runs while a second connection holds the
+ * row of {@code schema_lock}. The lock cannot be held on the migrating connection itself, because
+ * each DDL statement commits its transaction.
+ */
+public class SchemaMigrator {
+    public static final String INDEX = "schema/index.list";
+
+    static final long LOCK_TIMEOUT_MILLIS = 300_000;
+
+    private final Connection connection;
+    private final Connection lockConnection;
+    private final ClassLoader classLoader;
+
+    /**
+     * @param lockConnection a connection of its own to the same database, holding the migration
+     *     lock while {@code connection} applies the scripts
+     */
+    public SchemaMigrator(Connection connection, Connection lockConnection) {
+        this(connection, lockConnection, SchemaMigrator.class.getClassLoader());
+    }
+
+    SchemaMigrator(Connection connection, Connection lockConnection, ClassLoader classLoader) {
+        this.connection = connection;
+        this.lockConnection = lockConnection;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @return the number of scripts run
+     */
+    public int migrate() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                + "script VARCHAR(255) PRIMARY KEY, "
+                + "checksum BIGINT NOT NULL, "
+                + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_lock (id INT PRIMARY KEY)");
+            stmt.execute("MERGE INTO schema_lock (id) KEY (id) VALUES (1)");
+        }
+        boolean autoCommit = lockConnection.getAutoCommit();
+        lockConnection.setAutoCommit(false);
+        try {
+            lock();
+            return applyScripts();
+        } finally {
+            lockConnection.rollback();
+            lockConnection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void lock() throws SQLException {
+        // wait for a node that is already migrating, however long its scripts take
+        try (Statement stmt = lockConnection.createStatement()) {
+            stmt.execute("SET LOCK_TIMEOUT " + LOCK_TIMEOUT_MILLIS);
+        }
+        try (Statement stmt = lockConnection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM schema_lock WHERE id = 1 FOR UPDATE")) {
+            rs.next();
+        }
+    }
+
+    private int applyScripts() throws SQLException {
+        Map<String, Long> applied = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT script, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getString("script"), rs.getLong("checksum"));
+            }
+        }
+
+        int ran = 0;
+        for (String script : readIndex()) {
+            String sql = readResource("schema/" + script);
+            long checksum = checksum(sql);
+            Long recorded = applied.get(script);
+            if (recorded != null) {
+                if (recorded != checksum) {
+                    throw new SQLException("Schema script " + script + " changed after it was applied; add a new script instead");
+                }
+                continue;
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(sql);
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "INSERT INTO schema_version (script, checksum) VALUES (?, ?)")) {
+                stmt.setString(1, script);
+                stmt.setLong(2, checksum);
+                stmt.executeUpdate();
+            }
+            System.out.println("[SCHEMA] Applied " + script);
+            ran++;
+        }
+        return ran;
+    }
+
+    List<String> readIndex() throws SQLException {
+        List<String> scripts = new ArrayList<>();
+        for (String line : readResource(INDEX).split("\n")) {
+            String script = line.trim();
+            if (!script.isEmpty() && !script.startsWith("#")) {
+                if (!scripts.isEmpty() && script.compareTo(scripts.get(scripts.size() - 1)) <= 0) {
+                    throw new SQLException("Schema index must list scripts once, in ascending order: " + script);
+                }
+                scripts.add(script);
+            }
+        }
+        return scripts;
+    }
+
+    private String readResource(String name) throws SQLException {
+        InputStream inputStream = classLoader.getResourceAsStream(name);
+        if (inputStream == null) {
+            throw new SQLException("Schema resource not found: " + name);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            StringBuilder text = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                text.append(line).append("\n");
+            }
+            return text.toString();
+        } catch (IOException e) {
+            throw new SQLException("Failed to read " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
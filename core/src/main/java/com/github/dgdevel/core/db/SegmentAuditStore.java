@@ -0,0 +1,557 @@
+package com.github.dgdevel.core.db;
+
+import com.github.dgdevel.core.common.PaginatedList;
+import com.github.dgdevel.core.common.Paginator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Log-structured audit store. New entries are appended uncompressed to a tail file and, once a
+ * block is full, deflated into the active segment file. Every block header carries the id and
+ * instant_at range plus the user IDs and type codes it contains. Those headers form a sparse
+ * in-memory index, so scans skip whole blocks and decompress only the candidates. Sealed
+ * segments are read through memory-mapped buffers. Sealed blocks never change, so a listing scans
+ * them without holding the lock that appends take.
+ */
+public class SegmentAuditStore implements AuditStore {
+    private static final int BLOCK_MAGIC = 0x41554442;
+    private static final String TAIL_FILE = "tail.log";
+
+    private final Path directory;
+    private final int blockEntries;
+    private final long maxSegmentBytes;
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Entry> pending = new ArrayList<>();
+    private FileChannel tailChannel;
+    private long nextId = 1;
+
+    private static final class Entry {
+        final long id;
+        final long instantMillis;
+        final Long userId;
+        final String typeCode;
+        final String payload;
+
+        Entry(long id, long instantMillis, Long userId, String typeCode, String payload) {
+            this.id = id;
+            this.instantMillis = instantMillis;
+            this.userId = userId;
+            this.typeCode = typeCode;
+            this.payload = payload;
+        }
+    }
+
+    private static final class BlockMeta {
+        final Segment segment;
+        long offset;
+        long dataOffset;
+        int count;
+        long minId;
+        long maxId;
+        long minInstant;
+        long maxInstant;
+        final Set<Long> userIds = new HashSet<>();
+        boolean hasNullUser;
+        final Set<String> typeCodes = new HashSet<>();
+
+        BlockMeta(Segment segment) {
+            this.segment = segment;
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final FileChannel channel;
+        final List<BlockMeta> blocks = new ArrayList<>();
+        MappedByteBuffer mapped;
+
+        Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        synchronized ByteBuffer view() throws IOException {
+            long size = channel.size();
+            if (mapped == null || mapped.capacity() != size) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return mapped.duplicate();
+        }
+    }
+
+    public SegmentAuditStore(Path directory) throws SQLException {
+        this(directory, 256, 64L * 1024 * 1024);
+    }
+
+    public SegmentAuditStore(Path directory, int blockEntries, long maxSegmentBytes) throws SQLException {
+        this.directory = directory;
+        this.blockEntries = blockEntries;
+        this.maxSegmentBytes = maxSegmentBytes;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                List<Path> segmentFiles = files
+                    .filter(path -> path.getFileName().toString().endsWith(".seg"))
+                    .sorted()
+                    .toList();
+                for (Path path : segmentFiles) {
+                    segments.add(openSegment(path));
+                }
+            }
+            recoverTail();
+        } catch (IOException e) {
+            throw new SQLException("Failed to open audit segments in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized Long log(Long userId, String typeCode, String payload) throws SQLException {
+        if (typeCode == null || payload == null) {
+            throw new SQLException("Audit log entry needs a type code and a payload");
+        }
+        Entry entry = new Entry(nextId++, System.currentTimeMillis(), userId, typeCode, payload);
+        try {
+            byte[] record = encodeEntry(entry);
+            ByteBuffer framed = ByteBuffer.allocate(4 + record.length);
+            framed.putInt(record.length).put(record).flip();
+            while (framed.hasRemaining()) {
+                tailChannel.write(framed);
+            }
+            pending.add(entry);
+            if (pending.size() >= blockEntries) {
+                sealBlock();
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to append audit log entry: " + e.getMessage(), e);
+        }
+        return entry.id;
+    }
+
+    /**
+     * Keeps only the best {@code offset + pageSize} matches while scanning. The total count of a
+     * block whose header shows that all its entries match is taken from the header, and when
+     * sorting by instant such a block is not decompressed unless it can reach the page.
+     */
+    @Override
+    public PaginatedList<Map<String, Object>> list(Paginator paginator) throws SQLException {
+        Map<String, String> filters = paginator.getFilters() != null ? paginator.getFilters() : Map.of();
+        String typeCode = filters.get("type_code");
+        Long userId = filters.containsKey("user_id") ? Long.parseLong(filters.get("user_id")) : null;
+        long from = filters.containsKey("instant_from")
+            ? DatabaseManager.parseFilterTimestamp(filters.get("instant_from")).getTime() : Long.MIN_VALUE;
+        long to = filters.containsKey("instant_to")
+            ? DatabaseManager.parseFilterTimestamp(filters.get("instant_to")).getTime() : Long.MAX_VALUE;
+
+        List<BlockMeta> blocks = new ArrayList<>();
+        List<Entry> tail;
+        synchronized (this) {
+            for (Segment segment : segments) {
+                blocks.addAll(segment.blocks);
+            }
+            tail = new ArrayList<>(pending);
+        }
+
+        String sortKey = paginator.getSortKey();
+        boolean byInstant = !"type_code".equals(sortKey) && !"user_id".equals(sortKey);
+        boolean ascending = isAscending(sortKey, paginator.getSortDirection());
+        Comparator<Entry> order = comparator(sortKey, paginator.getSortDirection());
+        int pageSize = Math.max(0, paginator.getPageSize());
+        int offset = Math.max(0, (paginator.getPageNumber() - 1) * pageSize);
+        int limit = (int) Math.min(Integer.MAX_VALUE, (long) offset + pageSize);
+        PriorityQueue<Entry> top = new PriorityQueue<>(order.reversed());
+        long totalCount = 0;
+
+        // newest entries are in the tail and the last blocks; visit the likely best ones first
+        if (!ascending) {
+            Collections.reverse(blocks);
+            Collections.reverse(tail);
+            for (Entry entry : tail) {
+                if (matches(entry, typeCode, userId, from, to)) {
+                    totalCount++;
+                    offer(top, entry, limit, order);
+                }
+            }
+        }
+        try {
+            for (BlockMeta block : blocks) {
+                if (block.maxInstant < from || block.minInstant >= to
+                        || (userId != null && !block.userIds.contains(userId))
+                        || (typeCode != null && !block.typeCodes.contains(typeCode))) {
+                    continue;
+                }
+                boolean allMatch = block.minInstant >= from && block.maxInstant < to
+                    && (userId == null || (!block.hasNullUser && block.userIds.size() == 1))
+                    && (typeCode == null || block.typeCodes.size() == 1);
+                if (allMatch) {
+                    totalCount += block.count;
+                    if (byInstant && (limit == 0 || (top.size() >= limit && order.compare(best(block, ascending), top.peek()) > 0))) {
+                        continue;
+                    }
+                }
+                for (Entry entry : readBlock(block)) {
+                    if (allMatch || matches(entry, typeCode, userId, from, to)) {
+                        if (!allMatch) {
+                            totalCount++;
+                        }
+                        offer(top, entry, limit, order);
+                    }
+                }
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new SQLException("Failed to read audit segments: " + e.getMessage(), e);
+        }
+        if (ascending) {
+            for (Entry entry : tail) {
+                if (matches(entry, typeCode, userId, from, to)) {
+                    totalCount++;
+                    offer(top, entry, limit, order);
+                }
+            }
+        }
+
+        List<Entry> matches = new ArrayList<>(top);
+        matches.sort(order);
+        List<Map<String, Object>> page = new ArrayList<>();
+        for (int i = offset; i < matches.size(); i++) {
+            Entry entry = matches.get(i);
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", entry.id);
+            row.put("instant_at", new Timestamp(entry.instantMillis));
+            row.put("user_id", entry.userId);
+            row.put("type_code", entry.typeCode);
+            row.put("payload", entry.payload);
+            page.add(row);
+        }
+        PaginatedList<Map<String, Object>> result = new PaginatedList<>();
+        result.setPage(page);
+        result.setTotalCount((int) Math.min(Integer.MAX_VALUE, totalCount));
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Entry> top, Entry entry, int limit, Comparator<Entry> order) {
+        if (top.size() < limit) {
+            top.add(entry);
+        } else if (limit > 0 && order.compare(entry, top.peek()) < 0) {
+            top.poll();
+            top.add(entry);
+        }
+    }
+
+    /**
+     * @return a key sorting, by instant, no later than any entry of {@code block}
+     */
+    private static Entry best(BlockMeta block, boolean ascending) {
+        return ascending
+            ? new Entry(block.minId, block.minInstant, null, null, null)
+            : new Entry(block.maxId, block.maxInstant, null, null, null);
+    }
+
+    @Override
+    public synchronized void flush() throws SQLException {
+        try {
+            sealBlock();
+        } catch (IOException e) {
+            throw new SQLException("Failed to flush audit segment: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        try {
+            tailChannel.force(false);
+            tailChannel.close();
+            for (Segment segment : segments) {
+                segment.mapped = null;
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to close audit segments: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean matches(Entry entry, String typeCode, Long userId, long from, long to) {
+        return (typeCode == null || typeCode.equals(entry.typeCode))
+            && (userId == null || userId.equals(entry.userId))
+            && entry.instantMillis >= from && entry.instantMillis < to;
+    }
+
+    private static Comparator<Entry> comparator(String sortKey, String sortDirection) {
+        Comparator<Entry> comparator;
+        if ("type_code".equals(sortKey)) {
+            comparator = Comparator.comparing((Entry entry) -> entry.typeCode);
+        } else if ("user_id".equals(sortKey)) {
+            comparator = Comparator.comparing((Entry entry) -> entry.userId, Comparator.nullsFirst(Comparator.naturalOrder()));
+        } else {
+            comparator = Comparator.comparingLong((Entry entry) -> entry.instantMillis);
+        }
+        comparator = comparator.thenComparingLong(entry -> entry.id);
+        return isAscending(sortKey, sortDirection) ? comparator : comparator.reversed();
+    }
+
+    private static boolean isAscending(String sortKey, String sortDirection) {
+        return sortKey != null && !sortKey.isEmpty()
+            && sortDirection != null && sortDirection.equalsIgnoreCase("ASC");
+    }
+
+    private void sealBlock() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.channel.size() >= maxSegmentBytes) {
+            Path path = directory.resolve(String.format("segment-%020d.seg", pending.get(0).id));
+            segment = new Segment(path, FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segments.add(segment);
+        }
+
+        BlockMeta block = new BlockMeta(segment);
+        block.offset = segment.channel.size();
+        block.count = pending.size();
+        block.minId = pending.get(0).id;
+        block.maxId = pending.get(pending.size() - 1).id;
+        block.minInstant = Long.MAX_VALUE;
+        block.maxInstant = Long.MIN_VALUE;
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        for (Entry entry : pending) {
+            raw.write(encodeEntry(entry));
+            block.minInstant = Math.min(block.minInstant, entry.instantMillis);
+            block.maxInstant = Math.max(block.maxInstant, entry.instantMillis);
+            if (entry.userId != null) {
+                block.userIds.add(entry.userId);
+            } else {
+                block.hasNullUser = true;
+            }
+            block.typeCodes.add(entry.typeCode);
+        }
+        byte[] rawBytes = raw.toByteArray();
+        byte[] compressed = deflate(rawBytes);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeInt(BLOCK_MAGIC);
+        out.writeInt(pending.size());
+        out.writeLong(pending.get(0).id);
+        out.writeLong(pending.get(pending.size() - 1).id);
+        out.writeLong(block.minInstant);
+        out.writeLong(block.maxInstant);
+        out.writeInt(block.userIds.size());
+        for (Long blockUserId : block.userIds) {
+            out.writeLong(blockUserId);
+        }
+        out.writeBoolean(block.hasNullUser);
+        out.writeInt(block.typeCodes.size());
+        for (String blockTypeCode : block.typeCodes) {
+            writeString(out, blockTypeCode);
+        }
+        block.dataOffset = block.offset + out.size();
+        out.writeInt(rawBytes.length);
+        out.writeInt(compressed.length);
+        out.write(compressed);
+        out.flush();
+
+        ByteBuffer buffer = ByteBuffer.wrap(header.toByteArray());
+        long position = block.offset;
+        while (buffer.hasRemaining()) {
+            position += segment.channel.write(buffer, position);
+        }
+        segment.channel.force(false);
+        segment.blocks.add(block);
+
+        pending.clear();
+        tailChannel.truncate(0);
+        tailChannel.position(0);
+    }
+
+    private Segment openSegment(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(path, channel);
+        ByteBuffer view = segment.view();
+        long validEnd = 0;
+        while (view.remaining() > 0) {
+            int start = view.position();
+            BlockMeta block;
+            try {
+                block = readHeader(segment, view);
+                if (block == null) {
+                    break;
+                }
+                block.dataOffset = view.position();
+                int rawLength = view.getInt();
+                int compressedLength = view.getInt();
+                if (rawLength < 0 || compressedLength < 0 || compressedLength > view.remaining()) {
+                    break;
+                }
+                view.position(view.position() + compressedLength);
+            } catch (RuntimeException e) {
+                break;
+            }
+            block.offset = start;
+            segment.blocks.add(block);
+            nextId = Math.max(nextId, block.maxId + 1);
+            validEnd = view.position();
+        }
+        if (validEnd < channel.size()) {
+            segment.mapped = null;
+            channel.truncate(validEnd);
+        }
+        return segment;
+    }
+
+    private static BlockMeta readHeader(Segment segment, ByteBuffer view) {
+        if (view.getInt() != BLOCK_MAGIC) {
+            return null;
+        }
+        BlockMeta block = new BlockMeta(segment);
+        block.count = view.getInt();
+        block.minId = view.getLong();
+        block.maxId = view.getLong();
+        block.minInstant = view.getLong();
+        block.maxInstant = view.getLong();
+        int userCount = view.getInt();
+        for (int i = 0; i < userCount; i++) {
+            block.userIds.add(view.getLong());
+        }
+        block.hasNullUser = view.get() != 0;
+        int typeCount = view.getInt();
+        for (int i = 0; i < typeCount; i++) {
+            block.typeCodes.add(readString(view));
+        }
+        return block;
+    }
+
+    private static List<Entry> readBlock(BlockMeta block) throws IOException, DataFormatException {
+        ByteBuffer buffer = block.segment.view();
+        buffer.position((int) block.dataOffset);
+        int rawLength = buffer.getInt();
+        int compressedLength = buffer.getInt();
+        byte[] compressed = new byte[compressedLength];
+        buffer.get(compressed);
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                read += inflater.inflate(raw, read, rawLength - read);
+            }
+        } finally {
+            inflater.end();
+        }
+        ByteBuffer entries = ByteBuffer.wrap(raw);
+        List<Entry> result = new ArrayList<>();
+        while (entries.hasRemaining()) {
+            result.add(decodeEntry(entries));
+        }
+        return result;
+    }
+
+    private void recoverTail() throws IOException {
+        Path tailPath = directory.resolve(TAIL_FILE);
+        tailChannel = FileChannel.open(tailPath, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer tail = ByteBuffer.allocate((int) tailChannel.size());
+        while (tail.hasRemaining() && tailChannel.read(tail) >= 0) {
+            // read the whole tail file
+        }
+        tail.flip();
+        long validEnd = 0;
+        while (tail.remaining() >= 4) {
+            int length = tail.getInt();
+            if (length <= 0 || length > tail.remaining()) {
+                break;
+            }
+            ByteBuffer record = tail.slice(tail.position(), length);
+            tail.position(tail.position() + length);
+            Entry entry = decodeEntry(record);
+            validEnd = tail.position();
+            if (entry.id < nextId) {
+                continue;
+            }
+            pending.add(entry);
+            nextId = entry.id + 1;
+        }
+        tailChannel.truncate(validEnd);
+        tailChannel.position(validEnd);
+    }
+
+    private static byte[] encodeEntry(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(entry.id);
+        out.writeLong(entry.instantMillis);
+        out.writeBoolean(entry.userId != null);
+        if (entry.userId != null) {
+            out.writeLong(entry.userId);
+        }
+        writeString(out, entry.typeCode);
+        writeString(out, entry.payload);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Entry decodeEntry(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long instantMillis = buffer.getLong();
+        Long userId = buffer.get() != 0 ? buffer.getLong() : null;
+        String typeCode = readString(buffer);
+        String payload = readString(buffer);
+        return new Entry(id, instantMillis, userId, typeCode, payload);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
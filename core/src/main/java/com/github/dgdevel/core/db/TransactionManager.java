@@ -0,0 +1,103 @@
+package com.github.dgdevel.core.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+public class TransactionManager implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final LocalChanges localChanges;
+    private final GroupCommitter groupCommitter;
+
+    public TransactionManager(ConnectionPool pool, LocalChanges localChanges) {
+        this.pool = pool;
+        this.localChanges = localChanges;
+        this.groupCommitter = null;
+    }
+
+    public TransactionManager(ConnectionPool pool, LocalChanges localChanges, Connection groupConnection,
+            long windowMillis, int maxBatchSize) throws SQLException {
+        this.pool = pool;
+        this.localChanges = localChanges;
+        this.groupCommitter = new GroupCommitter(groupConnection, localChanges, windowMillis, maxBatchSize);
+    }
+
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        if (ConnectionContext.isBound()) {
+            return work.run();
+        }
+        if (groupCommitter != null) {
+            return groupCommitter.execute(work);
+        }
+        Connection connection = pool.acquire();
+        try {
+            connection.setAutoCommit(false);
+            ConnectionContext.bind(connection);
+            ConnectionContext.beginUnit();
+            T result;
+            List<Runnable> committed;
+            try {
+                result = work.run();
+                Map<String, Long> counts = localChanges.collect(connection);
+                localChanges.add(counts);
+                try {
+                    connection.commit();
+                } catch (SQLException e) {
+                    localChanges.remove(counts);
+                    throw e;
+                }
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                discardCounts(localChanges, connection, e);
+                throw e;
+            } finally {
+                committed = ConnectionContext.endUnit();
+                ConnectionContext.unbind();
+                connection.setAutoCommit(true);
+            }
+            runAll(committed);
+            return result;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Drops the counts of writes that were rolled back.
+     */
+    static void discardCounts(LocalChanges localChanges, Connection connection, Exception cause) {
+        try {
+            localChanges.collect(connection);
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    static void runAll(List<Runnable> actions) {
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    public boolean isGroupCommit() {
+        return groupCommitter != null;
+    }
+
+    public long getGroupCommitCount() {
+        return groupCommitter != null ? groupCommitter.getCommitCount() : 0;
+    }
+
+    public void flush() {
+        if (groupCommitter != null) {
+            groupCommitter.flushNow();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (groupCommitter != null) {
+            groupCommitter.close();
+        }
+    }
+}
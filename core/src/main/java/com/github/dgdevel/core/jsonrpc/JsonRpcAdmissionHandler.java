@@ -0,0 +1,138 @@
+package com.github.dgdevel.core.jsonrpc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dgdevel.core.server.AdmissionController;
+import com.github.dgdevel.core.server.AdmissionException;
+import com.github.dgdevel.core.server.AdmissionHandler;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Admission for the JSON-RPC port. The POST body is only tokenized to find each request's
+ * "method" and "id"; the principal comes from the {@code X-Principal} header.
+ */
+public class JsonRpcAdmissionHandler extends AdmissionHandler {
+    public static final String PRINCIPAL_HEADER = "X-Principal";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public JsonRpcAdmissionHandler(AdmissionController controller) {
+        super(controller);
+    }
+
+    @Override
+    protected Envelope peek(Object msg) {
+        if (!(msg instanceof FullHttpRequest)) {
+            return null;
+        }
+        FullHttpRequest request = (FullHttpRequest) msg;
+        if (request.method() != HttpMethod.POST || !request.decoderResult().isSuccess()) {
+            return null;
+        }
+        List<String> methods = new ArrayList<>();
+        List<Object> ids = new ArrayList<>();
+        boolean batch;
+        try (JsonParser parser = jsonFactory.createParser((java.io.InputStream) new ByteBufInputStream(request.content().duplicate()))) {
+            JsonToken token = parser.nextToken();
+            batch = token == JsonToken.START_ARRAY;
+            if (batch) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    peekRequest(parser, methods, ids);
+                }
+            } else if (token == JsonToken.START_OBJECT) {
+                peekRequest(parser, methods, ids);
+            } else {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        if (methods.isEmpty()) {
+            return null;
+        }
+        return new Envelope(request.headers().get(PRINCIPAL_HEADER), methods, new Peeked(ids, batch, HttpUtil.isKeepAlive(request)));
+    }
+
+    private static void peekRequest(JsonParser parser, List<String> methods, List<Object> ids) throws IOException {
+        String method = null;
+        Object id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("method".equals(field) && value == JsonToken.VALUE_STRING) {
+                method = parser.getText();
+            } else if ("id".equals(field) && value.isNumeric()) {
+                id = parser.getNumberValue();
+            } else if ("id".equals(field) && value == JsonToken.VALUE_STRING) {
+                id = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        methods.add(method);
+        ids.add(id);
+    }
+
+    @Override
+    protected void reject(ChannelHandlerContext ctx, Envelope envelope, AdmissionException e) {
+        Peeked peeked = (Peeked) envelope.getContext();
+        String body;
+        try {
+            if (peeked.batch) {
+                List<JsonRpcResponse> responses = new ArrayList<>(peeked.ids.size());
+                for (Object id : peeked.ids) {
+                    responses.add(JsonRpcResponse.error(id, e.getCode(), e.getMessage()));
+                }
+                body = objectMapper.writeValueAsString(responses);
+            } else {
+                body = objectMapper.writeValueAsString(JsonRpcResponse.error(peeked.ids.get(0), e.getCode(), e.getMessage()));
+            }
+        } catch (IOException ex) {
+            ctx.close();
+            return;
+        }
+        FullHttpResponse response = new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1,
+            HttpResponseStatus.OK,
+            Unpooled.copiedBuffer(body, CharsetUtil.UTF_8)
+        );
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+        if (peeked.keepAlive) {
+            ctx.writeAndFlush(response);
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static final class Peeked {
+        final List<Object> ids;
+        final boolean batch;
+        final boolean keepAlive;
+
+        Peeked(List<Object> ids, boolean batch, boolean keepAlive) {
+            this.ids = ids;
+            this.batch = batch;
+            this.keepAlive = keepAlive;
+        }
+    }
+}
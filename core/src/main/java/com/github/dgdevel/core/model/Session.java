@@ -0,0 +1,43 @@
+package com.github.dgdevel.core.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Session {
+  @JsonProperty("user")
+  private User user;
+
+  @JsonProperty("role_codes")
+  private List<String> roleCodes = new ArrayList<>();
+
+  @JsonProperty("function_ids")
+  private List<Long> functionIds = new ArrayList<>();
+
+  public User getUser() {
+    return user;
+  }
+
+  public void setUser(User user) {
+    this.user = user;
+  }
+
+  public List<String> getRoleCodes() {
+    return roleCodes;
+  }
+
+  public void setRoleCodes(List<String> roleCodes) {
+    this.roleCodes = roleCodes;
+  }
+
+  public List<Long> getFunctionIds() {
+    return functionIds;
+  }
+
+  public void setFunctionIds(List<Long> functionIds) {
+    this.functionIds = functionIds;
+  }
+}
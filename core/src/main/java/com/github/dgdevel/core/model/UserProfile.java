@@ -0,0 +1,56 @@
+package com.github.dgdevel.core.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserProfile {
+  @JsonProperty("user")
+  private User user;
+
+  @JsonProperty("attributes")
+  private Map<String, String> attributes = new TreeMap<>();
+
+  @JsonProperty("addresses")
+  private List<Address> addresses = new ArrayList<>();
+
+  @JsonProperty("roles")
+  private List<Role> roles = new ArrayList<>();
+
+  public User getUser() {
+    return user;
+  }
+
+  public void setUser(User user) {
+    this.user = user;
+  }
+
+  public Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  public void setAttributes(Map<String, String> attributes) {
+    this.attributes = attributes;
+  }
+
+  public List<Address> getAddresses() {
+    return addresses;
+  }
+
+  public void setAddresses(List<Address> addresses) {
+    this.addresses = addresses;
+  }
+
+  public List<Role> getRoles() {
+    return roles;
+  }
+
+  public void setRoles(List<Role> roles) {
+    this.roles = roles;
+  }
+}
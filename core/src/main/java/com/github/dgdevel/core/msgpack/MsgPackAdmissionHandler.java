@@ -0,0 +1,101 @@
+package com.github.dgdevel.core.msgpack;
+
+import com.github.dgdevel.core.server.AdmissionController;
+import com.github.dgdevel.core.server.AdmissionException;
+import com.github.dgdevel.core.server.AdmissionHandler;
+import com.github.dgdevel.core.server.HealthMonitor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Admission for the MessagePack port. Only the envelope of a frame is read: the method name, the
+ * id and the "principal" and "keep_alive" headers; the params are skipped without decoding.
+ */
+public class MsgPackAdmissionHandler extends AdmissionHandler {
+    public MsgPackAdmissionHandler(AdmissionController controller) {
+        super(controller);
+    }
+
+    @Override
+    protected Envelope peek(Object msg) {
+        if (!(msg instanceof ByteBuf)) {
+            return null;
+        }
+        ByteBuf frame = (ByteBuf) msg;
+        try (MessageUnpacker unpacker = newUnpacker(frame)) {
+            int arraySize = unpacker.unpackArrayHeader();
+            unpacker.skipValue();
+            String method = unpacker.unpackString();
+            if (HealthMonitor.LIVE.equals(method) || HealthMonitor.READY.equals(method)) {
+                // probes are answered from memory and must not be shed with the traffic they watch
+                return null;
+            }
+            unpacker.skipValue();
+            int id = unpacker.unpackInt();
+            String principal = null;
+            boolean keepAlive = false;
+            if (arraySize > 4 && unpacker.getNextFormat().getValueType() == ValueType.MAP) {
+                int headers = unpacker.unpackMapHeader();
+                for (int i = 0; i < headers; i++) {
+                    String key = unpacker.unpackString();
+                    ValueType valueType = unpacker.getNextFormat().getValueType();
+                    if ("principal".equals(key) && valueType == ValueType.STRING) {
+                        principal = unpacker.unpackString();
+                    } else if ("keep_alive".equals(key) && valueType == ValueType.BOOLEAN) {
+                        keepAlive = unpacker.unpackBoolean();
+                    } else {
+                        unpacker.skipValue();
+                    }
+                }
+            }
+            return new Envelope(principal, List.of(method), new Peeked(id, keepAlive));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected void reject(ChannelHandlerContext ctx, Envelope envelope, AdmissionException e) {
+        Peeked peeked = (Peeked) envelope.getContext();
+        byte[] data;
+        try {
+            data = MsgPackHandler.packResponse(MsgPackHandler.MsgPackResponse.error(peeked.id, e.getCode(), e.getMessage()), false);
+        } catch (Exception ex) {
+            ctx.close();
+            return;
+        }
+        ByteBuf response = ctx.alloc().buffer(data.length);
+        response.writeBytes(data);
+        if (peeked.keepAlive) {
+            ctx.writeAndFlush(response);
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static MessageUnpacker newUnpacker(ByteBuf frame) {
+        // msgpack-core cannot read direct NIO buffers on recent JDKs without --add-opens
+        if (frame.hasArray()) {
+            return MessagePack.newDefaultUnpacker(frame.array(), frame.arrayOffset() + frame.readerIndex(), frame.readableBytes());
+        }
+        return MessagePack.newDefaultUnpacker(ByteBufUtil.getBytes(frame));
+    }
+
+    private static final class Peeked {
+        final int id;
+        final boolean keepAlive;
+
+        Peeked(int id, boolean keepAlive) {
+            this.id = id;
+            this.keepAlive = keepAlive;
+        }
+    }
+}
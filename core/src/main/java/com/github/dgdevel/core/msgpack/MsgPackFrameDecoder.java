@@ -0,0 +1,39 @@
+package com.github.dgdevel.core.msgpack;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import org.msgpack.core.MessageInsufficientBufferException;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.util.List;
+
+/**
+ * Splits the inbound byte stream into complete MessagePack values, so that a persistent
+ * connection can carry several requests and a request may span several TCP reads.
+ */
+public class MsgPackFrameDecoder extends ByteToMessageDecoder {
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        while (in.isReadable()) {
+            int length;
+            try (MessageUnpacker unpacker = newUnpacker(in)) {
+                unpacker.skipValue();
+                length = (int) unpacker.getTotalReadBytes();
+            } catch (MessageInsufficientBufferException e) {
+                return;
+            }
+            out.add(in.readRetainedSlice(length));
+        }
+    }
+
+    private static MessageUnpacker newUnpacker(ByteBuf in) {
+        // msgpack-core cannot read direct NIO buffers on recent JDKs without --add-opens
+        if (in.hasArray()) {
+            return MessagePack.newDefaultUnpacker(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+        }
+        return MessagePack.newDefaultUnpacker(ByteBufUtil.getBytes(in));
+    }
+}
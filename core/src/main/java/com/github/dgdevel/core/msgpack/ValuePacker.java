@@ -0,0 +1,378 @@
+package com.github.dgdevel.core.msgpack;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.github.dgdevel.core.common.KeysetPage;
+import com.github.dgdevel.core.common.PaginatedList;
+import com.github.dgdevel.core.model.Address;
+import com.github.dgdevel.core.model.Function;
+import com.github.dgdevel.core.model.Menu;
+import com.github.dgdevel.core.model.Role;
+import com.github.dgdevel.core.model.Session;
+import com.github.dgdevel.core.model.User;
+import com.github.dgdevel.core.model.UserProfile;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Packs result values straight into a {@link MessagePacker}. Model objects are written through a
+ * per-class writer built once from Jackson's bean introspection, so they produce the same keys as
+ * the JSON-RPC transport without being converted to intermediate maps; the property names are
+ * packed once per class and copied into every response as raw bytes.
+ *
+ * <p>In compact mode the model types listed by {@link #getCompactTypes()} are packed as extension
+ * values instead: the extension type is the model's id and the payload is an array of its property
+ * values in the published field order, with trailing nulls dropped. The length of a payload is
+ * computed from its values before it is packed, so payloads are written straight into the
+ * response instead of through a buffer of their own.
+ */
+public final class ValuePacker {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ConcurrentMap<Class<?>, BeanWriter> writers = new ConcurrentHashMap<>();
+    private static final List<Class<?>> compactTypes = List.of(
+        User.class, Role.class, Function.class, Menu.class, Address.class, Session.class, PaginatedList.class,
+        UserProfile.class, KeysetPage.class);
+
+    private ValuePacker() {
+    }
+
+    public static void packValue(MessagePacker packer, Object value) throws IOException {
+        packValue(packer, value, false);
+    }
+
+    /**
+     * The model types that compact mode packs positionally, as published in the schema: each has
+     * an id, which is its extension type, a name and its field order.
+     */
+    public static List<Map<String, Object>> getCompactTypes() {
+        List<Map<String, Object>> types = new ArrayList<>(compactTypes.size());
+        for (Class<?> type : compactTypes) {
+            BeanWriter writer = writer(type);
+            List<String> fields = new ArrayList<>(writer.properties.length);
+            for (Property property : writer.properties) {
+                fields.add(property.name);
+            }
+            Map<String, Object> descriptor = new LinkedHashMap<>();
+            descriptor.put("id", writer.compactId);
+            descriptor.put("name", type.getSimpleName());
+            descriptor.put("fields", fields);
+            types.add(descriptor);
+        }
+        return types;
+    }
+
+    public static void packValue(MessagePacker packer, Object value, boolean compact) throws IOException {
+        if (value == null) {
+            packer.packNil();
+        } else if (value instanceof String) {
+            packer.packString((String) value);
+        } else if (value instanceof Boolean) {
+            packer.packBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            packer.packInt((Integer) value);
+        } else if (value instanceof Long) {
+            packer.packLong((Long) value);
+        } else if (value instanceof Float) {
+            packer.packFloat((Float) value);
+        } else if (value instanceof Double) {
+            packer.packDouble((Double) value);
+        } else if (value instanceof Short || value instanceof Byte) {
+            packer.packInt(((Number) value).intValue());
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            packer.packArrayHeader(array.length);
+            for (Object item : array) {
+                packValue(packer, item, compact);
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            packer.packArrayHeader(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                packValue(packer, list.get(i), compact);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            packer.packArrayHeader(collection.size());
+            for (Object item : collection) {
+                packValue(packer, item, compact);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            packer.packMapHeader(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                packer.packString(entry.getKey().toString());
+                packValue(packer, entry.getValue(), compact);
+            }
+        } else if (value instanceof Enum) {
+            packer.packString(((Enum<?>) value).name());
+        } else if (value instanceof Date) {
+            packer.packLong(((Date) value).getTime());
+        } else {
+            BeanWriter writer = writer(value.getClass());
+            if (writer.properties.length == 0) {
+                packer.packString(value.toString());
+            } else if (compact && writer.compactId > 0) {
+                writer.writeCompact(packer, value);
+            } else {
+                writer.write(packer, value, compact);
+            }
+        }
+    }
+
+    /**
+     * The number of bytes {@link #packValue(MessagePacker, Object, boolean)} writes for
+     * {@code value}, following the smallest-format choices of {@link MessagePacker}.
+     */
+    static int packedSize(Object value, boolean compact) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof String) {
+            return stringSize((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return longSize(((Number) value).longValue());
+        } else if (value instanceof Float) {
+            return 5;
+        } else if (value instanceof Double) {
+            return 9;
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            int size = containerHeaderSize(array.length);
+            for (Object item : array) {
+                size += packedSize(item, compact);
+            }
+            return size;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            int size = containerHeaderSize(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                size += packedSize(list.get(i), compact);
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            int size = containerHeaderSize(collection.size());
+            for (Object item : collection) {
+                size += packedSize(item, compact);
+            }
+            return size;
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int size = containerHeaderSize(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += stringSize(entry.getKey().toString()) + packedSize(entry.getValue(), compact);
+            }
+            return size;
+        } else if (value instanceof Enum) {
+            return stringSize(((Enum<?>) value).name());
+        } else if (value instanceof Date) {
+            return longSize(((Date) value).getTime());
+        } else {
+            BeanWriter writer = writer(value.getClass());
+            if (writer.properties.length == 0) {
+                return stringSize(value.toString());
+            } else if (compact && writer.compactId > 0) {
+                return writer.compactSize(value);
+            } else {
+                return writer.size(value, compact);
+            }
+        }
+    }
+
+    private static int longSize(long value) {
+        if (value < -(1L << 5)) {
+            if (value < -(1L << 15)) {
+                return value < -(1L << 31) ? 9 : 5;
+            }
+            return value < -(1L << 7) ? 3 : 2;
+        }
+        if (value < (1L << 7)) {
+            return 1;
+        }
+        if (value < (1L << 16)) {
+            return value < (1L << 8) ? 2 : 3;
+        }
+        return value < (1L << 32) ? 5 : 9;
+    }
+
+    private static int stringSize(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates are encoded as '?'
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        if (length < (1 << 5)) {
+            return 1 + length;
+        } else if (length < (1 << 8)) {
+            return 2 + length;
+        } else if (length < (1 << 16)) {
+            return 3 + length;
+        }
+        return 5 + length;
+    }
+
+    private static int containerHeaderSize(int count) {
+        if (count < (1 << 4)) {
+            return 1;
+        }
+        return count < (1 << 16) ? 3 : 5;
+    }
+
+    private static int extensionHeaderSize(int length) {
+        if (length == 1 || length == 2 || length == 4 || length == 8 || length == 16) {
+            return 2;
+        } else if (length < (1 << 8)) {
+            return 3;
+        }
+        return length < (1 << 16) ? 4 : 6;
+    }
+
+    private static byte[] pack(String name) {
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            packer.packString(name);
+            return packer.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static BeanWriter writer(Class<?> type) {
+        return writers.computeIfAbsent(type, BeanWriter::introspect);
+    }
+
+    private static final class Property {
+        private final String name;
+        private final byte[] packedName;
+        private final AnnotatedMember accessor;
+        private final boolean skipNull;
+
+        private Property(String name, AnnotatedMember accessor, boolean skipNull) {
+            this.name = name;
+            this.packedName = pack(name);
+            this.accessor = accessor;
+            this.skipNull = skipNull;
+        }
+    }
+
+    private static final class BeanWriter {
+        private final Property[] properties;
+        private final int compactId;
+
+        private BeanWriter(Property[] properties, int compactId) {
+            this.properties = properties;
+            this.compactId = compactId;
+        }
+
+        static BeanWriter introspect(Class<?> type) {
+            SerializationConfig config = objectMapper.getSerializationConfig();
+            BeanDescription description = config.introspect(config.constructType(type));
+            JsonInclude.Value classInclusion = description.findPropertyInclusion(config.getDefaultPropertyInclusion(type));
+            List<Property> properties = new ArrayList<>();
+            for (BeanPropertyDefinition definition : description.findProperties()) {
+                AnnotatedMember accessor = definition.getAccessor();
+                if (accessor == null || !definition.couldSerialize()) {
+                    continue;
+                }
+                accessor.fixAccess(true);
+                JsonInclude.Include inclusion = classInclusion.withOverrides(definition.findInclusion()).getValueInclusion();
+                boolean skipNull = inclusion != JsonInclude.Include.ALWAYS && inclusion != JsonInclude.Include.USE_DEFAULTS;
+                properties.add(new Property(definition.getName(), accessor, skipNull));
+            }
+            return new BeanWriter(properties.toArray(new Property[0]), compactTypes.indexOf(type) + 1);
+        }
+
+        void write(MessagePacker packer, Object bean, boolean compact) throws IOException {
+            Object[] values = new Object[properties.length];
+            int size = 0;
+            for (int i = 0; i < properties.length; i++) {
+                values[i] = properties[i].accessor.getValue(bean);
+                if (values[i] != null || !properties[i].skipNull) {
+                    size++;
+                }
+            }
+            packer.packMapHeader(size);
+            for (int i = 0; i < properties.length; i++) {
+                if (values[i] != null || !properties[i].skipNull) {
+                    packer.writePayload(properties[i].packedName);
+                    packValue(packer, values[i], compact);
+                }
+            }
+        }
+
+        int size(Object bean, boolean compact) {
+            int count = 0;
+            int size = 0;
+            for (Property property : properties) {
+                Object value = property.accessor.getValue(bean);
+                if (value != null || !property.skipNull) {
+                    count++;
+                    size += property.packedName.length + packedSize(value, compact);
+                }
+            }
+            return containerHeaderSize(count) + size;
+        }
+
+        int compactSize(Object bean) {
+            Object[] values = compactValues(bean);
+            int length = payloadSize(values);
+            return extensionHeaderSize(length) + length;
+        }
+
+        void writeCompact(MessagePacker packer, Object bean) throws IOException {
+            Object[] values = compactValues(bean);
+            packer.packExtensionTypeHeader((byte) compactId, payloadSize(values));
+            packer.packArrayHeader(values.length);
+            for (Object value : values) {
+                packValue(packer, value, true);
+            }
+        }
+
+        /** The property values up to the last non-null one. */
+        private Object[] compactValues(Object bean) {
+            Object[] values = new Object[properties.length];
+            int size = 0;
+            for (int i = 0; i < properties.length; i++) {
+                values[i] = properties[i].accessor.getValue(bean);
+                if (values[i] != null) {
+                    size = i + 1;
+                }
+            }
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+
+        private static int payloadSize(Object[] values) {
+            int length = containerHeaderSize(values.length);
+            for (Object value : values) {
+                length += packedSize(value, true);
+            }
+            return length;
+        }
+    }
+}
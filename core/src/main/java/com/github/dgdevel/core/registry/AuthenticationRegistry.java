@@ -1,24 +1,56 @@
 package com.github.dgdevel.core.registry;
 
+import com.github.dgdevel.core.cache.ReferenceData;
+import com.github.dgdevel.core.db.ConnectionContext;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
 
 public class AuthenticationRegistry {
   private final Connection connection;
+  private ReferenceData referenceData;
 
   public AuthenticationRegistry(Connection connection) {
     this.connection = connection;
   }
 
+  /**
+   * Resolves credential type codes from {@link ReferenceData#CREDENTIAL_TYPES} instead of the
+   * database when verifying credentials.
+   */
+  public void setReferenceData(ReferenceData referenceData) {
+    this.referenceData = referenceData;
+  }
+
+  /**
+   * @return the id of every credential type, by code
+   */
+  public Map<String, Long> loadCredentialTypeIds() throws SQLException {
+    Map<String, Long> ids = new HashMap<>();
+    try (PreparedStatement stmt = connection().prepareStatement("SELECT id, code FROM credential_type");
+        ResultSet rs = stmt.executeQuery()) {
+      while (rs.next()) {
+        ids.put(rs.getString("code"), rs.getLong("id"));
+      }
+    }
+    return ids;
+  }
+
+  private Connection connection() {
+    return ConnectionContext.resolve(connection);
+  }
+
   public void registerType(String code, boolean onlyOnePerUserId, boolean onlyOneSecurityPrincipal)
       throws SQLException {
     String sql =
         "MERGE INTO credential_type (code, only_one_per_user_id, only_one_security_principal) "
             + "KEY (code) VALUES (?, ?, ?)";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, code);
       stmt.setBoolean(2, onlyOnePerUserId);
       stmt.setBoolean(3, onlyOneSecurityPrincipal);
@@ -26,6 +58,16 @@ public class AuthenticationRegistry {
     }
   }
 
+  private void lockUser(Long userId) throws SQLException {
+    String sql = "SELECT id FROM users WHERE id = ? FOR UPDATE";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      stmt.setLong(1, userId);
+      try (ResultSet rs = stmt.executeQuery()) {
+        rs.next();
+      }
+    }
+  }
+
   public Long create(
       Long userId,
       String credentialTypeCode,
@@ -34,20 +76,32 @@ public class AuthenticationRegistry {
       String securityPrincipal,
       String securityCredentials)
       throws SQLException {
-    Long credentialTypeId = getCredentialTypeId(credentialTypeCode);
-    if (credentialTypeId == null) {
-      throw new SQLException("Credential type not found: " + credentialTypeCode);
+    Long credentialTypeId;
+    boolean onlyOnePerUserId;
+    boolean onlyOneSecurityPrincipal;
+    String typeSql =
+        "SELECT id, only_one_per_user_id, only_one_security_principal FROM credential_type "
+            + "WHERE code = ?";
+    try (PreparedStatement stmt = connection().prepareStatement(typeSql)) {
+      stmt.setString(1, credentialTypeCode);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (!rs.next()) {
+          throw new SQLException("Credential type not found: " + credentialTypeCode);
+        }
+        credentialTypeId = rs.getLong("id");
+        onlyOnePerUserId = rs.getBoolean("only_one_per_user_id");
+        onlyOneSecurityPrincipal = rs.getBoolean("only_one_security_principal");
+      }
     }
 
-    Boolean onlyOnePerUserId = getOnlyOnePerUserId(credentialTypeId);
-    Boolean onlyOneSecurityPrincipal = getOnlyOneSecurityPrincipal(credentialTypeId);
+    lockUser(userId);
 
-    if (onlyOnePerUserId != null && onlyOnePerUserId) {
-      expireAll(userId, credentialTypeCode);
+    if (onlyOnePerUserId) {
+      expireAllByTypeId(userId, credentialTypeId);
     }
 
-    if (onlyOneSecurityPrincipal != null && onlyOneSecurityPrincipal && securityPrincipal != null) {
-      expireBySecurityPrincipal(credentialTypeCode, securityPrincipal);
+    if (onlyOneSecurityPrincipal && securityPrincipal != null) {
+      expireBySecurityPrincipal(credentialTypeId, securityPrincipal);
     }
 
     String sql =
@@ -55,7 +109,7 @@ public class AuthenticationRegistry {
             + "security_principal, security_credentials) "
             + "VALUES (?, ?, ?, ?, ?, ?)";
     try (PreparedStatement stmt =
-        connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+        connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       stmt.setLong(1, userId);
       stmt.setLong(2, credentialTypeId);
       stmt.setTimestamp(3, validFrom);
@@ -88,7 +142,7 @@ public class AuthenticationRegistry {
         "UPDATE credentials SET valid_until = CURRENT_TIMESTAMP "
             + "WHERE user_id = ? AND credential_type_id = ? AND security_principal = ? "
             + "AND valid_until > CURRENT_TIMESTAMP";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setLong(2, credentialTypeId);
       stmt.setString(3, securityPrincipal);
@@ -103,31 +157,43 @@ public class AuthenticationRegistry {
     if (credentialTypeId == null) {
       throw new SQLException("Credential type not found: " + credentialTypeCode);
     }
-
-    String sql =
-        "UPDATE credentials SET valid_until = CURRENT_TIMESTAMP "
-            + "WHERE user_id = ? AND credential_type_id = ? AND valid_until > CURRENT_TIMESTAMP";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-      stmt.setLong(1, userId);
-      stmt.setLong(2, credentialTypeId);
-      int affectedRows = stmt.executeUpdate();
-      return affectedRows > 0;
-    }
+    return expireAllByTypeId(userId, credentialTypeId);
   }
 
   public Long verify(String credentialTypeCode, String securityPrincipal, String securityCredentials)
       throws SQLException {
-    Long credentialTypeId = getCredentialTypeId(credentialTypeCode);
-    if (credentialTypeId == null) {
-      return null;
+    if (referenceData != null) {
+      Long credentialTypeId = referenceData.<Map<String, Long>>get(ReferenceData.CREDENTIAL_TYPES).get(credentialTypeCode);
+      return credentialTypeId != null ? verifyByTypeId(credentialTypeId, securityPrincipal, securityCredentials) : null;
+    }
+    String sql =
+        "SELECT c.user_id FROM credentials c "
+            + "INNER JOIN credential_type ct ON c.credential_type_id = ct.id "
+            + "WHERE ct.code = ? AND c.security_principal = ? "
+            + "AND (c.security_credentials = ? OR (c.security_credentials IS NULL AND ? IS NULL)) "
+            + "AND c.valid_from <= CURRENT_TIMESTAMP AND c.valid_until > CURRENT_TIMESTAMP";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      stmt.setString(1, credentialTypeCode);
+      stmt.setString(2, securityPrincipal);
+      stmt.setString(3, securityCredentials);
+      stmt.setString(4, securityCredentials);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (rs.next()) {
+          return rs.getLong("user_id");
+        }
+        return null;
+      }
     }
+  }
 
+  private Long verifyByTypeId(Long credentialTypeId, String securityPrincipal, String securityCredentials)
+      throws SQLException {
     String sql =
         "SELECT user_id FROM credentials "
             + "WHERE credential_type_id = ? AND security_principal = ? "
             + "AND (security_credentials = ? OR (security_credentials IS NULL AND ? IS NULL)) "
             + "AND valid_from <= CURRENT_TIMESTAMP AND valid_until > CURRENT_TIMESTAMP";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, credentialTypeId);
       stmt.setString(2, securityPrincipal);
       stmt.setString(3, securityCredentials);
@@ -143,7 +209,7 @@ public class AuthenticationRegistry {
 
   private Long getCredentialTypeId(String code) throws SQLException {
     String sql = "SELECT id FROM credential_type WHERE code = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, code);
       try (ResultSet rs = stmt.executeQuery()) {
         if (rs.next()) {
@@ -154,44 +220,25 @@ public class AuthenticationRegistry {
     }
   }
 
-  private Boolean getOnlyOnePerUserId(Long credentialTypeId) throws SQLException {
-    String sql = "SELECT only_one_per_user_id FROM credential_type WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-      stmt.setLong(1, credentialTypeId);
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (rs.next()) {
-          return rs.getBoolean("only_one_per_user_id");
-        }
-        return null;
-      }
-    }
-  }
-
-  private Boolean getOnlyOneSecurityPrincipal(Long credentialTypeId) throws SQLException {
-    String sql = "SELECT only_one_security_principal FROM credential_type WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-      stmt.setLong(1, credentialTypeId);
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (rs.next()) {
-          return rs.getBoolean("only_one_security_principal");
-        }
-        return null;
-      }
+  private boolean expireAllByTypeId(Long userId, Long credentialTypeId) throws SQLException {
+    String sql =
+        "UPDATE credentials SET valid_until = CURRENT_TIMESTAMP "
+            + "WHERE user_id = ? AND credential_type_id = ? AND valid_until > CURRENT_TIMESTAMP";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      stmt.setLong(1, userId);
+      stmt.setLong(2, credentialTypeId);
+      int affectedRows = stmt.executeUpdate();
+      return affectedRows > 0;
     }
   }
 
-  private boolean expireBySecurityPrincipal(String credentialTypeCode, String securityPrincipal)
+  private boolean expireBySecurityPrincipal(Long credentialTypeId, String securityPrincipal)
       throws SQLException {
-    Long credentialTypeId = getCredentialTypeId(credentialTypeCode);
-    if (credentialTypeId == null) {
-      throw new SQLException("Credential type not found: " + credentialTypeCode);
-    }
-
     String sql =
         "UPDATE credentials SET valid_until = CURRENT_TIMESTAMP "
             + "WHERE credential_type_id = ? AND security_principal = ? "
             + "AND valid_until > CURRENT_TIMESTAMP";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, credentialTypeId);
       stmt.setString(2, securityPrincipal);
       int affectedRows = stmt.executeUpdate();
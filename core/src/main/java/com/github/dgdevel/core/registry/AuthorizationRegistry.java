@@ -1,8 +1,12 @@
 package com.github.dgdevel.core.registry;
 
+import com.github.dgdevel.core.cache.ReferenceData;
+import com.github.dgdevel.core.db.ConnectionContext;
 import com.github.dgdevel.core.model.Function;
 import com.github.dgdevel.core.model.Menu;
 import com.github.dgdevel.core.model.Role;
+import com.github.dgdevel.core.model.Session;
+import com.github.dgdevel.core.model.User;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -13,17 +17,45 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 public class AuthorizationRegistry {
   private final Connection connection;
+  private ReferenceData referenceData;
 
   public AuthorizationRegistry(Connection connection) {
     this.connection = connection;
   }
 
+  /**
+   * Walks the role hierarchy in {@link ReferenceData#ROLES} instead of querying it level by level.
+   */
+  public void setReferenceData(ReferenceData referenceData) {
+    this.referenceData = referenceData;
+  }
+
+  /**
+   * @return the parent of every role, by role id; root roles map to null
+   */
+  public Map<Long, Long> loadRoleParents() throws SQLException {
+    Map<Long, Long> parents = new HashMap<>();
+    try (PreparedStatement stmt = connection().prepareStatement("SELECT id, parent_id FROM roles");
+        ResultSet rs = stmt.executeQuery()) {
+      while (rs.next()) {
+        parents.put(rs.getLong("id"), (Long) rs.getObject("parent_id"));
+      }
+    }
+    return parents;
+  }
+
+  private Connection connection() {
+    return ConnectionContext.resolve(connection);
+  }
+
   public Long create(Role role) throws SQLException {
     Long parentId = null;
     if (role.getParentCode() != null && !role.getParentCode().isEmpty()) {
@@ -36,7 +68,7 @@ public class AuthorizationRegistry {
 
     String sql = "INSERT INTO roles (code, name, parent_id) VALUES (?, ?, ?)";
     try (PreparedStatement stmt =
-        connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+        connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       stmt.setString(1, role.getCode());
       stmt.setString(2, role.getName());
       if (parentId != null) {
@@ -72,7 +104,7 @@ public class AuthorizationRegistry {
     }
 
     String sql = "UPDATE roles SET code = ?, name = ?, parent_id = ? WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, role.getCode());
       stmt.setString(2, role.getName());
       if (parentId != null) {
@@ -92,7 +124,7 @@ public class AuthorizationRegistry {
             + "AND ((valid_from <= ? AND valid_until >= ?) "
             + "OR (valid_from <= ? AND valid_until >= ?) "
             + "OR (valid_from >= ? AND valid_until <= ?))";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setLong(2, roleId);
       stmt.setTimestamp(3, validFrom);
@@ -111,13 +143,14 @@ public class AuthorizationRegistry {
   }
 
   public Long authorize(Long userId, Long roleId, Timestamp validFrom, Timestamp validUntil) throws SQLException {
+    lockUser(userId);
     if (checkOverlap(userId, roleId, validFrom, validUntil)) {
       throw new SQLException(
           "Authorization period overlaps with existing authorization for the same user and role.");
     }
     String sql = "INSERT INTO authorizations (user_id, role_id, valid_from, valid_until) VALUES (?, ?, ?, ?)";
     try (PreparedStatement stmt =
-        connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+        connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       stmt.setLong(1, userId);
       stmt.setLong(2, roleId);
       stmt.setTimestamp(3, validFrom);
@@ -136,9 +169,19 @@ public class AuthorizationRegistry {
     }
   }
 
+  private void lockUser(Long userId) throws SQLException {
+    String sql = "SELECT id FROM users WHERE id = ? FOR UPDATE";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      stmt.setLong(1, userId);
+      try (ResultSet rs = stmt.executeQuery()) {
+        rs.next();
+      }
+    }
+  }
+
   public boolean deauthorize(Long userId, Long roleId) throws SQLException {
     String sql = "DELETE FROM authorizations WHERE user_id = ? AND role_id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setLong(2, roleId);
       int affectedRows = stmt.executeUpdate();
@@ -158,7 +201,7 @@ public class AuthorizationRegistry {
     String sql =
         "SELECT COUNT(*) FROM authorizations WHERE user_id = ? AND role_id IN (" + inClause + ") "
             + "AND valid_from <= ? AND valid_until >= ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       int paramIndex = 1;
       stmt.setLong(paramIndex++, userId);
       for (Long id : allRoleIdsToCheck) {
@@ -192,7 +235,7 @@ public class AuthorizationRegistry {
             "SELECT COUNT(*) FROM authorizations WHERE user_id = ? AND role_id IN (");
     sql.append(String.join(",", java.util.Collections.nCopies(allRoleIdsToCheck.size(), "?")));
     sql.append(") AND valid_from <= ? AND valid_until >= ?");
-    try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql.toString())) {
       int paramIndex = 1;
       stmt.setLong(paramIndex++, userId);
       for (Long roleId : allRoleIdsToCheck) {
@@ -217,7 +260,7 @@ public class AuthorizationRegistry {
     Timestamp currentTimestamp = new Timestamp(System.currentTimeMillis());
     String sql = "SELECT role_id FROM authorizations WHERE user_id = ? AND valid_from <= ? AND valid_until >= ?";
     List<Long> userRoleIds = new ArrayList<>();
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setTimestamp(2, currentTimestamp);
       stmt.setTimestamp(3, currentTimestamp);
@@ -261,11 +304,20 @@ public class AuthorizationRegistry {
 
   private List<Long> getAncestorRoleIds(Long roleId) throws SQLException {
     List<Long> ancestorIds = new ArrayList<>();
+    if (referenceData != null) {
+      Map<Long, Long> parents = referenceData.get(ReferenceData.ROLES);
+      Long parentId = parents.get(roleId);
+      while (parentId != null && !ancestorIds.contains(parentId)) {
+        ancestorIds.add(parentId);
+        parentId = parents.get(parentId);
+      }
+      return ancestorIds;
+    }
     Long currentId = roleId;
     
     while (currentId != null) {
       String sql = "SELECT parent_id FROM roles WHERE id = ?";
-      try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+      try (PreparedStatement stmt = connection().prepareStatement(sql)) {
         stmt.setLong(1, currentId);
         try (ResultSet rs = stmt.executeQuery()) {
           if (rs.next()) {
@@ -288,6 +340,18 @@ public class AuthorizationRegistry {
 
   private List<Long> getAllDescendantRoleIds(Long roleId) throws SQLException {
     List<Long> descendantIds = new ArrayList<>();
+    if (referenceData != null) {
+      Map<Long, Long> parents = referenceData.get(ReferenceData.ROLES);
+      for (int i = -1; i < descendantIds.size(); i++) {
+        Long parentId = i < 0 ? roleId : descendantIds.get(i);
+        for (Map.Entry<Long, Long> role : parents.entrySet()) {
+          if (parentId.equals(role.getValue()) && !descendantIds.contains(role.getKey())) {
+            descendantIds.add(role.getKey());
+          }
+        }
+      }
+      return descendantIds;
+    }
     List<Long> currentLevel = new ArrayList<>();
     currentLevel.add(roleId);
 
@@ -295,7 +359,7 @@ public class AuthorizationRegistry {
       List<Long> nextLevel = new ArrayList<>();
       String inClause = String.join(",", java.util.Collections.nCopies(currentLevel.size(), "?"));
       String sql = "SELECT id FROM roles WHERE parent_id IN (" + inClause + ")";
-      try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+      try (PreparedStatement stmt = connection().prepareStatement(sql)) {
         int paramIndex = 1;
         for (Long id : currentLevel) {
           stmt.setLong(paramIndex++, id);
@@ -318,7 +382,7 @@ public class AuthorizationRegistry {
 
   public Role findById(Long id) throws SQLException {
     String sql = "SELECT r.id, r.code, r.name, r.parent_id, p.code as parent_code FROM roles r LEFT JOIN roles p ON r.parent_id = p.id WHERE r.id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, id);
       try (ResultSet rs = stmt.executeQuery()) {
         if (rs.next()) {
@@ -340,7 +404,7 @@ public class AuthorizationRegistry {
 
   public Role findByCode(String code) throws SQLException {
     String sql = "SELECT r.id, r.code, r.name, r.parent_id, p.code as parent_code FROM roles r LEFT JOIN roles p ON r.parent_id = p.id WHERE r.code = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, code);
       try (ResultSet rs = stmt.executeQuery()) {
         if (rs.next()) {
@@ -363,7 +427,7 @@ public class AuthorizationRegistry {
   public List<Role> findAll() throws SQLException {
     String sql = "SELECT r.id, r.code, r.name, r.parent_id, p.code as parent_code FROM roles r LEFT JOIN roles p ON r.parent_id = p.id ORDER BY r.code";
     List<Role> roles = new ArrayList<>();
-    try (PreparedStatement stmt = connection.prepareStatement(sql);
+    try (PreparedStatement stmt = connection().prepareStatement(sql);
         ResultSet rs = stmt.executeQuery()) {
       while (rs.next()) {
         Role role = new Role();
@@ -384,7 +448,7 @@ public class AuthorizationRegistry {
   public Long addFunctionToRole(Long roleId, Long functionId) throws SQLException {
     String sql = "INSERT INTO role_functions (role_id, function_id) VALUES (?, ?)";
     try (PreparedStatement stmt =
-             connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+             connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       stmt.setLong(1, roleId);
       stmt.setLong(2, functionId);
       int affectedRows = stmt.executeUpdate();
@@ -408,7 +472,7 @@ public class AuthorizationRegistry {
 
   public boolean removeFunctionFromRole(Long roleId, Long functionId) throws SQLException {
     String sql = "DELETE FROM role_functions WHERE role_id = ? AND function_id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, roleId);
       stmt.setLong(2, functionId);
       int affectedRows = stmt.executeUpdate();
@@ -422,7 +486,7 @@ public class AuthorizationRegistry {
             + "INNER JOIN role_functions rf ON f.id = rf.function_id "
             + "WHERE rf.role_id = ?";
     List<Function> functions = new ArrayList<>();
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, roleId);
       try (ResultSet rs = stmt.executeQuery()) {
         while (rs.next()) {
@@ -454,7 +518,7 @@ public class AuthorizationRegistry {
     Map<Long, Menu> menuMap = new HashMap<>();
     List<Menu> rootMenus = new ArrayList<>();
 
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setTimestamp(2, currentTimestamp);
       stmt.setTimestamp(3, currentTimestamp);
@@ -493,4 +557,61 @@ public class AuthorizationRegistry {
 
     return rootMenus;
   }
+
+  public Session resolveSession(Long userId) throws SQLException {
+    Timestamp currentTimestamp = new Timestamp(System.currentTimeMillis());
+
+    String sql =
+        "WITH RECURSIVE effective_roles(role_id, direct) AS ("
+            + "SELECT a.role_id, TRUE FROM authorizations a "
+            + "WHERE a.user_id = ? AND a.valid_from <= ? AND a.valid_until >= ? "
+            + "UNION "
+            + "SELECT r.id, FALSE FROM roles r INNER JOIN effective_roles er ON r.parent_id = er.role_id"
+            + ") "
+            + "SELECT u.id, u.display_name, u.active, r.code as role_code, rf.function_id "
+            + "FROM users u "
+            + "LEFT JOIN effective_roles er ON 1 = 1 "
+            + "LEFT JOIN roles r ON r.id = er.role_id "
+            // like getMenuTree, only directly authorized roles grant their functions
+            + "LEFT JOIN role_functions rf ON rf.role_id = r.id AND er.direct "
+            + "WHERE u.id = ? "
+            + "ORDER BY r.code, rf.function_id";
+
+    Session session = null;
+    Set<String> roleCodes = new LinkedHashSet<>();
+    Set<Long> functionIds = new TreeSet<>();
+
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      stmt.setLong(1, userId);
+      stmt.setTimestamp(2, currentTimestamp);
+      stmt.setTimestamp(3, currentTimestamp);
+      stmt.setLong(4, userId);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          if (session == null) {
+            User user = new User();
+            user.setId(rs.getLong("id"));
+            user.setDisplayName(rs.getString("display_name"));
+            user.setActive(rs.getBoolean("active"));
+            session = new Session();
+            session.setUser(user);
+          }
+          String roleCode = rs.getString("role_code");
+          if (roleCode != null) {
+            roleCodes.add(roleCode);
+          }
+          Long functionId = (Long) rs.getObject("function_id");
+          if (functionId != null) {
+            functionIds.add(functionId);
+          }
+        }
+      }
+    }
+
+    if (session != null) {
+      session.setRoleCodes(new ArrayList<>(roleCodes));
+      session.setFunctionIds(new ArrayList<>(functionIds));
+    }
+    return session;
+  }
 }
@@ -1,5 +1,6 @@
 package com.github.dgdevel.core.registry;
 
+import com.github.dgdevel.core.db.ConnectionContext;
 import com.github.dgdevel.core.model.Function;
 import com.github.dgdevel.core.model.Menu;
 
@@ -19,10 +20,14 @@ public class GenericRegistry {
     this.connection = connection;
   }
 
+  private Connection connection() {
+    return ConnectionContext.resolve(connection);
+  }
+
   public Long createFunction(Function function) throws SQLException {
     String sql = "INSERT INTO functions (name, url) VALUES (?, ?)";
     try (PreparedStatement stmt =
-             connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+             connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       stmt.setString(1, function.getName());
       if (function.getUrl() != null) {
         stmt.setString(2, function.getUrl());
@@ -45,7 +50,7 @@ public class GenericRegistry {
 
   public boolean updateFunction(Function function) throws SQLException {
     String sql = "UPDATE functions SET name = ?, url = ? WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, function.getName());
       if (function.getUrl() != null) {
         stmt.setString(2, function.getUrl());
@@ -61,7 +66,7 @@ public class GenericRegistry {
   public Long createMenu(Menu menu) throws SQLException {
     String sql = "INSERT INTO menu (function_id, parent_id) VALUES (?, ?)";
     try (PreparedStatement stmt =
-             connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+             connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       if (menu.getFunctionId() != null) {
         stmt.setLong(1, menu.getFunctionId());
       } else {
@@ -88,7 +93,7 @@ public class GenericRegistry {
 
   public boolean updateMenu(Menu menu) throws SQLException {
     String sql = "UPDATE menu SET function_id = ?, parent_id = ? WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       if (menu.getFunctionId() != null) {
         stmt.setLong(1, menu.getFunctionId());
       } else {
@@ -107,7 +112,7 @@ public class GenericRegistry {
 
   public Function findFunctionByName(String name) throws SQLException {
     String sql = "SELECT id, name, url FROM functions WHERE name = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, name);
       try (ResultSet rs = stmt.executeQuery()) {
         if (rs.next()) {
@@ -125,7 +130,7 @@ public class GenericRegistry {
   public List<Function> getAllFunctions() throws SQLException {
     String sql = "SELECT id, name, url FROM functions ORDER BY id";
     List<Function> functions = new ArrayList<>();
-    try (PreparedStatement stmt = connection.prepareStatement(sql);
+    try (PreparedStatement stmt = connection().prepareStatement(sql);
          ResultSet rs = stmt.executeQuery()) {
       while (rs.next()) {
         Function function = new Function();
@@ -146,7 +151,7 @@ public class GenericRegistry {
     Map<Long, Menu> menuMap = new HashMap<>();
     List<Menu> rootMenus = new ArrayList<>();
 
-    try (PreparedStatement stmt = connection.prepareStatement(sql);
+    try (PreparedStatement stmt = connection().prepareStatement(sql);
          ResultSet rs = stmt.executeQuery()) {
       while (rs.next()) {
         Menu menu = new Menu();
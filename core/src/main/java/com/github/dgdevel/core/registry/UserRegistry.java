@@ -1,30 +1,73 @@
 package com.github.dgdevel.core.registry;
 
+import com.github.dgdevel.core.cache.AttributeIndex;
+import com.github.dgdevel.core.cache.ReferenceData;
+import com.github.dgdevel.core.common.KeysetPage;
 import com.github.dgdevel.core.common.PaginatedList;
 import com.github.dgdevel.core.common.Paginator;
+import com.github.dgdevel.core.db.ConnectionContext;
 import com.github.dgdevel.core.model.Address;
 import com.github.dgdevel.core.model.AddressType;
+import com.github.dgdevel.core.model.Role;
 import com.github.dgdevel.core.model.User;
+import com.github.dgdevel.core.model.UserProfile;
+import com.github.dgdevel.core.search.UserSearchIndex;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class UserRegistry {
+  /** Largest number of IDs bound to a single IN list; longer lists are queried in chunks. */
+  static final int IN_CHUNK_SIZE = 500;
+
+  /** Page size of {@link #findByAttribute} when none is given, and the largest one allowed. */
+  static final int DEFAULT_SEARCH_LIMIT = 100;
+  static final int MAX_SEARCH_LIMIT = 1000;
+
   private final Connection connection;
+  private ReferenceData referenceData;
+  private List<String> indexedAttributes = List.of();
+  private UserSearchIndex searchIndex;
 
   public UserRegistry(Connection connection) {
     this.connection = connection;
   }
 
+  /**
+   * Answers {@link #findByAttribute} for the {@code indexedAttributes} names from
+   * {@link ReferenceData#USER_ATTRIBUTE_INDEX} instead of querying.
+   */
+  public void setReferenceData(ReferenceData referenceData, List<String> indexedAttributes) {
+    this.referenceData = referenceData;
+    this.indexedAttributes = indexedAttributes;
+  }
+
+  /**
+   * Keeps the address emails of {@code searchIndex} current: the address writes update it
+   * once their transaction commits.
+   */
+  public void setSearchIndex(UserSearchIndex searchIndex) {
+    this.searchIndex = searchIndex;
+  }
+
+  private Connection connection() {
+    return ConnectionContext.resolve(connection);
+  }
+
     public Long create(User user) throws SQLException {
         String sql = "INSERT INTO users (display_name, active) VALUES (?, ?)";
         try (PreparedStatement stmt =
-            connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+            connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       stmt.setString(1, user.getDisplayName());
       stmt.setBoolean(2, user.isActive());
       int affectedRows = stmt.executeUpdate();
@@ -43,7 +86,7 @@ public class UserRegistry {
 
   public boolean update(User user) throws SQLException {
     String sql = "UPDATE users SET display_name = ?, active = ? WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, user.getDisplayName());
       stmt.setBoolean(2, user.isActive());
       stmt.setLong(3, user.getId());
@@ -54,7 +97,7 @@ public class UserRegistry {
 
   public boolean activate(Long id) throws SQLException {
     String sql = "UPDATE users SET active = TRUE WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, id);
       int affectedRows = stmt.executeUpdate();
       return affectedRows > 0;
@@ -63,7 +106,7 @@ public class UserRegistry {
 
   public boolean deactivate(Long id) throws SQLException {
     String sql = "UPDATE users SET active = FALSE WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, id);
       int affectedRows = stmt.executeUpdate();
       return affectedRows > 0;
@@ -74,7 +117,7 @@ public class UserRegistry {
     String sql =
         "MERGE INTO user_attributes (user_id, name, attr_value, updated_at) "
             + "KEY (user_id, name) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setString(2, name);
       stmt.setString(3, value);
@@ -88,9 +131,79 @@ public class UserRegistry {
     }
   }
 
+  /**
+   * Sets several attributes of a user with one batched MERGE.
+   */
+  public boolean setAttributes(Long userId, Map<String, ?> attributes) throws SQLException {
+    if (attributes.isEmpty()) {
+      return true;
+    }
+    String sql =
+        "MERGE INTO user_attributes (user_id, name, attr_value, updated_at) "
+            + "KEY (user_id, name) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+        stmt.setLong(1, userId);
+        stmt.setString(2, entry.getKey());
+        stmt.setString(3, entry.getValue() != null ? entry.getValue().toString() : null);
+        stmt.addBatch();
+      }
+      stmt.executeBatch();
+      return true;
+    } catch (SQLException e) {
+      if (e.getMessage() != null && e.getMessage().contains("Referential integrity")) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  public Map<String, String> getAttributes(Long userId) throws SQLException {
+    String sql = "SELECT name, attr_value FROM user_attributes WHERE user_id = ?";
+    Map<String, String> attributes = new TreeMap<>();
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      stmt.setLong(1, userId);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          attributes.put(rs.getString("name"), rs.getString("attr_value"));
+        }
+      }
+    }
+    return attributes;
+  }
+
+  /**
+   * @param names the attributes to return, or null or empty for all of them
+   * @return the attributes of each user that has any of them, by user ID
+   */
+  public Map<Long, Map<String, String>> getAttributesForUsers(List<Long> userIds, List<String> names) throws SQLException {
+    Map<Long, Map<String, String>> attributes = new TreeMap<>();
+    boolean allNames = names == null || names.isEmpty();
+    String namesClause = allNames ? "" : " AND name IN (" + String.join(",", Collections.nCopies(names.size(), "?")) + ")";
+    for (List<Long> chunk : chunks(userIds)) {
+      String sql = "SELECT user_id, name, attr_value FROM user_attributes WHERE user_id IN ("
+          + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")" + namesClause;
+      try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+        int paramIndex = setIds(stmt, 1, chunk);
+        if (!allNames) {
+          for (String name : names) {
+            stmt.setString(paramIndex++, name);
+          }
+        }
+        try (ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            attributes.computeIfAbsent(rs.getLong("user_id"), id -> new TreeMap<>())
+                .put(rs.getString("name"), rs.getString("attr_value"));
+          }
+        }
+      }
+    }
+    return attributes;
+  }
+
   public String getAttribute(Long userId, String name) throws SQLException {
     String sql = "SELECT attr_value FROM user_attributes WHERE user_id = ? AND name = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setString(2, name);
       try (ResultSet rs = stmt.executeQuery()) {
@@ -102,9 +215,103 @@ public class UserRegistry {
     }
   }
 
+  /**
+   * Reads every user and every address email into {@code builder}.
+   */
+  public void loadSearchIndex(UserSearchIndex.Builder builder) throws SQLException {
+    try (PreparedStatement stmt = connection().prepareStatement("SELECT id, display_name, active FROM users");
+        ResultSet rs = stmt.executeQuery()) {
+      while (rs.next()) {
+        builder.addUser(rs.getLong("id"), rs.getString("display_name"), rs.getBoolean("active"));
+      }
+    }
+    try (PreparedStatement stmt = connection().prepareStatement("SELECT id, user_id, email FROM addresses WHERE email IS NOT NULL");
+        ResultSet rs = stmt.executeQuery()) {
+      while (rs.next()) {
+        builder.addEmail(rs.getLong("user_id"), rs.getLong("id"), rs.getString("email"));
+      }
+    }
+  }
+
+  /**
+   * Loads the values of the {@code names} attributes of every user into an {@link AttributeIndex}.
+   */
+  public AttributeIndex loadAttributeIndex(List<String> names) throws SQLException {
+    AttributeIndex.Builder builder = AttributeIndex.builder(names);
+    if (names.isEmpty()) {
+      return builder.build();
+    }
+    String sql = "SELECT name, attr_value, user_id FROM user_attributes WHERE name IN ("
+        + String.join(",", Collections.nCopies(names.size(), "?")) + ")";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      int paramIndex = 1;
+      for (String name : names) {
+        stmt.setString(paramIndex++, name);
+      }
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          builder.add(rs.getString("name"), rs.getString("attr_value"), rs.getLong("user_id"));
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Finds the users whose attribute {@code name} equals {@code value}, or starts with it when
+   * {@code prefix} is true, ordered by user ID.
+   *
+   * @param afterUserId the {@code nextAfter} of the previous page, or null for the first page
+   */
+  public KeysetPage<User> findByAttribute(String name, String value, boolean prefix, Long afterUserId, Long limit)
+      throws SQLException {
+    int pageSize = limit == null || limit <= 0 ? DEFAULT_SEARCH_LIMIT : (int) Math.min(limit, MAX_SEARCH_LIMIT);
+    long after = afterUserId != null ? afterUserId : Long.MIN_VALUE;
+
+    KeysetPage<User> result = new KeysetPage<>();
+    if (referenceData != null && indexedAttributes.contains(name)) {
+      AttributeIndex index = referenceData.get(ReferenceData.USER_ATTRIBUTE_INDEX);
+      List<Long> userIds = index.find(name, value, prefix, after, pageSize + 1);
+      if (userIds.size() > pageSize) {
+        userIds = userIds.subList(0, pageSize);
+        result.setNextAfter(userIds.get(pageSize - 1));
+      }
+      result.setPage(findByIds(userIds));
+      return result;
+    }
+
+    String sql = "SELECT u.id, u.display_name, u.active FROM user_attributes a "
+        + "INNER JOIN users u ON u.id = a.user_id "
+        + "WHERE a.name = ? AND a.attr_value " + (prefix ? "LIKE ? ESCAPE '\\'" : "= ?") + " AND a.user_id > ? "
+        + "ORDER BY a.user_id LIMIT ?";
+    List<User> users = new ArrayList<>();
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      stmt.setString(1, name);
+      stmt.setString(2, prefix ? value.replaceAll("([\\\\%_])", "\\\\$1") + "%" : value);
+      stmt.setLong(3, after);
+      stmt.setInt(4, pageSize + 1);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          User user = new User();
+          user.setId(rs.getLong("id"));
+          user.setDisplayName(rs.getString("display_name"));
+          user.setActive(rs.getBoolean("active"));
+          users.add(user);
+        }
+      }
+    }
+
+    if (users.size() > pageSize) {
+      users = new ArrayList<>(users.subList(0, pageSize));
+      result.setNextAfter(users.get(pageSize - 1).getId());
+    }
+    result.setPage(users);
+    return result;
+  }
+
   public User findById(Long id) throws SQLException {
     String sql = "SELECT id, display_name, active FROM users WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, id);
       try (ResultSet rs = stmt.executeQuery()) {
         if (rs.next()) {
@@ -119,6 +326,172 @@ public class UserRegistry {
     }
   }
 
+  /**
+   * @return the users found, in request order; duplicate IDs are returned once
+   */
+  public List<User> findByIds(List<Long> ids) throws SQLException {
+    Map<Long, User> users = new LinkedHashMap<>();
+    for (Long id : ids) {
+      users.put(id, null);
+    }
+    for (List<Long> chunk : chunks(ids)) {
+      String sql = "SELECT id, display_name, active FROM users WHERE id IN ("
+          + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+      try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+        setIds(stmt, 1, chunk);
+        try (ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            User user = new User();
+            user.setId(rs.getLong("id"));
+            user.setDisplayName(rs.getString("display_name"));
+            user.setActive(rs.getBoolean("active"));
+            users.put(user.getId(), user);
+          }
+        }
+      }
+    }
+    users.values().removeIf(user -> user == null);
+    return new ArrayList<>(users.values());
+  }
+
+  public UserProfile getProfile(Long id) throws SQLException {
+    List<UserProfile> profiles = getProfiles(List.of(id));
+    return profiles.isEmpty() ? null : profiles.get(0);
+  }
+
+  /**
+   * Loads the user, attributes, addresses and currently authorized roles of every requested user
+   * with one query per table for each {@link #IN_CHUNK_SIZE} IDs.
+   *
+   * @return the profiles in request order; IDs of missing users are left out
+   */
+  public List<UserProfile> getProfiles(List<Long> ids) throws SQLException {
+    Map<Long, UserProfile> profiles = new LinkedHashMap<>();
+    for (Long userId : ids) {
+      profiles.put(userId, null);
+    }
+    for (List<Long> chunk : chunks(ids)) {
+      loadProfiles(chunk, profiles);
+    }
+    profiles.values().removeIf(profile -> profile == null);
+    return new ArrayList<>(profiles.values());
+  }
+
+  private void loadProfiles(List<Long> userIds, Map<Long, UserProfile> profiles) throws SQLException {
+    String inClause = String.join(",", Collections.nCopies(userIds.size(), "?"));
+    boolean found = false;
+    String sql = "SELECT id, display_name, active FROM users WHERE id IN (" + inClause + ")";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      setIds(stmt, 1, userIds);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          User user = new User();
+          user.setId(rs.getLong("id"));
+          user.setDisplayName(rs.getString("display_name"));
+          user.setActive(rs.getBoolean("active"));
+          UserProfile profile = new UserProfile();
+          profile.setUser(user);
+          profiles.put(user.getId(), profile);
+          found = true;
+        }
+      }
+    }
+    if (!found) {
+      return;
+    }
+
+    sql = "SELECT user_id, name, attr_value FROM user_attributes WHERE user_id IN (" + inClause + ")";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      setIds(stmt, 1, userIds);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          UserProfile profile = profiles.get(rs.getLong("user_id"));
+          if (profile != null) {
+            profile.getAttributes().put(rs.getString("name"), rs.getString("attr_value"));
+          }
+        }
+      }
+    }
+
+    sql = "SELECT id, user_id, address_type, street1, street2, city, state, postal_code, country, email, phone, mobile, fax, fullname "
+        + "FROM addresses WHERE user_id IN (" + inClause + ") ORDER BY id";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      setIds(stmt, 1, userIds);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          UserProfile profile = profiles.get(rs.getLong("user_id"));
+          if (profile != null) {
+            Address address = new Address();
+            address.setId(rs.getLong("id"));
+            address.setUserId(rs.getLong("user_id"));
+            address.setAddressType(AddressType.valueOf(rs.getString("address_type")));
+            address.setStreet1(rs.getString("street1"));
+            address.setStreet2(rs.getString("street2"));
+            address.setCity(rs.getString("city"));
+            address.setState(rs.getString("state"));
+            address.setPostalCode(rs.getString("postal_code"));
+            address.setCountry(rs.getString("country"));
+            address.setEmail(rs.getString("email"));
+            address.setPhone(rs.getString("phone"));
+            address.setMobile(rs.getString("mobile"));
+            address.setFax(rs.getString("fax"));
+            address.setFullname(rs.getString("fullname"));
+            profile.getAddresses().add(address);
+          }
+        }
+      }
+    }
+
+    Timestamp currentTimestamp = new Timestamp(System.currentTimeMillis());
+    sql = "SELECT DISTINCT a.user_id, r.id, r.code, r.name, r.parent_id, p.code as parent_code "
+        + "FROM authorizations a "
+        + "INNER JOIN roles r ON a.role_id = r.id "
+        + "LEFT JOIN roles p ON r.parent_id = p.id "
+        + "WHERE a.user_id IN (" + inClause + ") AND a.valid_from <= ? AND a.valid_until >= ? "
+        + "ORDER BY r.code";
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+      int paramIndex = setIds(stmt, 1, userIds);
+      stmt.setTimestamp(paramIndex++, currentTimestamp);
+      stmt.setTimestamp(paramIndex, currentTimestamp);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          UserProfile profile = profiles.get(rs.getLong("user_id"));
+          if (profile != null) {
+            Role role = new Role();
+            role.setId(rs.getLong("id"));
+            role.setCode(rs.getString("code"));
+            role.setName(rs.getString("name"));
+            Long parentId = (Long) rs.getObject("parent_id");
+            if (parentId != null) {
+              role.setParentId(parentId);
+              role.setParentCode(rs.getString("parent_code"));
+            }
+            profile.getRoles().add(role);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Splits distinct IDs into lists of at most {@link #IN_CHUNK_SIZE}.
+   */
+  private static List<List<Long>> chunks(List<Long> ids) {
+    List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+    List<List<Long>> chunks = new ArrayList<>();
+    for (int from = 0; from < distinct.size(); from += IN_CHUNK_SIZE) {
+      chunks.add(distinct.subList(from, Math.min(from + IN_CHUNK_SIZE, distinct.size())));
+    }
+    return chunks;
+  }
+
+  private static int setIds(PreparedStatement stmt, int paramIndex, List<Long> ids) throws SQLException {
+    for (Long id : ids) {
+      stmt.setLong(paramIndex++, id);
+    }
+    return paramIndex;
+  }
+
   public PaginatedList<User> findBy(Paginator paginator) throws SQLException {
     String baseSql = "SELECT id, display_name, active FROM users";
     String countSql = "SELECT COUNT(*) FROM users";
@@ -129,7 +502,7 @@ public class UserRegistry {
     String querySql = baseSql + whereClause + orderByClause + limitClause;
 
     int totalCount = 0;
-    try (PreparedStatement stmt = connection.prepareStatement(countSql + whereClause)) {
+    try (PreparedStatement stmt = connection().prepareStatement(countSql + whereClause)) {
       if (paginator.getFilters() != null) {
         int paramIndex = 1;
         for (String value : paginator.getFilters().values()) {
@@ -144,7 +517,7 @@ public class UserRegistry {
     }
 
     List<User> users = new ArrayList<>();
-    try (PreparedStatement stmt = connection.prepareStatement(querySql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(querySql)) {
       if (paginator.getFilters() != null) {
         int paramIndex = 1;
         for (String value : paginator.getFilters().values()) {
@@ -199,7 +572,7 @@ public class UserRegistry {
         "INSERT INTO addresses (user_id, address_type, street1, street2, city, state, postal_code, country, email, phone, mobile, fax, fullname) "
             + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
     try (PreparedStatement stmt =
-        connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+        connection().prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
       stmt.setLong(1, userId);
       stmt.setString(2, address.getAddressType().name());
       stmt.setString(3, address.getStreet1());
@@ -219,7 +592,9 @@ public class UserRegistry {
       }
       try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
         if (generatedKeys.next()) {
-          return generatedKeys.getLong(1);
+          long addressId = generatedKeys.getLong(1);
+          indexEmail(userId, addressId, address.getEmail());
+          return addressId;
         } else {
           throw new SQLException("Creating address failed, no ID obtained.");
         }
@@ -246,7 +621,7 @@ public class UserRegistry {
         "SELECT id, user_id, address_type, street1, street2, city, state, postal_code, country, email, phone, mobile, fax, fullname "
             + "FROM addresses WHERE user_id = ?";
     List<Address> addresses = new ArrayList<>();
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       try (ResultSet rs = stmt.executeQuery()) {
         while (rs.next()) {
@@ -277,7 +652,7 @@ public class UserRegistry {
         "SELECT id, user_id, address_type, street1, street2, city, state, postal_code, country, email, phone, mobile, fax, fullname "
             + "FROM addresses WHERE user_id = ? AND address_type = ?";
     List<Address> addresses = new ArrayList<>();
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       stmt.setString(2, type.name());
       try (ResultSet rs = stmt.executeQuery()) {
@@ -308,7 +683,7 @@ public class UserRegistry {
     String sql =
         "UPDATE addresses SET address_type = ?, street1 = ?, street2 = ?, city = ?, state = ?, postal_code = ?, country = ?, email = ?, phone = ?, mobile = ?, fax = ?, fullname = ? "
             + "WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setString(1, address.getAddressType().name());
       stmt.setString(2, address.getStreet1());
       stmt.setString(3, address.getStreet2());
@@ -323,24 +698,51 @@ public class UserRegistry {
       stmt.setString(12, address.getFullname());
       stmt.setLong(13, address.getId());
       int affectedRows = stmt.executeUpdate();
+      if (affectedRows > 0 && searchIndex != null) {
+        indexEmail(addressOwner(address.getId()), address.getId(), address.getEmail());
+      }
       return affectedRows > 0;
     }
   }
 
+  private Long addressOwner(Long addressId) throws SQLException {
+    try (PreparedStatement stmt = connection().prepareStatement("SELECT user_id FROM addresses WHERE id = ?")) {
+      stmt.setLong(1, addressId);
+      try (ResultSet rs = stmt.executeQuery()) {
+        return rs.next() ? rs.getLong(1) : null;
+      }
+    }
+  }
+
+  private void indexEmail(Long userId, long addressId, String email) {
+    UserSearchIndex index = searchIndex;
+    if (index != null && userId != null) {
+      ConnectionContext.afterCommit(() -> index.putEmail(userId, addressId, email));
+    }
+  }
+
   public boolean deleteAddress(Long addressId) throws SQLException {
     String sql = "DELETE FROM addresses WHERE id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, addressId);
       int affectedRows = stmt.executeUpdate();
+      UserSearchIndex index = searchIndex;
+      if (affectedRows > 0 && index != null) {
+        ConnectionContext.afterCommit(() -> index.removeEmail(addressId));
+      }
       return affectedRows > 0;
     }
   }
 
   public boolean deleteAddresses(Long userId) throws SQLException {
     String sql = "DELETE FROM addresses WHERE user_id = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    try (PreparedStatement stmt = connection().prepareStatement(sql)) {
       stmt.setLong(1, userId);
       int affectedRows = stmt.executeUpdate();
+      UserSearchIndex index = searchIndex;
+      if (affectedRows > 0 && index != null) {
+        ConnectionContext.afterCommit(() -> index.removeEmails(userId));
+      }
       return affectedRows > 0;
     }
   }
@@ -0,0 +1,12 @@
+package com.github.dgdevel.core.rpc;
+
+/**
+ * A request's deadline passed before it could be answered; reported as -32004.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.dgdevel.core.rpc;
+
+/**
+ * A request's params do not match the method's declared parameters; reported as -32602.
+ */
+public class InvalidParamsException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidParamsException(String message) {
+        super(message);
+    }
+}
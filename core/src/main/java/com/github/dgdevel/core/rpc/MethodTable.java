@@ -0,0 +1,614 @@
+package com.github.dgdevel.core.rpc;
+
+import com.github.dgdevel.core.cache.ReferenceData;
+import com.github.dgdevel.core.cache.ResultCache;
+import com.github.dgdevel.core.cache.TableVersions;
+import com.github.dgdevel.core.common.Paginator;
+import com.github.dgdevel.core.db.DatabaseManager;
+import com.github.dgdevel.core.model.Function;
+import com.github.dgdevel.core.model.Menu;
+import com.github.dgdevel.core.model.Role;
+import com.github.dgdevel.core.model.User;
+import com.github.dgdevel.core.msgpack.ValuePacker;
+import com.github.dgdevel.core.registry.AuthenticationRegistry;
+import com.github.dgdevel.core.registry.AuthorizationRegistry;
+import com.github.dgdevel.core.registry.GenericRegistry;
+import com.github.dgdevel.core.registry.UserRegistry;
+import com.github.dgdevel.core.search.UserSearchIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.dgdevel.core.rpc.Param.optional;
+import static com.github.dgdevel.core.rpc.Param.required;
+import static com.github.dgdevel.core.rpc.ParamType.BOOLEAN;
+import static com.github.dgdevel.core.rpc.ParamType.NUMBER;
+import static com.github.dgdevel.core.rpc.ParamType.NUMBER_ARRAY;
+import static com.github.dgdevel.core.rpc.ParamType.STRING_ARRAY;
+import static com.github.dgdevel.core.rpc.ParamType.STRING_MAP;
+import static com.github.dgdevel.core.rpc.ParamType.STRING;
+import static com.github.dgdevel.core.rpc.ParamType.TIMESTAMP;
+import static com.github.dgdevel.core.rpc.ParamType.numberArray;
+import static com.github.dgdevel.core.rpc.ParamType.object;
+
+/**
+ * The methods served by both the JSON-RPC and the MessagePack transports, declared once with typed
+ * parameters. Built once per server and shared by every connection.
+ */
+public class MethodTable {
+    /** Most IDs one user/getProfiles call may ask for. */
+    static final int MAX_PROFILE_IDS = 1000;
+
+    private final Map<String, RpcMethod> methods = new HashMap<>();
+    private final List<RpcMethod> methodList = new ArrayList<>();
+    private final DatabaseManager databaseManager;
+    private final UserRegistry userRegistry;
+    private final AuthenticationRegistry authenticationRegistry;
+    private final AuthorizationRegistry authorizationRegistry;
+    private final GenericRegistry genericRegistry;
+    private final ReferenceData referenceData;
+    private final TableVersions tableVersions;
+    private final ResultCache resultCache;
+    private final SingleFlight singleFlight;
+    private final UserSearchIndex userSearchIndex;
+    private final String schemaJson;
+    private final String schemaEtag;
+
+    public MethodTable(
+        DatabaseManager databaseManager,
+        UserRegistry userRegistry,
+        AuthenticationRegistry authenticationRegistry,
+        AuthorizationRegistry authorizationRegistry,
+        GenericRegistry genericRegistry,
+        ReferenceData referenceData,
+        TableVersions tableVersions,
+        ResultCache resultCache,
+        UserSearchIndex userSearchIndex) {
+        this.databaseManager = databaseManager;
+        this.userRegistry = userRegistry;
+        this.authenticationRegistry = authenticationRegistry;
+        this.authorizationRegistry = authorizationRegistry;
+        this.genericRegistry = genericRegistry;
+        this.referenceData = referenceData;
+        this.tableVersions = tableVersions;
+        this.resultCache = resultCache;
+        this.singleFlight = new SingleFlight(tableVersions);
+        this.userSearchIndex = userSearchIndex;
+        registerMethods();
+        try {
+            this.schemaJson = ParamType.objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(schema());
+            byte[] digest = java.security.MessageDigest.getInstance("SHA-256")
+                .digest(schemaJson.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            this.schemaEtag = "\"" + java.util.HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialize the schema", e);
+        }
+    }
+
+    /**
+     * Registers the loaders of the datasets the methods read from {@link ReferenceData}. Each one
+     * runs on a pooled connection of its own, so loads can proceed in parallel and never see
+     * uncommitted writes. Datasets are dropped whenever {@code tableVersions} reports a change to one
+     * of their tables, except the attribute index, which is served as it was until a background
+     * reload replaces it.
+     */
+    public static ReferenceData referenceData(
+        TableVersions tableVersions,
+        DatabaseManager databaseManager,
+        UserRegistry userRegistry,
+        AuthenticationRegistry authenticationRegistry,
+        AuthorizationRegistry authorizationRegistry,
+        GenericRegistry genericRegistry,
+        List<String> indexedAttributes) {
+        ReferenceData referenceData = new ReferenceData();
+        referenceData.register(ReferenceData.CONFIG,
+            () -> databaseManager.onPooledConnection(databaseManager::getConfigTable), "config");
+        referenceData.register(ReferenceData.TRANSLATIONS,
+            () -> databaseManager.onPooledConnection(databaseManager::getAllTranslations), "translations");
+        referenceData.register(ReferenceData.CREDENTIAL_TYPES,
+            () -> databaseManager.onPooledConnection(authenticationRegistry::loadCredentialTypeIds), "credential_type");
+        referenceData.register(ReferenceData.ROLES,
+            () -> databaseManager.onPooledConnection(authorizationRegistry::loadRoleParents), "roles");
+        referenceData.register(ReferenceData.MENU_TREE,
+            () -> databaseManager.onPooledConnection(genericRegistry::getMenuTree), "menu", "functions");
+        if (!indexedAttributes.isEmpty()) {
+            referenceData.registerReloadedInBackground(ReferenceData.USER_ATTRIBUTE_INDEX,
+                () -> databaseManager.onPooledConnection(() -> userRegistry.loadAttributeIndex(indexedAttributes)), "user_attributes");
+        }
+        referenceData.watch(tableVersions);
+        userRegistry.setReferenceData(referenceData, indexedAttributes);
+        authenticationRegistry.setReferenceData(referenceData);
+        authorizationRegistry.setReferenceData(referenceData);
+        return referenceData;
+    }
+
+    private Map<String, String> configNamespace(String namespace) throws java.sql.SQLException {
+        Map<String, Map<String, String>> table = referenceData.get(ReferenceData.CONFIG);
+        return table.getOrDefault(namespace, Map.of());
+    }
+
+    /**
+     * Runs a method for one of the transports. Identical reads running at the same time share one
+     * execution and are answered with a {@link SharedResult}. A cached read is answered from the
+     * result cache while its tables are unchanged, and computed on the primary when it is not, since
+     * a lagging replica could store an old result under current versions. Other reads run on a
+     * replica. A write bumps the versions of the tables it declares once it has returned, that is
+     * once it has committed.
+     */
+    public Object invoke(RpcMethod method, Object[] args, long lastWriteMillis) throws java.sql.SQLException {
+        if (method.isInMemory()) {
+            return method.invoke(args);
+        }
+        if (method.isReadOnly()) {
+            return singleFlight.run(method.getName(), args, method.getReadTables(), lastWriteMillis, () -> {
+                if (resultCache.isEnabled() && method.isCached()) {
+                    return resultCache.get(method.getName(), args, method.getReadTables(), () -> method.invoke(args));
+                }
+                return databaseManager.onReplica(() -> method.invoke(args), lastWriteMillis);
+            });
+        }
+        Object result = method.invoke(args);
+        tableVersions.bump(method.getWriteTables());
+        return result;
+    }
+
+    public RpcMethod get(String name) {
+        return name != null ? methods.get(name) : null;
+    }
+
+    public List<RpcMethod> getMethods() {
+        return Collections.unmodifiableList(methodList);
+    }
+
+    public Map<String, Object> getSchema() {
+        return schema();
+    }
+
+    private Map<String, Object> schema() {
+        List<Map<String, Object>> methodsSchema = new ArrayList<>(methodList.size());
+        for (RpcMethod method : methodList) {
+            methodsSchema.add(method.toSchema());
+        }
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("jsonrpc", "2.0");
+        schema.put("title", "JSON-RPC Service Schema");
+        schema.put("version", "1.0.0");
+        schema.put("methods", methodsSchema);
+        schema.put("types", ValuePacker.getCompactTypes());
+        return schema;
+    }
+
+    /**
+     * The schema served on {@code GET /schema}, serialized once for all connections.
+     */
+    public String getSchemaJson() {
+        return schemaJson;
+    }
+
+    /**
+     * The quoted ETag of {@link #getSchemaJson()}.
+     */
+    public String getSchemaEtag() {
+        return schemaEtag;
+    }
+
+    private void add(RpcMethod method) {
+        if (methods.put(method.getName(), method) != null) {
+            throw new IllegalStateException("Duplicate method: " + method.getName());
+        }
+        methodList.add(method);
+    }
+
+    private RpcMethod.Builder method(String name, String description, String errorPrefix) {
+        return new RpcMethod.Builder(name, description, false, errorPrefix, this::add);
+    }
+
+    private RpcMethod.Builder readOnlyMethod(String name, String description, String errorPrefix) {
+        return new RpcMethod.Builder(name, description, true, errorPrefix, this::add);
+    }
+
+    private void registerMethods() {
+        readOnlyMethod("generic/ping", "Returns the current database timestamp", "Database error: ")
+            .handle(() -> databaseManager.getCurrentTimestamp().toString());
+
+        method("generic/setConfigValue", "Sets a configuration value for a namespace and key", "Database error: ")
+            .writes("config")
+            .handle(
+                required("namespace", STRING, "The configuration namespace"),
+                required("key", STRING, "The configuration key"),
+                required("value", STRING, "The configuration value"),
+                (namespace, key, value) -> Map.of("success",
+                    databaseManager.inTransaction(() -> databaseManager.setConfigValue(namespace, key, value))));
+
+        readOnlyMethod("generic/getConfigValue", "Retrieves a configuration value for a namespace and key", "Database error: ")
+            .inMemory()
+            .handle(
+                required("namespace", STRING, "The configuration namespace"),
+                required("key", STRING, "The configuration key"),
+                (namespace, key) -> configNamespace(namespace).get(key));
+
+        readOnlyMethod("generic/getAllConfigValues", "Retrieves all configuration values across all namespaces", "Database error: ")
+            .inMemory()
+            .handle(() -> {
+                Map<String, String> values = new HashMap<>();
+                Map<String, Map<String, String>> table = referenceData.get(ReferenceData.CONFIG);
+                for (Map.Entry<String, Map<String, String>> namespace : table.entrySet()) {
+                    for (Map.Entry<String, String> entry : namespace.getValue().entrySet()) {
+                        values.put(namespace.getKey() + "." + entry.getKey(), entry.getValue());
+                    }
+                }
+                return values;
+            });
+
+        method("generic/localize", "Saves a translation for a key and language code", "Database error: ")
+            .writes("translations")
+            .handle(
+                required("key", STRING, "The translation key"),
+                required("languageCode", STRING, "The language code (e.g., 'en', 'es', 'fr')"),
+                required("translation", STRING, "The translated text"),
+                (key, languageCode, translation) -> Map.of("success",
+                    databaseManager.inTransaction(() -> databaseManager.setLocalization(key, languageCode, translation))));
+
+        readOnlyMethod("generic/translate", "Retrieves a translation for a key and language code", "Database error: ")
+            .inMemory()
+            .handle(
+                required("key", STRING, "The translation key"),
+                required("languageCode", STRING, "The language code (e.g., 'en', 'es', 'fr')"),
+                (key, languageCode) -> {
+                    Map<String, Map<String, String>> translations = referenceData.get(ReferenceData.TRANSLATIONS);
+                    return translations.getOrDefault(languageCode, Map.of()).get(key);
+                });
+
+        method("user/create", "Creates a new user in the system", "User error: ")
+            .writes("users", "user_attributes", "addresses")
+            .handle(
+                required("user", object(User.class), "User object containing display_name and optionally active"),
+                user -> {
+                    Long id = databaseManager.inTransaction(() -> userRegistry.create(user));
+                    userSearchIndex.putUser(id, user.getDisplayName(), user.isActive());
+                    return Map.of("id", id);
+                });
+
+        method("user/update", "Updates an existing user's information", "User error: ")
+            .writes("users", "user_attributes", "addresses")
+            .handle(
+                required("user", object(User.class), "User object containing id, display_name, and active"),
+                user -> {
+                    boolean success = databaseManager.inTransaction(() -> userRegistry.update(user));
+                    if (success) {
+                        userSearchIndex.putUser(user.getId(), user.getDisplayName(), user.isActive());
+                    }
+                    return Map.of("success", success);
+                });
+
+        method("user/activate", "Activates a user account", "User error: ")
+            .writes("users")
+            .handle(
+                required("id", NUMBER, "The user's ID"),
+                id -> {
+                    boolean success = databaseManager.inTransaction(() -> userRegistry.activate(id));
+                    if (success) {
+                        userSearchIndex.setActive(id, true);
+                    }
+                    return Map.of("success", success);
+                });
+
+        method("user/deactivate", "Deactivates a user account", "User error: ")
+            .writes("users")
+            .handle(
+                required("id", NUMBER, "The user's ID"),
+                id -> {
+                    boolean success = databaseManager.inTransaction(() -> userRegistry.deactivate(id));
+                    if (success) {
+                        userSearchIndex.setActive(id, false);
+                    }
+                    return Map.of("success", success);
+                });
+
+        readOnlyMethod("user/findById", "Retrieves a user by their ID", "User error: ")
+            .reads("users", "user_attributes", "addresses")
+            .handle(
+                required("id", NUMBER, "The user's ID"),
+                id -> userRegistry.findById(id));
+
+        readOnlyMethod("user/findByIds", "Retrieves several users by their IDs", "User error: ")
+            .reads("users")
+            .handle(
+                required("ids", NUMBER_ARRAY, "An array of user IDs"),
+                ids -> userRegistry.findByIds(ids));
+
+        readOnlyMethod("user/findByAttribute", "Retrieves users by the value of an attribute, one keyset page at a time", "User error: ")
+            .reads("users", "user_attributes")
+            .handle(
+                required("name", STRING, "The attribute name"),
+                required("value", STRING, "The attribute value, or its prefix when prefix is true"),
+                optional("prefix", BOOLEAN, "If true, matches values starting with value"),
+                optional("after", NUMBER, "The nextAfter of the previous page; omit for the first page"),
+                optional("limit", NUMBER, "Maximum number of users to return (default 100, at most 1000)"),
+                (name, value, prefix, after, limit) ->
+                    userRegistry.findByAttribute(name, value, Boolean.TRUE.equals(prefix), after, limit));
+
+        readOnlyMethod("user/findBy", "Retrieves a paginated list of users with optional filtering and sorting", "User error: ")
+            .reads("users", "user_attributes", "addresses")
+            .uncached()
+            .handle(
+                required("paginator", object(Paginator.class), "Pagination options"),
+                paginator -> userRegistry.findBy(paginator));
+
+        readOnlyMethod("user/search", "Finds users whose display name or address email starts with the query, best matches first", "User error: ")
+            .inMemory()
+            .handle(
+                required("query", STRING, "Words or word prefixes, all of which must match"),
+                optional("limit", NUMBER, "Maximum number of users to return (default 10, at most 100)"),
+                (query, limit) -> userSearchIndex.search(query, limit == null || limit <= 0 ? 10 : (int) Math.min(limit, 100)));
+
+        method("user/setAttribute", "Sets an attribute for a user", "User error: ")
+            .writes("user_attributes")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("name", STRING, "The attribute name"),
+                required("value", STRING, "The attribute value"),
+                (userId, name, value) -> Map.of("success",
+                    databaseManager.inTransaction(() -> userRegistry.setAttribute(userId, name, value))));
+
+        readOnlyMethod("user/getAttribute", "Retrieves an attribute value for a user", "User error: ")
+            .reads("user_attributes")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("name", STRING, "The attribute name"),
+                (userId, name) -> userRegistry.getAttribute(userId, name));
+
+        method("user/setAttributes", "Sets several attributes for a user", "User error: ")
+            .writes("user_attributes")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("attributes", STRING_MAP, "Object mapping attribute names to values"),
+                (userId, attributes) -> Map.of("success",
+                    databaseManager.inTransaction(() -> userRegistry.setAttributes(userId, attributes))));
+
+        readOnlyMethod("user/getAttributes", "Retrieves all attributes of a user", "User error: ")
+            .reads("user_attributes")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                userId -> userRegistry.getAttributes(userId));
+
+        readOnlyMethod("user/getAttributesForUsers", "Retrieves attributes of several users", "User error: ")
+            .reads("user_attributes")
+            .handle(
+                required("user_ids", NUMBER_ARRAY, "An array of user IDs"),
+                optional("names", STRING_ARRAY, "The attribute names to return (all when omitted)"),
+                (userIds, names) -> userRegistry.getAttributesForUsers(userIds, names));
+
+        // profiles are not cached: the active roles depend on the clock as well as on the tables
+        readOnlyMethod("user/getProfile", "Retrieves a user with their attributes, addresses and active roles", "User error: ")
+            .handle(
+                required("id", NUMBER, "The user's ID"),
+                id -> userRegistry.getProfile(id));
+
+        readOnlyMethod("user/getProfiles", "Retrieves the profiles of several users at once", "User error: ")
+            .handle(
+                required("ids", numberArray(MAX_PROFILE_IDS), "An array of at most " + MAX_PROFILE_IDS + " user IDs"),
+                ids -> userRegistry.getProfiles(ids));
+
+        method("audit/log", "Logs an audit event", "Database error: ")
+            .writes("audit_log", "audit_log_type")
+            .handle(
+                optional("user_id", NUMBER, "The user ID associated with the event (null for system events)"),
+                required("type", STRING, "The type of audit event (e.g., LOGIN, LOGOUT, SYSTEM)"),
+                required("payload", STRING, "The payload data for the audit event"),
+                (userId, typeCode, payload) -> Map.of("id",
+                    databaseManager.inTransaction(() -> databaseManager.auditLog(userId, typeCode, payload))));
+
+        readOnlyMethod("audit/list", "Retrieves a paginated list of audit log entries with optional filtering and sorting", "Database error: ")
+            .handle(
+                required("paginator", object(Paginator.class), "Pagination options with optional filters for type_code and user_id"),
+                paginator -> {
+                    try {
+                        return databaseManager.auditLogList(paginator);
+                    } catch (IllegalArgumentException e) {
+                        // a filter value that does not parse, such as a malformed instant_from
+                        throw new InvalidParamsException("Invalid params: 'paginator' " + e.getMessage());
+                    }
+                });
+
+        method("auth/registerType", "Registers a new credential type or updates an existing one", "Auth error: ")
+            .writes("credential_type")
+            .handle(
+                required("code", STRING, "The unique code for the credential type"),
+                required("only_one_per_user_id", BOOLEAN, "If true, only one valid credential can exist per user for this type"),
+                required("only_one_security_principal", BOOLEAN, "If true, only one valid credential can exist per security principal for this type"),
+                (code, onlyOnePerUserId, onlyOneSecurityPrincipal) -> {
+                    databaseManager.inTransaction(() -> {
+                        authenticationRegistry.registerType(code, onlyOnePerUserId, onlyOneSecurityPrincipal);
+                        return null;
+                    });
+                    return Map.of("success", true);
+                });
+
+        method("auth/create", "Creates a new credential for a user", "Auth error: ")
+            .writes("credentials")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("credential_type_code", STRING, "The credential type code"),
+                required("valid_from", TIMESTAMP, "Timestamp when the credential becomes valid (ISO format or epoch milliseconds)"),
+                required("valid_until", TIMESTAMP, "Timestamp when the credential expires (ISO format or epoch milliseconds)"),
+                required("security_principal", STRING, "The security principal (e.g., username, token, API key)"),
+                optional("security_credentials", STRING, "The security credentials (e.g., hashed password, null for token-based auth)"),
+                (userId, credentialTypeCode, validFrom, validUntil, securityPrincipal, securityCredentials) -> Map.of("id",
+                    databaseManager.inTransaction(() -> authenticationRegistry.create(
+                        userId,
+                        credentialTypeCode,
+                        validFrom,
+                        validUntil,
+                        securityPrincipal,
+                        securityCredentials))));
+
+        method("auth/expireOne", "Expires a specific credential for a user and credential type", "Auth error: ")
+            .writes("credentials")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("credential_type_code", STRING, "The credential type code"),
+                required("security_principal", STRING, "The security principal to expire"),
+                (userId, credentialTypeCode, securityPrincipal) -> Map.of("success",
+                    databaseManager.inTransaction(() -> authenticationRegistry.expireOne(userId, credentialTypeCode, securityPrincipal))));
+
+        method("auth/expireAll", "Expires all valid credentials for a user and credential type", "Auth error: ")
+            .writes("credentials")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("credential_type_code", STRING, "The credential type code"),
+                (userId, credentialTypeCode) -> Map.of("success",
+                    databaseManager.inTransaction(() -> authenticationRegistry.expireAll(userId, credentialTypeCode))));
+
+        readOnlyMethod("auth/verify", "Verifies a credential and returns the user ID if valid and not expired", "Auth error: ")
+            .handle(
+                required("credential_type_code", STRING, "The credential type code"),
+                required("security_principal", STRING, "The security principal"),
+                optional("security_credentials", STRING, "The security credentials to verify (null for credential types without credentials)"),
+                (credentialTypeCode, securityPrincipal, securityCredentials) -> {
+                    Long userId = authenticationRegistry.verify(credentialTypeCode, securityPrincipal, securityCredentials);
+                    return userId != null ? Map.of("user_id", userId) : null;
+                });
+
+        readOnlyMethod("session/resolve", "Verifies a credential and returns the user with its effective role codes and authorized function IDs", "Session error: ")
+            .handle(
+                required("credential_type_code", STRING, "The credential type code"),
+                required("security_principal", STRING, "The security principal"),
+                optional("security_credentials", STRING, "The security credentials to verify (null for credential types without credentials)"),
+                (credentialTypeCode, securityPrincipal, securityCredentials) -> {
+                    Long userId = authenticationRegistry.verify(credentialTypeCode, securityPrincipal, securityCredentials);
+                    return userId != null ? authorizationRegistry.resolveSession(userId) : null;
+                });
+
+        method("authorization/createRole", "Creates a new role in the system", "Authorization error: ")
+            .writes("roles")
+            .handle(
+                required("role", object(Role.class), "Role object containing code and name"),
+                role -> Map.of("id", databaseManager.inTransaction(() -> authorizationRegistry.create(role))));
+
+        method("authorization/updateRole", "Updates an existing role's information", "Authorization error: ")
+            .writes("roles")
+            .handle(
+                required("role", object(Role.class), "Role object containing id, code, and name"),
+                role -> Map.of("success", databaseManager.inTransaction(() -> authorizationRegistry.update(role))));
+
+        method("authorization/authorize", "Authorizes a user to have a specific role for a specified time period", "Authorization error: ")
+            .writes("authorizations")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("role_id", NUMBER, "The role's ID"),
+                required("valid_from", TIMESTAMP, "Timestamp when the authorization becomes valid (ISO format or epoch milliseconds)"),
+                required("valid_until", TIMESTAMP, "Timestamp when the authorization expires (ISO format or epoch milliseconds)"),
+                (userId, roleId, validFrom, validUntil) -> Map.of("id",
+                    databaseManager.inTransaction(() -> authorizationRegistry.authorize(userId, roleId, validFrom, validUntil))));
+
+        method("authorization/deauthorize", "Removes all authorizations for a specific user and role", "Authorization error: ")
+            .writes("authorizations")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("role_id", NUMBER, "The role's ID"),
+                (userId, roleId) -> Map.of("success",
+                    databaseManager.inTransaction(() -> authorizationRegistry.deauthorize(userId, roleId))));
+
+        readOnlyMethod("authorization/isUserInRole", "Checks if a user currently has a specific role", "Authorization error: ")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("role_id", NUMBER, "The role's ID"),
+                (userId, roleId) -> Map.of("result", authorizationRegistry.isUserInRole(userId, roleId)));
+
+        readOnlyMethod("authorization/isUserInAnyRoles", "Checks if a user currently has any of the specified roles", "Authorization error: ")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("role_ids", NUMBER_ARRAY, "An array of role IDs to check"),
+                (userId, roleIds) -> Map.of("result", authorizationRegistry.isUserInAnyRoles(userId, roleIds)));
+
+        readOnlyMethod("authorization/isUserInAllRoles", "Checks if a user currently has all of the specified roles", "Authorization error: ")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                required("role_ids", NUMBER_ARRAY, "An array of role IDs to check"),
+                (userId, roleIds) -> Map.of("result", authorizationRegistry.isUserInAllRoles(userId, roleIds)));
+
+        method("authorization/addFunctionToRole", "Links a function to a role", "Authorization error: ")
+            .writes("role_functions")
+            .handle(
+                required("role_id", NUMBER, "The role's ID"),
+                required("function_id", NUMBER, "The function's ID"),
+                (roleId, functionId) -> Map.of("id",
+                    databaseManager.inTransaction(() -> authorizationRegistry.addFunctionToRole(roleId, functionId))));
+
+        method("authorization/removeFunctionFromRole", "Unlinks a function from a role", "Authorization error: ")
+            .writes("role_functions")
+            .handle(
+                required("role_id", NUMBER, "The role's ID"),
+                required("function_id", NUMBER, "The function's ID"),
+                (roleId, functionId) -> Map.of("success",
+                    databaseManager.inTransaction(() -> authorizationRegistry.removeFunctionFromRole(roleId, functionId))));
+
+        readOnlyMethod("authorization/getFunctionsByRole", "Retrieves all functions linked to a role", "Authorization error: ")
+            .reads("role_functions", "functions")
+            .handle(
+                required("role_id", NUMBER, "The role's ID"),
+                roleId -> authorizationRegistry.getFunctionsByRole(roleId));
+
+        readOnlyMethod("authorization/getMenuTree", "Retrieves the menu tree for a user based on their authorized functions", "Authorization error: ")
+            .handle(
+                required("user_id", NUMBER, "The user's ID"),
+                userId -> authorizationRegistry.getMenuTree(userId));
+
+        method("generic/createFunction", "Creates a new function in the system", "Generic error: ")
+            .writes("functions")
+            .handle(
+                required("function", object(Function.class), "Function object containing name and optionally url"),
+                function -> Map.of("id", databaseManager.inTransaction(() -> genericRegistry.createFunction(function))));
+
+        method("generic/updateFunction", "Updates an existing function", "Generic error: ")
+            .writes("functions")
+            .handle(
+                required("function", object(Function.class), "Function object containing id, name, and optionally url"),
+                function -> Map.of("success", databaseManager.inTransaction(() -> genericRegistry.updateFunction(function))));
+
+        method("generic/createMenu", "Creates a new menu entry", "Generic error: ")
+            .writes("menu")
+            .handle(
+                required("menu", object(Menu.class), "Menu object containing function_id and optionally parent_id"),
+                menu -> Map.of("id", databaseManager.inTransaction(() -> genericRegistry.createMenu(menu))));
+
+        method("generic/updateMenu", "Updates an existing menu entry", "Generic error: ")
+            .writes("menu")
+            .handle(
+                required("menu", object(Menu.class), "Menu object containing id, function_id, and optionally parent_id"),
+                menu -> Map.of("success", databaseManager.inTransaction(() -> genericRegistry.updateMenu(menu))));
+
+        readOnlyMethod("generic/getMenuTree", "Retrieves the complete menu tree", "Generic error: ")
+            .reads("menu", "functions")
+            .handle(() -> referenceData.get(ReferenceData.MENU_TREE));
+
+        readOnlyMethod("generic/findFunctionByName", "Finds a function by name", "Generic error: ")
+            .reads("functions")
+            .handle(
+                required("name", STRING, "The function name"),
+                name -> genericRegistry.findFunctionByName(name));
+
+        readOnlyMethod("generic/getAllFunctions", "Retrieves all functions", "Generic error: ")
+            .reads("functions")
+            .handle(() -> genericRegistry.getAllFunctions());
+
+        readOnlyMethod("generic/getCacheStats", "Returns result cache hit rates per method, coalesced reads and reference data load timings", "Generic error: ")
+            .inMemory()
+            .handle(() -> {
+                Map<String, Object> resultCacheStats = new HashMap<>();
+                resultCacheStats.put("size", resultCache.size());
+                resultCacheStats.put("methods", resultCache.getStats());
+                Map<String, Object> referenceDataStats = new HashMap<>();
+                referenceDataStats.put("warm", referenceData.isWarm());
+                referenceDataStats.put("load_millis", referenceData.getLoadTimings());
+                Map<String, Object> singleFlightStats = new HashMap<>();
+                singleFlightStats.put("in_flight", singleFlight.inFlight());
+                singleFlightStats.put("joined", singleFlight.getJoined());
+                return Map.of("result_cache", resultCacheStats, "single_flight", singleFlightStats, "reference_data", referenceDataStats);
+            });
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.dgdevel.core.rpc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class Param<T> {
+    private final String name;
+    private final ParamType<T> type;
+    private final boolean required;
+    private final String description;
+
+    private Param(String name, ParamType<T> type, boolean required, String description) {
+        this.name = name;
+        this.type = type;
+        this.required = required;
+        this.description = description;
+    }
+
+    public static <T> Param<T> required(String name, ParamType<T> type, String description) {
+        return new Param<>(name, type, true, description);
+    }
+
+    public static <T> Param<T> optional(String name, ParamType<T> type, String description) {
+        return new Param<>(name, type, false, description);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ParamType<T> getType() {
+        return type;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    Map<String, Object> toSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", name);
+        schema.put("type", type.getSchemaType());
+        schema.put("required", required);
+        schema.put("description", description);
+        return schema;
+    }
+}
@@ -0,0 +1,372 @@
+package com.github.dgdevel.core.rpc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes one positional parameter straight from a transport's token stream. JSON values are read
+ * from a {@link JsonParser} positioned on the value's first token; MessagePack values are read from
+ * a {@link MessageUnpacker} positioned on the value, which is always fully consumed, even when the
+ * value turns out to be invalid.
+ */
+public abstract class ParamType<T> {
+    static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static final ParamType<String> STRING = new ParamType<String>("string") {
+        @Override
+        String readJson(JsonParser parser) throws IOException {
+            if (parser.currentToken().isScalarValue()) {
+                return parser.getText();
+            }
+            parser.skipChildren();
+            throw new InvalidParamsException("expected a string");
+        }
+
+        @Override
+        String readMsgPack(MessageUnpacker unpacker, ValueType valueType) throws IOException {
+            switch (valueType) {
+                case STRING:
+                    return unpacker.unpackString();
+                case INTEGER:
+                    return String.valueOf(unpacker.unpackLong());
+                case FLOAT:
+                    return String.valueOf(unpacker.unpackDouble());
+                case BOOLEAN:
+                    return String.valueOf(unpacker.unpackBoolean());
+                default:
+                    unpacker.skipValue();
+                    throw new InvalidParamsException("expected a string");
+            }
+        }
+    };
+
+    public static final ParamType<Long> NUMBER = new ParamType<Long>("number") {
+        @Override
+        Long readJson(JsonParser parser) throws IOException {
+            switch (parser.currentToken()) {
+                case VALUE_NUMBER_INT:
+                    return parser.getLongValue();
+                case VALUE_NUMBER_FLOAT:
+                    return (long) parser.getDoubleValue();
+                case VALUE_STRING:
+                    return parseLong(parser.getText());
+                default:
+                    parser.skipChildren();
+                    throw new InvalidParamsException("expected a number");
+            }
+        }
+
+        @Override
+        Long readMsgPack(MessageUnpacker unpacker, ValueType valueType) throws IOException {
+            switch (valueType) {
+                case INTEGER:
+                    return unpacker.unpackLong();
+                case FLOAT:
+                    return (long) unpacker.unpackDouble();
+                case STRING:
+                    return parseLong(unpacker.unpackString());
+                default:
+                    unpacker.skipValue();
+                    throw new InvalidParamsException("expected a number");
+            }
+        }
+    };
+
+    public static final ParamType<Boolean> BOOLEAN = new ParamType<Boolean>("boolean") {
+        @Override
+        Boolean readJson(JsonParser parser) throws IOException {
+            switch (parser.currentToken()) {
+                case VALUE_TRUE:
+                    return true;
+                case VALUE_FALSE:
+                    return false;
+                case VALUE_STRING:
+                    return Boolean.parseBoolean(parser.getText());
+                default:
+                    parser.skipChildren();
+                    throw new InvalidParamsException("expected a boolean");
+            }
+        }
+
+        @Override
+        Boolean readMsgPack(MessageUnpacker unpacker, ValueType valueType) throws IOException {
+            switch (valueType) {
+                case BOOLEAN:
+                    return unpacker.unpackBoolean();
+                case STRING:
+                    return Boolean.parseBoolean(unpacker.unpackString());
+                default:
+                    unpacker.skipValue();
+                    throw new InvalidParamsException("expected a boolean");
+            }
+        }
+    };
+
+    /** Epoch milliseconds, a JDBC timestamp string or an ISO instant; null means now. */
+    public static final ParamType<Timestamp> TIMESTAMP = new ParamType<Timestamp>("string/number") {
+        @Override
+        Timestamp readJson(JsonParser parser) throws IOException {
+            switch (parser.currentToken()) {
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return new Timestamp(parser.getLongValue());
+                case VALUE_STRING:
+                    return parseTimestamp(parser.getText());
+                default:
+                    parser.skipChildren();
+                    throw new InvalidParamsException("expected a timestamp");
+            }
+        }
+
+        @Override
+        Timestamp readMsgPack(MessageUnpacker unpacker, ValueType valueType) throws IOException {
+            switch (valueType) {
+                case INTEGER:
+                    return new Timestamp(unpacker.unpackLong());
+                case FLOAT:
+                    return new Timestamp((long) unpacker.unpackDouble());
+                case STRING:
+                    return parseTimestamp(unpacker.unpackString());
+                default:
+                    unpacker.skipValue();
+                    throw new InvalidParamsException("expected a timestamp");
+            }
+        }
+
+        @Override
+        Timestamp nullValue() {
+            return new Timestamp(System.currentTimeMillis());
+        }
+    };
+
+    public static final ParamType<List<Long>> NUMBER_ARRAY = arrayOf(NUMBER, "expected an array of numbers");
+
+    public static final ParamType<List<String>> STRING_ARRAY = arrayOf(STRING, "expected an array of strings");
+
+    /** A JSON object of string values, e.g. attribute names to values. */
+    public static final ParamType<Map<String, String>> STRING_MAP = object(new TypeReference<Map<String, String>>() {});
+
+    /**
+     * An array of numbers that is refused when it holds more than {@code maxSize} elements.
+     */
+    public static ParamType<List<Long>> numberArray(int maxSize) {
+        return arrayOf(NUMBER, "expected an array of at most " + maxSize + " numbers", maxSize);
+    }
+
+    private static <E> ParamType<List<E>> arrayOf(ParamType<E> element, String expected) {
+        return arrayOf(element, expected, Integer.MAX_VALUE);
+    }
+
+    private static <E> ParamType<List<E>> arrayOf(ParamType<E> element, String expected, int maxSize) {
+        return new ParamType<List<E>>("array") {
+            @Override
+            List<E> readJson(JsonParser parser) throws IOException {
+                if (parser.currentToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    throw new InvalidParamsException(expected);
+                }
+                List<E> values = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    values.add(element.readJson(parser));
+                }
+                if (values.size() > maxSize) {
+                    throw new InvalidParamsException(expected);
+                }
+                return values;
+            }
+
+            @Override
+            List<E> readMsgPack(MessageUnpacker unpacker, ValueType valueType) throws IOException {
+                if (valueType != ValueType.ARRAY) {
+                    unpacker.skipValue();
+                    throw new InvalidParamsException(expected);
+                }
+                int size = unpacker.unpackArrayHeader();
+                List<E> values = new ArrayList<>(size);
+                InvalidParamsException invalid = null;
+                for (int i = 0; i < size; i++) {
+                    try {
+                        values.add(element.read(unpacker));
+                    } catch (InvalidParamsException e) {
+                        invalid = e;
+                    }
+                }
+                if (invalid != null) {
+                    throw invalid;
+                }
+                if (values.size() > maxSize) {
+                    throw new InvalidParamsException(expected);
+                }
+                return values;
+            }
+        };
+    }
+
+    /**
+     * A JSON object bound to {@code type}. MessagePack maps are replayed as Jackson tokens into the
+     * same binder, so neither transport builds a Map tree first.
+     */
+    public static <T> ParamType<T> object(Class<T> type) {
+        return object(objectMapper.constructType(type));
+    }
+
+    public static <T> ParamType<T> object(TypeReference<T> type) {
+        return object(objectMapper.constructType(type));
+    }
+
+    private static <T> ParamType<T> object(JavaType type) {
+        return new ParamType<T>("object") {
+            @Override
+            T readJson(JsonParser parser) throws IOException {
+                if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                    return readText(parser.getText(), type);
+                }
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    throw new InvalidParamsException("expected an object");
+                }
+                return objectMapper.readValue(parser, type);
+            }
+
+            @Override
+            T readMsgPack(MessageUnpacker unpacker, ValueType valueType) throws IOException {
+                if (valueType == ValueType.STRING) {
+                    return readText(unpacker.unpackString(), type);
+                }
+                if (valueType != ValueType.MAP) {
+                    unpacker.skipValue();
+                    throw new InvalidParamsException("expected an object");
+                }
+                TokenBuffer tokens = new TokenBuffer(objectMapper, false);
+                copy(unpacker, tokens);
+                try (JsonParser parser = tokens.asParser(objectMapper)) {
+                    parser.nextToken();
+                    return objectMapper.readValue(parser, type);
+                }
+            }
+        };
+    }
+
+    private final String schemaType;
+
+    private ParamType(String schemaType) {
+        this.schemaType = schemaType;
+    }
+
+    public String getSchemaType() {
+        return schemaType;
+    }
+
+    public T read(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return nullValue();
+        }
+        return readJson(parser);
+    }
+
+    public T read(MessageUnpacker unpacker) throws IOException {
+        ValueType valueType = unpacker.getNextFormat().getValueType();
+        if (valueType == ValueType.NIL) {
+            unpacker.unpackNil();
+            return nullValue();
+        }
+        return readMsgPack(unpacker, valueType);
+    }
+
+    abstract T readJson(JsonParser parser) throws IOException;
+
+    abstract T readMsgPack(MessageUnpacker unpacker, ValueType valueType) throws IOException;
+
+    T nullValue() {
+        return null;
+    }
+
+    private static <T> T readText(String text, JavaType type) {
+        try {
+            return objectMapper.readValue(text, type);
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new InvalidParamsException("expected an object: " + e.getOriginalMessage());
+        }
+    }
+
+    private static long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new InvalidParamsException("expected a number, got '" + text + "'");
+        }
+    }
+
+    private static Timestamp parseTimestamp(String text) {
+        try {
+            return Timestamp.valueOf(text);
+        } catch (IllegalArgumentException e) {
+            try {
+                return new Timestamp(Long.parseLong(text));
+            } catch (NumberFormatException ex) {
+                try {
+                    return Timestamp.from(java.time.Instant.parse(text));
+                } catch (java.time.format.DateTimeParseException ex2) {
+                    throw new InvalidParamsException("Invalid timestamp format: " + text);
+                }
+            }
+        }
+    }
+
+    private static void copy(MessageUnpacker unpacker, JsonGenerator generator) throws IOException {
+        ValueType valueType = unpacker.getNextFormat().getValueType();
+        switch (valueType) {
+            case NIL:
+                unpacker.unpackNil();
+                generator.writeNull();
+                break;
+            case BOOLEAN:
+                generator.writeBoolean(unpacker.unpackBoolean());
+                break;
+            case INTEGER:
+                generator.writeNumber(unpacker.unpackLong());
+                break;
+            case FLOAT:
+                generator.writeNumber(unpacker.unpackDouble());
+                break;
+            case STRING:
+                generator.writeString(unpacker.unpackString());
+                break;
+            case ARRAY: {
+                int size = unpacker.unpackArrayHeader();
+                generator.writeStartArray();
+                for (int i = 0; i < size; i++) {
+                    copy(unpacker, generator);
+                }
+                generator.writeEndArray();
+                break;
+            }
+            case MAP: {
+                int size = unpacker.unpackMapHeader();
+                generator.writeStartObject();
+                for (int i = 0; i < size; i++) {
+                    generator.writeFieldName(unpacker.unpackString());
+                    copy(unpacker, generator);
+                }
+                generator.writeEndObject();
+                break;
+            }
+            default:
+                unpacker.skipValue();
+                generator.writeNull();
+        }
+    }
+}
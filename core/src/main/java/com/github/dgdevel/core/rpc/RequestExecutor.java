@@ -0,0 +1,178 @@
+package com.github.dgdevel.core.rpc;
+
+import com.github.dgdevel.core.config.Config;
+import com.github.dgdevel.core.db.QueryDeadline;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs requests off the event loop and enforces their deadlines. A request's timeout is the
+ * shorter of the one its caller sent and the server default for the method, counted from the
+ * moment the frame arrived. A request still queued when its deadline passes is answered without
+ * running; a running one has its JDBC statements timed out, and cancelled when the deadline
+ * fires.
+ *
+ * <p>Once {@link #startDraining()} is called, requests that arrive afterwards are refused with
+ * {@link #SHUTTING_DOWN} while the ones already accepted run to completion.
+ */
+public class RequestExecutor {
+    public static final int DEADLINE_EXCEEDED = -32004;
+    public static final int SHUTTING_DOWN = -32005;
+
+    @FunctionalInterface
+    public interface Work {
+        Object run() throws Exception;
+    }
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService timer;
+    private final long defaultTimeoutMillis;
+    private final Map<String, Long> methodTimeouts;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Object idle = new Object();
+    private volatile boolean draining;
+    private volatile long drainingSinceNanos;
+
+    public RequestExecutor(Config config) {
+        this.defaultTimeoutMillis = config.getDefaultRequestTimeoutMillis();
+        this.methodTimeouts = config.getMethodTimeouts();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = (ThreadPoolExecutor) Executors.newFixedThreadPool(config.getWorkerThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "rpc-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rpc-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs {@code task} on a worker once {@code previous} has completed, so one connection's
+     * requests keep their order while different connections run in parallel.
+     */
+    public CompletableFuture<Void> submitAfter(CompletableFuture<Void> previous, Runnable task) {
+        active.incrementAndGet();
+        return previous.handle((done, error) -> null).thenRunAsync(() -> {
+            try {
+                task.run();
+            } finally {
+                if (active.decrementAndGet() == 0) {
+                    synchronized (idle) {
+                        idle.notifyAll();
+                    }
+                }
+            }
+        }, workers);
+    }
+
+    /**
+     * Refuses every request arriving from now on.
+     */
+    public void startDraining() {
+        drainingSinceNanos = System.nanoTime();
+        draining = true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return requests waiting for a free worker
+     */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * @throws ShuttingDownException when the request arrived after draining started
+     */
+    public void checkAccepting(long arrivalNanos) {
+        if (draining && arrivalNanos - drainingSinceNanos >= 0) {
+            throw new ShuttingDownException("Server is shutting down, retry on another instance");
+        }
+    }
+
+    /**
+     * Waits until no submitted request is queued or running.
+     *
+     * @return false if requests were still pending when the timeout elapsed
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (idle) {
+            while (active.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param requestedMillis the timeout the caller asked for, or null
+     * @return the deadline as a {@link System#nanoTime()} value, or 0 for none
+     */
+    public long deadlineNanos(String method, long arrivalNanos, Number requestedMillis) {
+        long timeout = methodTimeouts.getOrDefault(method, defaultTimeoutMillis);
+        if (requestedMillis != null && requestedMillis.longValue() > 0
+                && (timeout <= 0 || requestedMillis.longValue() < timeout)) {
+            timeout = requestedMillis.longValue();
+        }
+        if (timeout <= 0) {
+            return 0;
+        }
+        long deadline = arrivalNanos + TimeUnit.MILLISECONDS.toNanos(timeout);
+        return deadline != 0 ? deadline : 1;
+    }
+
+    /**
+     * Runs {@code work} on the calling worker thread under the deadline.
+     *
+     * @throws DeadlineExceededException when the deadline passed before or while it ran
+     */
+    public Object run(long deadlineNanos, Work work) throws Exception {
+        if (deadlineNanos == 0) {
+            return work.run();
+        }
+        QueryDeadline deadline = new QueryDeadline(deadlineNanos);
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException("Deadline exceeded before the request started");
+        }
+        ScheduledFuture<?> expiry = timer.schedule(deadline::expire, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        deadline.bind();
+        try {
+            return work.run();
+        } catch (Exception e) {
+            if (deadline.isExpired()) {
+                throw new DeadlineExceededException("Deadline exceeded");
+            }
+            throw e;
+        } finally {
+            deadline.unbind();
+            expiry.cancel(false);
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,375 @@
+package com.github.dgdevel.core.rpc;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DatabindException;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry of the dispatch table: the method's declared parameters, which both transports use to
+ * decode arguments straight into their typed values, and the body that receives them.
+ */
+public final class RpcMethod {
+    @FunctionalInterface
+    public interface Body {
+        Object invoke(Object[] args) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Body0 {
+        Object invoke() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Body1<A> {
+        Object invoke(A a) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Body2<A, B> {
+        Object invoke(A a, B b) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Body3<A, B, C> {
+        Object invoke(A a, B b, C c) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Body4<A, B, C, D> {
+        Object invoke(A a, B b, C c, D d) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Body5<A, B, C, D, E> {
+        Object invoke(A a, B b, C c, D d, E e) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Body6<A, B, C, D, E, F> {
+        Object invoke(A a, B b, C c, D d, E e, F f) throws Exception;
+    }
+
+    private final String name;
+    private final String description;
+    private final boolean readOnly;
+    private final String errorPrefix;
+    private final List<Param<?>> params;
+    private final Body body;
+    private final List<String> readTables;
+    private final List<String> writeTables;
+    private final boolean inMemory;
+    private final boolean cached;
+
+    RpcMethod(String name, String description, boolean readOnly, String errorPrefix, List<Param<?>> params, Body body) {
+        this(name, description, readOnly, errorPrefix, params, body, List.of(), List.of(), false, false);
+    }
+
+    RpcMethod(String name, String description, boolean readOnly, String errorPrefix, List<Param<?>> params, Body body,
+              List<String> readTables, List<String> writeTables, boolean inMemory, boolean cached) {
+        this.name = name;
+        this.description = description;
+        this.readOnly = readOnly;
+        this.errorPrefix = errorPrefix;
+        this.params = params;
+        this.body = body;
+        this.readTables = readTables;
+        this.writeTables = writeTables;
+        this.inMemory = inMemory;
+        this.cached = cached && !readTables.isEmpty();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public List<Param<?>> getParams() {
+        return params;
+    }
+
+    /**
+     * @return the tables the result is derived from; empty when unknown
+     */
+    public List<String> getReadTables() {
+        return readTables;
+    }
+
+    /**
+     * @return the tables a successful call may have written
+     */
+    public List<String> getWriteTables() {
+        return writeTables;
+    }
+
+    /**
+     * @return whether the method is answered from memory, without a database connection
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * @return whether results are kept in the result cache, keyed by the versions of the read tables
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Arguments for a request that carries no params at all.
+     */
+    public Object[] readParams() {
+        Object[] args = new Object[params.size()];
+        checkRequired(args, 0);
+        return args;
+    }
+
+    /**
+     * Reads the params value the parser is positioned on. A JSON array is positional; any other
+     * value is taken as the first argument. On error the parser is left after the params value.
+     */
+    public Object[] readParams(JsonParser parser) throws IOException {
+        Object[] args = new Object[params.size()];
+        JsonToken token = parser.currentToken();
+        if (token == null || token == JsonToken.VALUE_NULL) {
+            checkRequired(args, 0);
+            return args;
+        }
+        int depth = parser.getParsingContext().getNestingDepth();
+        try {
+            if (token != JsonToken.START_ARRAY) {
+                if (params.isEmpty()) {
+                    parser.skipChildren();
+                    return args;
+                }
+                args[0] = readArg(0, parser);
+                checkRequired(args, 1);
+                return args;
+            }
+            int count = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (count < args.length) {
+                    args[count] = readArg(count, parser);
+                } else {
+                    parser.skipChildren();
+                }
+                count++;
+            }
+            checkRequired(args, count);
+            return args;
+        } catch (InvalidParamsException e) {
+            if (token.isStructStart()) {
+                JsonToken current = parser.currentToken();
+                while (current != null && !(current.isStructEnd() && parser.getParsingContext().getNestingDepth() == depth - 1)) {
+                    current = parser.nextToken();
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the params value the unpacker is positioned on, consuming it entirely even when it is
+     * invalid. Anything other than an array means no arguments.
+     */
+    public Object[] readParams(MessageUnpacker unpacker) throws IOException {
+        Object[] args = new Object[params.size()];
+        if (unpacker.getNextFormat().getValueType() != ValueType.ARRAY) {
+            unpacker.skipValue();
+            checkRequired(args, 0);
+            return args;
+        }
+        int size = unpacker.unpackArrayHeader();
+        InvalidParamsException invalid = null;
+        for (int i = 0; i < size; i++) {
+            if (i >= args.length) {
+                unpacker.skipValue();
+                continue;
+            }
+            try {
+                args[i] = checkNotNull(i, params.get(i).getType().read(unpacker));
+            } catch (InvalidParamsException e) {
+                invalid = invalid != null ? invalid : invalid(i, e.getMessage());
+            } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+                invalid = invalid != null ? invalid : invalid(i, e.getOriginalMessage());
+            }
+        }
+        if (invalid != null) {
+            throw invalid;
+        }
+        checkRequired(args, size);
+        return args;
+    }
+
+    public Object invoke(Object[] args) {
+        try {
+            return body.invoke(args);
+        } catch (InvalidParamsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(errorPrefix + e.getMessage(), e);
+        }
+    }
+
+    public Map<String, Object> toSchema() {
+        List<Map<String, Object>> paramsSchema = new ArrayList<>(params.size());
+        for (Param<?> param : params) {
+            paramsSchema.add(param.toSchema());
+        }
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", name);
+        schema.put("description", description);
+        schema.put("params", paramsSchema);
+        schema.put("read_only", readOnly);
+        return schema;
+    }
+
+    private Object readArg(int index, JsonParser parser) throws IOException {
+        try {
+            return checkNotNull(index, params.get(index).getType().read(parser));
+        } catch (InvalidParamsException e) {
+            throw invalid(index, e.getMessage());
+        } catch (DatabindException e) {
+            throw invalid(index, e.getOriginalMessage());
+        }
+    }
+
+    private Object checkNotNull(int index, Object value) {
+        if (value == null && params.get(index).isRequired()) {
+            throw new InvalidParamsException("must not be null");
+        }
+        return value;
+    }
+
+    private void checkRequired(Object[] args, int count) {
+        for (int i = count; i < args.length; i++) {
+            Param<?> param = params.get(i);
+            if (param.isRequired()) {
+                throw new InvalidParamsException("Invalid params: missing required parameter '" + param.getName() + "'");
+            }
+            args[i] = param.getType().nullValue();
+        }
+    }
+
+    private InvalidParamsException invalid(int index, String message) {
+        return new InvalidParamsException("Invalid params: '" + params.get(index).getName() + "' " + message);
+    }
+
+    /**
+     * Declares a method's parameters together with a body typed to match them, so the body never
+     * casts or converts its arguments.
+     */
+    public static final class Builder {
+        private final String name;
+        private final String description;
+        private final boolean readOnly;
+        private final String errorPrefix;
+        private final java.util.function.Consumer<RpcMethod> sink;
+        private List<String> readTables = List.of();
+        private List<String> writeTables = List.of();
+        private boolean inMemory;
+        private boolean cached = true;
+
+        Builder(String name, String description, boolean readOnly, String errorPrefix,
+                java.util.function.Consumer<RpcMethod> sink) {
+            this.name = name;
+            this.description = description;
+            this.readOnly = readOnly;
+            this.errorPrefix = errorPrefix;
+            this.sink = sink;
+        }
+
+        /**
+         * Declares that the result depends only on these tables and on the arguments, which makes
+         * it cacheable until one of the tables is written.
+         */
+        public Builder reads(String... tables) {
+            this.readTables = List.of(tables);
+            return this;
+        }
+
+        /**
+         * Declares the tables the method writes, so that results derived from them are invalidated.
+         */
+        public Builder writes(String... tables) {
+            this.writeTables = List.of(tables);
+            return this;
+        }
+
+        /**
+         * Keeps the results out of the result cache, for reads whose arguments rarely repeat before
+         * their tables change. A cached read computes a miss on the primary, so such a method would
+         * move load off the replicas for no hits; left uncached it runs on a replica.
+         */
+        public Builder uncached() {
+            this.cached = false;
+            return this;
+        }
+
+        /**
+         * Declares that the method only reads in-memory state, so it runs as it is, without taking
+         * a connection or joining identical concurrent calls.
+         */
+        public Builder inMemory() {
+            this.inMemory = true;
+            return this;
+        }
+
+        private void add(List<Param<?>> params, Body body) {
+            sink.accept(new RpcMethod(name, description, readOnly, errorPrefix, params, body, readTables, writeTables, inMemory, cached));
+        }
+
+        public void handle(Body0 body) {
+            add(List.of(), args -> body.invoke());
+        }
+
+        @SuppressWarnings("unchecked")
+        public <A> void handle(Param<A> a, Body1<A> body) {
+            add(List.of(a), args -> body.invoke((A) args[0]));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <A, B> void handle(Param<A> a, Param<B> b, Body2<A, B> body) {
+            add(List.of(a, b), args -> body.invoke((A) args[0], (B) args[1]));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <A, B, C> void handle(Param<A> a, Param<B> b, Param<C> c, Body3<A, B, C> body) {
+            add(List.of(a, b, c), args -> body.invoke((A) args[0], (B) args[1], (C) args[2]));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <A, B, C, D> void handle(Param<A> a, Param<B> b, Param<C> c, Param<D> d, Body4<A, B, C, D> body) {
+            add(List.of(a, b, c, d), args -> body.invoke((A) args[0], (B) args[1], (C) args[2], (D) args[3]));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <A, B, C, D, E> void handle(Param<A> a, Param<B> b, Param<C> c, Param<D> d, Param<E> e,
+                                           Body5<A, B, C, D, E> body) {
+            add(List.of(a, b, c, d, e),
+                args -> body.invoke((A) args[0], (B) args[1], (C) args[2], (D) args[3], (E) args[4]));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <A, B, C, D, E, F> void handle(Param<A> a, Param<B> b, Param<C> c, Param<D> d, Param<E> e, Param<F> f,
+                                              Body6<A, B, C, D, E, F> body) {
+            add(List.of(a, b, c, d, e, f),
+                args -> body.invoke((A) args[0], (B) args[1], (C) args[2], (D) args[3], (E) args[4], (F) args[5]));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.dgdevel.core.rpc;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The result of a read shared by every request that joined its execution. Each wire encoding of
+ * the value is produced once and reused by the other requests asking for the same encoding.
+ */
+public final class SharedResult {
+    private final Object value;
+    private final Map<String, byte[]> encodings = new ConcurrentHashMap<>();
+
+    SharedResult(Object value) {
+        this.value = value;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @param format names the encoding, e.g. {@code json}
+     */
+    public byte[] encoded(String format, Encoder encoder) throws IOException {
+        byte[] bytes = encodings.get(format);
+        if (bytes == null) {
+            bytes = encoder.encode(value);
+            byte[] raced = encodings.putIfAbsent(format, bytes);
+            if (raced != null) {
+                bytes = raced;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+
+    @FunctionalInterface
+    public interface Encoder {
+        byte[] encode(Object value) throws IOException;
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.dgdevel.core.rpc;
+
+/**
+ * The server is draining and no longer takes new requests; reported as -32005 so clients retry
+ * against another instance.
+ */
+public class ShuttingDownException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ShuttingDownException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.dgdevel.core.rpc;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.dgdevel.core.cache.TableVersions;
+import com.github.dgdevel.core.db.QueryDeadline;
+import com.github.dgdevel.core.db.SqlWork;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical reads running at the same time: a read of the same method with the same
+ * params as one already executing waits for that execution and gets its {@link SharedResult}
+ * instead of running its own queries. A read joins only an execution that started after its
+ * connection's last write and while the tables the method reads were at their current versions,
+ * so it never gets a result older than one it could have computed itself.
+ */
+public class SingleFlight {
+    private final ObjectMapper objectMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final TableVersions tableVersions;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> joined = new ConcurrentHashMap<>();
+
+    public SingleFlight(TableVersions tableVersions) {
+        this.tableVersions = tableVersions;
+    }
+
+    /**
+     * @param tables          the tables the method reads, empty when unknown
+     * @param lastWriteMillis when the calling connection last wrote
+     */
+    public SharedResult run(String method, Object[] args, List<String> tables, long lastWriteMillis, SqlWork<Object> work) throws SQLException {
+        String key;
+        try {
+            key = method + objectMapper.writeValueAsString(args);
+        } catch (JsonProcessingException e) {
+            return new SharedResult(work.run());
+        }
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.startMillis > lastWriteMillis && tableVersions.isCurrent(tables, flight.versions)) {
+                joined.computeIfAbsent(method, m -> new LongAdder()).increment();
+                SharedResult result = flight.await();
+                if (result != null) {
+                    return result;
+                }
+                // the execution failed, possibly on its own deadline: run again rather than share the error
+                continue;
+            }
+            Flight own = new Flight(tableVersions.snapshot(tables));
+            boolean leading = flight == null ? flights.putIfAbsent(key, own) == null : flights.replace(key, flight, own);
+            if (!leading) {
+                continue;
+            }
+            try {
+                SharedResult result = new SharedResult(work.run());
+                own.result.complete(result);
+                return result;
+            } catch (Throwable e) {
+                own.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, own);
+            }
+        }
+    }
+
+    /**
+     * @return how many reads of each method joined an execution already in flight
+     */
+    public Map<String, Long> getJoined() {
+        Map<String, Long> stats = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : joined.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().sum());
+        }
+        return stats;
+    }
+
+    public int inFlight() {
+        return flights.size();
+    }
+
+    private static final class Flight {
+        final long startMillis = System.currentTimeMillis();
+        final long[] versions;
+        final CompletableFuture<SharedResult> result = new CompletableFuture<>();
+
+        Flight(long[] versions) {
+            this.versions = versions;
+        }
+
+        /**
+         * @return the result, or null when the execution failed
+         */
+        SharedResult await() throws SQLException {
+            QueryDeadline deadline = QueryDeadline.current();
+            try {
+                return deadline != null ? result.get(Math.max(deadline.remainingMillis(), 0), TimeUnit.MILLISECONDS) : result.get();
+            } catch (TimeoutException e) {
+                throw new SQLTimeoutException("Deadline passed while waiting for a coalesced read");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a coalesced read", e);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+}
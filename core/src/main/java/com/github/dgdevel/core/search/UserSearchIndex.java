@@ -0,0 +1,456 @@
+package com.github.dgdevel.core.search;
+
+import com.github.dgdevel.core.cache.TableVersions;
+import com.github.dgdevel.core.model.User;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Typeahead search over users by display name and address email. Both are split into lowercase
+ * tokens kept in a sorted map, so the tokens starting with a query term form one contiguous range
+ * of it. Writes made through this node are applied to the index once they have committed; writes
+ * learned from other nodes or processes make it rebuild in the background, while searches keep
+ * using the previous index.
+ */
+public class UserSearchIndex {
+    /** Query words shorter than this match whole words only, not every word they start. */
+    static final int MIN_PREFIX_LENGTH = 2;
+    /** Most users a search scores; a query matching more ranks the first ones found. */
+    static final int MAX_CANDIDATES = 5000;
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingDouble((Hit hit) -> -hit.score)
+        .thenComparingInt(hit -> hit.doc.displayName.length())
+        .thenComparingLong(hit -> hit.doc.id);
+
+    private final Loader loader;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private State state = new State();
+    private List<Consumer<State>> replay;
+    private long quietMillis;
+
+    public UserSearchIndex(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Rebuilds the index whenever users or addresses are written elsewhere. A rebuild starts
+     * {@code quietMillis} after the first report of a write, and the reports arriving meanwhile are
+     * covered by it; the cluster bus and the change poller each report the same remote write, so this
+     * should be at least the poll interval.
+     */
+    public void watch(TableVersions tableVersions, long quietMillis) {
+        this.quietMillis = quietMillis;
+        tableVersions.addRemoteListener(tables -> {
+            if (tables == null || tables.contains("users") || tables.contains("addresses")) {
+                requestRebuild();
+            }
+        });
+    }
+
+    private void requestRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuilder.schedule(() -> {
+                rebuildPending.set(false);
+                try {
+                    rebuild();
+                } catch (SQLException e) {
+                    System.out.println("[SEARCH] Rebuilding the user search index failed: " + e.getMessage());
+                }
+            }, quietMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Loads the index from the database. Changes applied while it loads are replayed on the new
+     * index, so a write committed after the load read its rows is not lost.
+     */
+    public synchronized void rebuild() throws SQLException {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Builder builder = new Builder();
+        try {
+            loader.load(builder);
+        } catch (SQLException | RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Consumer<State> change : replay) {
+                change.accept(builder.state);
+            }
+            replay = null;
+            state = builder.state;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("[SEARCH] User search index built with " + builder.state.docs.size() + " users in "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    public void close() {
+        rebuilder.shutdownNow();
+    }
+
+    private void apply(Consumer<State> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (replay != null) {
+                replay.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a user, or updates the display name and status of one already indexed.
+     */
+    public void putUser(long id, String displayName, boolean active) {
+        apply(index -> index.putUser(id, displayName, active));
+    }
+
+    public void setActive(long id, boolean active) {
+        apply(index -> {
+            Doc doc = index.docs.get(id);
+            if (doc != null) {
+                doc.active = active;
+            }
+        });
+    }
+
+    /**
+     * Sets the email of an address of {@code userId}; a null or empty email takes it out.
+     */
+    public void putEmail(long userId, long addressId, String email) {
+        apply(index -> index.putEmail(userId, addressId, email));
+    }
+
+    public void removeEmail(long addressId) {
+        apply(index -> index.removeEmail(addressId));
+    }
+
+    public void removeEmails(long userId) {
+        apply(index -> index.removeEmails(userId));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return state.docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the users matching every whitespace-separated term of {@code query}. A term is split
+     * into words the same way names and emails are, and matches when each of its words starts a
+     * word of the display name or an address email, or when a whole email starts with it. Exact
+     * words rank above prefixes, display names above emails and a match on the first word of the
+     * display name above a later one; ties go to the shorter display name.
+     *
+     * <p>Candidates come from the words starting with the longest query word. When that word is
+     * shorter than {@link #MIN_PREFIX_LENGTH}, only users with that exact word are candidates. At
+     * most {@link #MAX_CANDIDATES} candidates are scored, taking the users with that exact word
+     * first and then the users of the following words in alphabetical order.
+     *
+     * @return up to {@code limit} users, best match first
+     */
+    public List<User> search(String query, int limit) {
+        List<Term> terms = terms(query);
+        List<User> users = new ArrayList<>();
+        if (terms.isEmpty() || limit <= 0) {
+            return users;
+        }
+        // every match has a token starting with each query word; scan the range of the longest
+        String anchor = "";
+        for (Term term : terms) {
+            for (String word : term.words) {
+                if (word.length() > anchor.length()) {
+                    anchor = word;
+                }
+            }
+        }
+        String end = anchor.length() < MIN_PREFIX_LENGTH ? anchor + Character.MIN_VALUE : anchor + Character.MAX_VALUE;
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(RANKING.reversed());
+        lock.readLock().lock();
+        try {
+            Set<Long> seen = new HashSet<>();
+            scan:
+            for (Set<Long> ids : state.postings.subMap(anchor, true, end, false).values()) {
+                for (Long id : ids) {
+                    if (!seen.add(id)) {
+                        continue;
+                    }
+                    if (seen.size() > MAX_CANDIDATES) {
+                        break scan;
+                    }
+                    Doc doc = state.docs.get(id);
+                    double score = doc.score(terms);
+                    if (score > 0) {
+                        top.offer(new Hit(doc, score));
+                        if (top.size() > limit) {
+                            top.poll();
+                        }
+                    }
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(RANKING);
+            for (Hit hit : hits) {
+                User user = new User();
+                user.setId(hit.doc.id);
+                user.setDisplayName(hit.doc.displayName);
+                user.setActive(hit.doc.active);
+                users.add(user);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return users;
+    }
+
+    private static List<Term> terms(String query) {
+        Map<String, Term> terms = new LinkedHashMap<>();
+        if (query != null) {
+            for (String whole : query.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+                List<String> words = words(whole);
+                if (!words.isEmpty()) {
+                    terms.putIfAbsent(whole, new Term(whole, words));
+                }
+            }
+        }
+        return new ArrayList<>(terms.values());
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text != null) {
+            for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Fills a new index; see {@link Loader}.
+     */
+    public static final class Builder {
+        private final State state = new State();
+
+        private Builder() {
+        }
+
+        public void addUser(long id, String displayName, boolean active) {
+            state.putUser(id, displayName, active);
+        }
+
+        public void addEmail(long userId, long addressId, String email) {
+            state.putEmail(userId, addressId, email);
+        }
+    }
+
+    /**
+     * Reads every user, then every address email, into a {@link Builder}.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        void load(Builder builder) throws SQLException;
+    }
+
+    private static final class State {
+        final Map<Long, Doc> docs = new HashMap<>();
+        final TreeMap<String, Set<Long>> postings = new TreeMap<>();
+        final Map<Long, Long> emailOwners = new HashMap<>();
+
+        void putUser(long id, String displayName, boolean active) {
+            Doc doc = docs.get(id);
+            if (doc == null) {
+                doc = new Doc(id);
+                docs.put(id, doc);
+            } else {
+                unindex(doc);
+            }
+            doc.displayName = displayName != null ? displayName : "";
+            doc.active = active;
+            index(doc);
+        }
+
+        void putEmail(long userId, long addressId, String email) {
+            removeEmail(addressId);
+            Doc doc = docs.get(userId);
+            if (doc == null || email == null || email.isEmpty()) {
+                return;
+            }
+            unindex(doc);
+            doc.emails.put(addressId, email);
+            emailOwners.put(addressId, userId);
+            index(doc);
+        }
+
+        void removeEmail(long addressId) {
+            Long userId = emailOwners.remove(addressId);
+            Doc doc = userId != null ? docs.get(userId) : null;
+            if (doc != null) {
+                unindex(doc);
+                doc.emails.remove(addressId);
+                index(doc);
+            }
+        }
+
+        void removeEmails(long userId) {
+            Doc doc = docs.get(userId);
+            if (doc != null && !doc.emails.isEmpty()) {
+                unindex(doc);
+                emailOwners.keySet().removeAll(doc.emails.keySet());
+                doc.emails.clear();
+                index(doc);
+            }
+        }
+
+        private void index(Doc doc) {
+            doc.nameWords = words(doc.displayName);
+            doc.emailWords = new HashSet<>();
+            for (String email : doc.emails.values()) {
+                doc.emailWords.add(email.toLowerCase(Locale.ROOT));
+                doc.emailWords.addAll(words(email));
+            }
+            for (String token : doc.tokens()) {
+                postings.computeIfAbsent(token, t -> new HashSet<>()).add(doc.id);
+            }
+        }
+
+        private void unindex(Doc doc) {
+            for (String token : doc.tokens()) {
+                Set<Long> ids = postings.get(token);
+                if (ids != null) {
+                    ids.remove(doc.id);
+                    if (ids.isEmpty()) {
+                        postings.remove(token);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Doc {
+        final long id;
+        final Map<Long, String> emails = new HashMap<>();
+        String displayName = "";
+        boolean active;
+        List<String> nameWords = new ArrayList<>();
+        Set<String> emailWords = new HashSet<>();
+
+        Doc(long id) {
+            this.id = id;
+        }
+
+        Set<String> tokens() {
+            Set<String> tokens = new HashSet<>(nameWords);
+            tokens.addAll(emailWords);
+            return tokens;
+        }
+
+        /**
+         * @return the sum of each term's best match, or 0 if some term matches nothing
+         */
+        double score(List<Term> terms) {
+            double total = 0;
+            for (Term term : terms) {
+                // the term as a whole, which may be an email prefix, or else each of its words
+                double best = score(term.whole);
+                double words = 0;
+                for (String word : term.words) {
+                    double score = score(word);
+                    if (score == 0) {
+                        words = 0;
+                        break;
+                    }
+                    words += score / term.words.size();
+                }
+                best = Math.max(best, words);
+                if (best == 0) {
+                    return 0;
+                }
+                total += best;
+            }
+            return total;
+        }
+
+        private double score(String term) {
+            double best = 0;
+            for (int i = 0; i < nameWords.size(); i++) {
+                String word = nameWords.get(i);
+                double score = word.equals(term) ? 4 : word.startsWith(term) ? 2 : 0;
+                if (score > 0 && i == 0) {
+                    score += 1;
+                }
+                best = Math.max(best, score);
+            }
+            for (String word : emailWords) {
+                best = Math.max(best, word.equals(term) ? 1.5 : word.startsWith(term) ? 1 : 0);
+            }
+            return best;
+        }
+    }
+
+    private static final class Term {
+        final String whole;
+        final List<String> words;
+
+        Term(String whole, List<String> words) {
+            this.whole = whole;
+            this.words = words;
+        }
+    }
+
+    private static final class Hit {
+        final Doc doc;
+        final double score;
+
+        Hit(Doc doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+}
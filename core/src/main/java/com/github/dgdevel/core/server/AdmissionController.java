@@ -0,0 +1,201 @@
+package com.github.dgdevel.core.server;
+
+import com.github.dgdevel.core.config.Config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a request may run, from what can be read off its envelope: the peer address,
+ * the principal it claims and the method names. Both ports share one controller, so the limits
+ * hold across protocols. Every limit is disabled when set to 0.
+ *
+ * <p>The principal is whatever the client puts in its request header; nothing here authenticates
+ * it. The per-principal limit therefore only meters clients that identify themselves honestly, or
+ * a proxy in front of the server that sets the header itself. A client can escape it by sending a
+ * new principal with each request, so the per-address limit is the one that holds against hostile
+ * clients. Buckets are kept for the most recently seen {@value #MAX_TRACKED_KEYS} addresses and
+ * principals each; the least recently seen key is dropped first.
+ */
+public class AdmissionController {
+    public static final int RATE_LIMITED = -32001;
+    public static final int METHOD_BUSY = -32002;
+    public static final int OVERLOADED = -32003;
+
+    private static final int MAX_TRACKED_KEYS = 10000;
+
+    private final double ipRate;
+    private final double ipBurst;
+    private final double principalRate;
+    private final double principalBurst;
+    private final int maxInFlight;
+    private final Map<String, Integer> methodConcurrency;
+    private final Map<String, TokenBucket> ipBuckets = boundedBuckets();
+    private final Map<String, TokenBucket> principalBuckets = boundedBuckets();
+    private final Map<String, Semaphore> methodPermits = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder methodBusy = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+
+    public AdmissionController(Config config) {
+        this.ipRate = config.getRateLimitPerIp();
+        this.ipBurst = Math.max(config.getRateLimitPerIpBurst(), config.getRateLimitPerIp());
+        this.principalRate = config.getRateLimitPerPrincipal();
+        this.principalBurst = Math.max(config.getRateLimitPerPrincipalBurst(), config.getRateLimitPerPrincipal());
+        this.maxInFlight = config.getMaxInFlight();
+        this.methodConcurrency = config.getMethodConcurrency();
+        for (Map.Entry<String, Integer> entry : methodConcurrency.entrySet()) {
+            methodPermits.put(entry.getKey(), new Semaphore(entry.getValue()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return ipRate > 0 || principalRate > 0 || maxInFlight > 0 || !methodConcurrency.isEmpty();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Requests shed since startup, by reason.
+     */
+    public Map<String, Long> getRejected() {
+        Map<String, Long> rejected = new LinkedHashMap<>();
+        rejected.put("rate_limited", rateLimited.sum());
+        rejected.put("method_busy", methodBusy.sum());
+        rejected.put("overloaded", overloaded.sum());
+        return rejected;
+    }
+
+    /**
+     * Admits one request envelope carrying {@code methods} (several for a JSON-RPC batch). Rate
+     * limits are charged one token per method call; concurrency is held until the ticket is
+     * released.
+     *
+     * @throws AdmissionException with one of the codes above when the request must be shed
+     */
+    public Ticket admit(String address, String principal, List<String> methods) {
+        long now = System.nanoTime();
+        int calls = Math.max(1, methods.size());
+        if (ipRate > 0 && address != null && !bucket(ipBuckets, address, ipRate, ipBurst).tryTake(calls, now)) {
+            rateLimited.increment();
+            throw new AdmissionException(RATE_LIMITED, "Rate limit exceeded for " + address);
+        }
+        if (principalRate > 0 && principal != null
+                && !bucket(principalBuckets, principal, principalRate, principalBurst).tryTake(calls, now)) {
+            rateLimited.increment();
+            throw new AdmissionException(RATE_LIMITED, "Rate limit exceeded for principal " + principal);
+        }
+        if (maxInFlight > 0 && inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            overloaded.increment();
+            throw new AdmissionException(OVERLOADED, "Server overloaded, retry later");
+        }
+        List<Semaphore> held = new ArrayList<>();
+        Set<String> distinct = new LinkedHashSet<>(methods);
+        for (String method : distinct) {
+            Semaphore permits = method != null ? methodPermits.get(method) : null;
+            if (permits == null) {
+                continue;
+            }
+            if (!permits.tryAcquire()) {
+                for (Semaphore semaphore : held) {
+                    semaphore.release();
+                }
+                if (maxInFlight > 0) {
+                    inFlight.decrementAndGet();
+                }
+                methodBusy.increment();
+                throw new AdmissionException(METHOD_BUSY, "Too many concurrent " + method + " requests, retry later");
+            }
+            held.add(permits);
+        }
+        return new Ticket(held);
+    }
+
+    private static Map<String, TokenBucket> boundedBuckets() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                return size() > MAX_TRACKED_KEYS;
+            }
+        };
+    }
+
+    private TokenBucket bucket(Map<String, TokenBucket> buckets, String key, double rate, double burst) {
+        synchronized (buckets) {
+            return buckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst));
+        }
+    }
+
+    int getTrackedPrincipals() {
+        synchronized (principalBuckets) {
+            return principalBuckets.size();
+        }
+    }
+
+    /**
+     * Concurrency held by one admitted request. Releasing it more than once has no effect.
+     */
+    public final class Ticket {
+        private final List<Semaphore> held;
+        private boolean released;
+
+        private Ticket(List<Semaphore> held) {
+            this.held = held;
+        }
+
+        public synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (Semaphore semaphore : held) {
+                semaphore.release();
+            }
+            if (maxInFlight > 0) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double ratePerSecond, double capacity) {
+            this.ratePerNano = ratePerSecond / 1_000_000_000d;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized boolean tryTake(int count, long now) {
+            refill(now);
+            if (tokens < count) {
+                return false;
+            }
+            tokens -= count;
+            return true;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+                lastRefill = now;
+            }
+        }
+    }
+}
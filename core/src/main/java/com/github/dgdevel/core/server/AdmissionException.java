@@ -0,0 +1,20 @@
+package com.github.dgdevel.core.server;
+
+/**
+ * A request was shed by the {@link AdmissionController}; {@link #getCode()} is the JSON-RPC error
+ * code sent back to the caller.
+ */
+public class AdmissionException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+
+    public AdmissionException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.dgdevel.core.server;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Sits between a protocol's framing and its request handler and sheds requests before they are
+ * deserialized or reach the database. Subclasses only peek at a frame's envelope (method names,
+ * principal and ids) and know how to answer with an error; the limits themselves live in the
+ * shared {@link AdmissionController}. Every frame passed on gets exactly one response, written in
+ * order, so an admitted request holds its ticket until the matching write. A rejection waits behind
+ * the responses still owed on the connection, since requests run off the event loop.
+ */
+public abstract class AdmissionHandler extends ChannelDuplexHandler {
+    private static final Runnable NO_TICKET = () -> { };
+
+    private final AdmissionController controller;
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+    protected AdmissionHandler(AdmissionController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * What admission needs to know about a request frame.
+     */
+    protected static final class Envelope {
+        final String principal;
+        final List<String> methods;
+        final Object context;
+
+        /**
+         * @param context whatever {@link #reject} needs to answer, such as the request ids
+         */
+        public Envelope(String principal, List<String> methods, Object context) {
+            this.principal = principal;
+            this.methods = methods;
+            this.context = context;
+        }
+
+        public Object getContext() {
+            return context;
+        }
+    }
+
+    /**
+     * Reads the envelope of a request frame without decoding its params, or returns null for
+     * messages that are not subject to admission. A frame that cannot be peeked is passed on, so
+     * the request handler reports the error as usual.
+     */
+    protected abstract Envelope peek(Object msg);
+
+    /**
+     * Answers a shed request with a JSON-RPC error. The frame itself has already been released.
+     */
+    protected abstract void reject(ChannelHandlerContext ctx, Envelope envelope, AdmissionException e);
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Envelope envelope;
+        try {
+            envelope = peek(msg);
+        } catch (Exception e) {
+            envelope = null;
+        }
+        if (envelope == null) {
+            pending.add(NO_TICKET);
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        AdmissionController.Ticket ticket;
+        try {
+            ticket = controller.admit(address(ctx.channel().remoteAddress()), envelope.principal, envelope.methods);
+        } catch (AdmissionException e) {
+            ReferenceCountUtil.release(msg);
+            Envelope rejected = envelope;
+            DeferredReply reply = () -> reject(ctx, rejected, e);
+            if (pending.isEmpty()) {
+                reply.run();
+            } else {
+                pending.add(reply);
+            }
+            return;
+        }
+        pending.add(ticket::release);
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        Runnable release = pending.poll();
+        if (release != null) {
+            release.run();
+        }
+        ctx.write(msg, promise);
+        // rejections write through ctx, so they do not pass back through here
+        while (pending.peek() instanceof DeferredReply) {
+            pending.poll().run();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Runnable release;
+        while ((release = pending.poll()) != null) {
+            if (!(release instanceof DeferredReply)) {
+                release.run();
+            }
+        }
+        ctx.fireChannelInactive();
+    }
+
+    private interface DeferredReply extends Runnable {
+    }
+
+    private static String address(SocketAddress remoteAddress) {
+        if (remoteAddress instanceof InetSocketAddress) {
+            return ((InetSocketAddress) remoteAddress).getAddress().getHostAddress();
+        }
+        return remoteAddress != null ? remoteAddress.toString() : null;
+    }
+}
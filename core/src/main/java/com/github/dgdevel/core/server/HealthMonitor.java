@@ -0,0 +1,171 @@
+package com.github.dgdevel.core.server;
+
+import com.github.dgdevel.core.cache.ReferenceData;
+import com.github.dgdevel.core.config.Config;
+import com.github.dgdevel.core.db.ConnectionPool;
+import com.github.dgdevel.core.db.DatabaseManager;
+import com.github.dgdevel.core.rpc.RequestExecutor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers liveness and readiness probes from memory. A background thread checks the database every
+ * {@code healthCheckMillis} on a connection of its own, so probes neither wait for a pooled
+ * connection nor queue behind requests, however often they come. The other figures are read from
+ * counters the pool and the executor already keep.
+ */
+public class HealthMonitor {
+    public static final String LIVE = "health/live";
+    public static final String READY = "health/ready";
+
+    private static final int CHECK_TIMEOUT_SECONDS = 2;
+
+    private final Config config;
+    private final DatabaseManager databaseManager;
+    private final RequestExecutor requestExecutor;
+    private final ReferenceData referenceData;
+    private final AdmissionController admissionController;
+    private final long intervalMillis;
+    private final long startedMillis = System.currentTimeMillis();
+    private ScheduledExecutorService scheduler;
+    private Connection connection;
+    private volatile DatabaseState database = new DatabaseState(false, 0, 0, "not checked yet");
+
+    public HealthMonitor(Config config, DatabaseManager databaseManager, RequestExecutor requestExecutor, ReferenceData referenceData,
+        AdmissionController admissionController) {
+        this.config = config;
+        this.databaseManager = databaseManager;
+        this.requestExecutor = requestExecutor;
+        this.referenceData = referenceData;
+        this.admissionController = admissionController;
+        this.intervalMillis = config.getHealthCheckMillis();
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        closeConnection();
+    }
+
+    /**
+     * Runs one database check and records its outcome.
+     */
+    void check() {
+        long start = System.nanoTime();
+        try {
+            if (connection == null || connection.isClosed()) {
+                connection = databaseManager.openConnection();
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+                stmt.execute("SELECT 1");
+            }
+            database = new DatabaseState(true, System.currentTimeMillis(), (System.nanoTime() - start) / 1_000_000, null);
+        } catch (SQLException e) {
+            database = new DatabaseState(false, System.currentTimeMillis(), (System.nanoTime() - start) / 1_000_000, e.getMessage());
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // reopened on the next check
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * The database counts as up only if the last check succeeded and is recent, so a check stuck
+     * on a hung database does not leave a node ready.
+     */
+    private boolean isDatabaseUp() {
+        DatabaseState state = database;
+        return state.up && System.currentTimeMillis() - state.checkedAtMillis <= 3 * intervalMillis + CHECK_TIMEOUT_SECONDS * 1000L;
+    }
+
+    public boolean isReady() {
+        return isDatabaseUp()
+            && !requestExecutor.isDraining()
+            && (referenceData.isWarm() || "lazy".equals(config.getReferenceDataLoading()));
+    }
+
+    public Map<String, Object> live() {
+        Map<String, Object> live = new LinkedHashMap<>();
+        live.put("status", "UP");
+        live.put("uptime_ms", System.currentTimeMillis() - startedMillis);
+        return live;
+    }
+
+    public Map<String, Object> ready() {
+        DatabaseState state = database;
+        Map<String, Object> db = new LinkedHashMap<>();
+        db.put("up", isDatabaseUp());
+        db.put("latency_ms", state.latencyMillis);
+        db.put("checked_ms_ago", state.checkedAtMillis > 0 ? System.currentTimeMillis() - state.checkedAtMillis : null);
+        db.put("error", state.error);
+
+        ConnectionPool pool = databaseManager.getPool();
+        Map<String, Object> poolStats = new LinkedHashMap<>();
+        if (pool != null) {
+            int open = pool.getOpenCount();
+            int inUse = open - pool.getIdleCount();
+            poolStats.put("in_use", inUse);
+            poolStats.put("open", open);
+            poolStats.put("max", pool.getMaxSize());
+            poolStats.put("saturation", pool.getMaxSize() > 0 ? (double) inUse / pool.getMaxSize() : 0d);
+        }
+
+        Map<String, Object> executor = new LinkedHashMap<>();
+        executor.put("active", requestExecutor.getActive());
+        executor.put("queue_depth", requestExecutor.getQueueDepth());
+        executor.put("draining", requestExecutor.isDraining());
+
+        Map<String, Object> admission = new LinkedHashMap<>();
+        admission.put("in_flight", admissionController.getInFlight());
+        admission.put("rejected", admissionController.getRejected());
+
+        Map<String, Object> ready = new LinkedHashMap<>();
+        ready.put("status", isReady() ? "UP" : "DOWN");
+        ready.put("database", db);
+        ready.put("pool", poolStats);
+        ready.put("executor", executor);
+        ready.put("admission", admission);
+        ready.put("reference_data_warm", referenceData.isWarm());
+        return ready;
+    }
+
+    private static final class DatabaseState {
+        final boolean up;
+        final long checkedAtMillis;
+        final long latencyMillis;
+        final String error;
+
+        DatabaseState(boolean up, long checkedAtMillis, long latencyMillis, String error) {
+            this.up = up;
+            this.checkedAtMillis = checkedAtMillis;
+            this.latencyMillis = latencyMillis;
+            this.error = error;
+        }
+    }
+}
@@ -1,24 +1,49 @@
 package com.github.dgdevel.core.server;
 
+import com.github.dgdevel.core.cache.ChangePoller;
+import com.github.dgdevel.core.cache.ReferenceData;
+import com.github.dgdevel.core.cache.ResultCache;
+import com.github.dgdevel.core.cache.TableVersions;
+import com.github.dgdevel.core.cluster.InvalidationBus;
 import com.github.dgdevel.core.config.Config;
+import com.github.dgdevel.core.db.AuditRetentionJob;
 import com.github.dgdevel.core.db.DatabaseManager;
+import com.github.dgdevel.core.jsonrpc.JsonRpcAdmissionHandler;
 import com.github.dgdevel.core.jsonrpc.JsonRpcHandler;
+import com.github.dgdevel.core.msgpack.MsgPackAdmissionHandler;
+import com.github.dgdevel.core.msgpack.MsgPackFrameDecoder;
 import com.github.dgdevel.core.msgpack.MsgPackHandler;
 import com.github.dgdevel.core.registry.AuthenticationRegistry;
 import com.github.dgdevel.core.registry.AuthorizationRegistry;
 import com.github.dgdevel.core.registry.GenericRegistry;
 import com.github.dgdevel.core.registry.UserRegistry;
+import com.github.dgdevel.core.rpc.MethodTable;
+import com.github.dgdevel.core.rpc.RequestExecutor;
+import com.github.dgdevel.core.search.UserSearchIndex;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioChannelOption;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Server {
     private final String bindAddress;
@@ -26,17 +51,37 @@ public class Server {
     private final int msgPackPort;
     private final String dbUrl;
     private final DatabaseManager databaseManager;
+    private final int auditRetentionMonths;
+    private final String auditArchiveDir;
+    private final AdmissionController admissionController;
+    private final Config config;
+    private final ChannelGroup clientChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private RequestExecutor requestExecutor;
+    private ReferenceData referenceData;
+    private final TableVersions tableVersions = new TableVersions();
+    private ScheduledExecutorService maintenanceExecutor;
+    private InvalidationBus invalidationBus;
+    private HealthMonitor healthMonitor;
+    private UserSearchIndex userSearchIndex;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
     private Channel jsonRpcChannel;
     private Channel msgPackChannel;
 
+    public Server(Config config) {
+        this.bindAddress = config.getBindAddress();
+        this.jsonRpcPort = config.getJsonRpcPort();
+        this.msgPackPort = config.getMsgPackPort();
+        this.dbUrl = config.getDbUrl();
+        this.databaseManager = new DatabaseManager(config);
+        this.auditRetentionMonths = config.getAuditRetentionMonths();
+        this.auditArchiveDir = config.getAuditArchiveDir();
+        this.admissionController = new AdmissionController(config);
+        this.config = config;
+    }
+
     public Server(String bindAddress, int jsonRpcPort, int msgPackPort, String dbUrl, String dbUsername, String dbPassword) {
-        this.bindAddress = bindAddress;
-        this.jsonRpcPort = jsonRpcPort;
-        this.msgPackPort = msgPackPort;
-        this.dbUrl = dbUrl;
-        this.databaseManager = new DatabaseManager(dbUrl, dbUsername, dbPassword);
+        this(new Config(bindAddress, jsonRpcPort, msgPackPort, dbUrl, dbUsername, dbPassword));
     }
 
     public Server(int jsonRpcPort, int msgPackPort, String dbUrl, String dbUsername, String dbPassword) {
@@ -54,6 +99,25 @@ public class Server {
     public void start() throws Exception {
         databaseManager.connect();
 
+        boolean pollChanges = config.isChangeTriggers() && config.getChangePollMillis() > 0;
+        if (auditRetentionMonths > 0 || pollChanges) {
+            maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (auditRetentionMonths > 0) {
+            maintenanceExecutor.scheduleAtFixedRate(
+                new AuditRetentionJob(databaseManager, Paths.get(auditArchiveDir), auditRetentionMonths),
+                0, 24, TimeUnit.HOURS);
+        }
+        if (pollChanges) {
+            maintenanceExecutor.scheduleWithFixedDelay(new ChangePoller(databaseManager, tableVersions),
+                0, config.getChangePollMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        requestExecutor = new RequestExecutor(config);
         bossGroup = new NioEventLoopGroup(1);
         workerGroup = new NioEventLoopGroup();
 
@@ -62,6 +126,32 @@ public class Server {
             final AuthenticationRegistry authenticationRegistry = new AuthenticationRegistry(databaseManager.getConnection());
             final AuthorizationRegistry authorizationRegistry = new AuthorizationRegistry(databaseManager.getConnection());
             final GenericRegistry genericRegistry = new GenericRegistry(databaseManager.getConnection());
+            referenceData = MethodTable.referenceData(tableVersions, databaseManager, userRegistry, authenticationRegistry,
+                authorizationRegistry, genericRegistry, config.getIndexedAttributes());
+            if (!"lazy".equals(config.getReferenceDataLoading())) {
+                // warm the caches before the ports open, so the first requests do not find them cold
+                referenceData.preload();
+            }
+            userSearchIndex = new UserSearchIndex(builder -> databaseManager.onPooledConnection(() -> {
+                userRegistry.loadSearchIndex(builder);
+                return null;
+            }));
+            userSearchIndex.watch(tableVersions, pollChanges ? config.getChangePollMillis() : 0);
+            userRegistry.setSearchIndex(userSearchIndex);
+            userSearchIndex.rebuild();
+            final MethodTable methodTable = new MethodTable(
+                databaseManager,
+                userRegistry,
+                authenticationRegistry,
+                authorizationRegistry,
+                genericRegistry,
+                referenceData,
+                tableVersions,
+                new ResultCache(tableVersions, config.getResultCacheSize()),
+                userSearchIndex);
+
+            healthMonitor = new HealthMonitor(config, databaseManager, requestExecutor, referenceData, admissionController);
+            healthMonitor.start();
 
             ServerBootstrap jsonRpcBootstrap = new ServerBootstrap();
             jsonRpcBootstrap.option(ChannelOption.SO_BACKLOG, 1024)
@@ -70,16 +160,14 @@ public class Server {
              .childHandler(new ChannelInitializer<SocketChannel>() {
                    @Override
                    protected void initChannel(SocketChannel ch) {
+                       clientChannels.add(ch);
                        ch.pipeline().addLast(new HttpRequestDecoder());
                        ch.pipeline().addLast(new HttpObjectAggregator(65536));
                        ch.pipeline().addLast(new HttpResponseEncoder());
-                        ch.pipeline().addLast(
-                            new JsonRpcHandler(
-                                databaseManager,
-                                userRegistry,
-                                authenticationRegistry,
-                                authorizationRegistry,
-                                genericRegistry));
+                       if (admissionController.isEnabled()) {
+                           ch.pipeline().addLast(new JsonRpcAdmissionHandler(admissionController));
+                       }
+                       ch.pipeline().addLast(new JsonRpcHandler(methodTable, requestExecutor, healthMonitor));
                    }
               });
 
@@ -90,15 +178,26 @@ public class Server {
              .childHandler(new ChannelInitializer<SocketChannel>() {
                    @Override
                    protected void initChannel(SocketChannel ch) {
-                       ch.pipeline().addLast(new MsgPackHandler(
-                           databaseManager,
-                           userRegistry,
-                           authenticationRegistry,
-                           authorizationRegistry,
-                           genericRegistry));
+                       clientChannels.add(ch);
+                       ch.pipeline().addLast(new MsgPackFrameDecoder());
+                       if (admissionController.isEnabled()) {
+                           ch.pipeline().addLast(new MsgPackAdmissionHandler(admissionController));
+                       }
+                       ch.pipeline().addLast(new MsgPackHandler(methodTable, requestExecutor, healthMonitor));
                    }
               });
 
+            if (config.isReusePort()) {
+                // lets a replacement process bind the same ports before this one drains
+                jsonRpcBootstrap.option(NioChannelOption.of(StandardSocketOptions.SO_REUSEPORT), true);
+                msgPackBootstrap.option(NioChannelOption.of(StandardSocketOptions.SO_REUSEPORT), true);
+            }
+
+            if (config.getClusterPort() > 0) {
+                invalidationBus = new InvalidationBus(tableVersions, bindAddress, config.getClusterPort(), parsePeers(config.getClusterPeers()));
+                invalidationBus.start();
+            }
+
             jsonRpcChannel = jsonRpcBootstrap.bind(bindAddress, jsonRpcPort).sync().channel();
             System.out.println("JSON-RPC Server started on port " + jsonRpcPort);
 
@@ -112,19 +211,35 @@ public class Server {
         }
     }
 
+    /**
+     * Stops the server after draining it: new connections are refused, requests arriving on open
+     * connections get a retryable -32005 error, and the requests already accepted are given up to
+     * {@code drainTimeoutMillis} to finish before connections and pools are closed.
+     */
     public void shutdown() {
-        if (jsonRpcChannel != null) {
-            jsonRpcChannel.close();
-        }
-        if (msgPackChannel != null) {
-            msgPackChannel.close();
-        }
+        drain(config.getDrainTimeoutMillis());
+        clientChannels.close().awaitUninterruptibly();
         if (workerGroup != null) {
             workerGroup.shutdownGracefully();
         }
         if (bossGroup != null) {
             bossGroup.shutdownGracefully();
         }
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdownNow();
+        }
+        if (invalidationBus != null) {
+            invalidationBus.close();
+        }
+        if (healthMonitor != null) {
+            healthMonitor.close();
+        }
+        if (userSearchIndex != null) {
+            userSearchIndex.close();
+        }
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
         try {
             databaseManager.disconnect();
         } catch (Exception e) {
@@ -132,10 +247,49 @@ public class Server {
         }
     }
 
+    private void drain(long timeoutMillis) {
+        if (jsonRpcChannel != null) {
+            jsonRpcChannel.close().awaitUninterruptibly();
+        }
+        if (msgPackChannel != null) {
+            msgPackChannel.close().awaitUninterruptibly();
+        }
+        if (requestExecutor == null) {
+            return;
+        }
+        requestExecutor.startDraining();
+        try {
+            if (!requestExecutor.awaitIdle(timeoutMillis)) {
+                System.out.println("[SERVER] Drain timed out with " + requestExecutor.getActive() + " requests pending");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (databaseManager.getAuditStore() != null) {
+            try {
+                databaseManager.getAuditStore().flush();
+            } catch (Exception e) {
+                System.out.println("[SERVER] Flushing the audit log failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<InetSocketAddress> parsePeers(List<String> peers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String peer : peers) {
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Cluster peer must be host:port: " + peer);
+            }
+            addresses.add(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+        }
+        return addresses;
+    }
+
     public static void main(String[] args) throws Exception {
         Config config = Config.load(args);
 
-        Server server = new Server(config.getBindAddress(), config.getJsonRpcPort(), config.getMsgPackPort(), config.getDbUrl(), config.getDbUsername(), config.getDbPassword());
+        Server server = new Server(config);
         server.start();
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -146,6 +300,30 @@ public class Server {
         server.getJsonRpcChannel().closeFuture().sync();
     }
 
+    public TableVersions getTableVersions() {
+        return tableVersions;
+    }
+
+    public RequestExecutor getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    public UserSearchIndex getUserSearchIndex() {
+        return userSearchIndex;
+    }
+
+    public HealthMonitor getHealthMonitor() {
+        return healthMonitor;
+    }
+
+    public InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    public ReferenceData getReferenceData() {
+        return referenceData;
+    }
+
     public io.netty.channel.Channel getJsonRpcChannel() {
         return jsonRpcChannel;
     }
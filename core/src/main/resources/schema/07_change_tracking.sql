@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS table_changes (
+    table_name VARCHAR(255) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0
+);
+
+MERGE INTO table_changes (table_name) KEY (table_name) VALUES
+    ('config'), ('translations'), ('users'), ('user_attributes'), ('addresses'),
+    ('functions'), ('menu'), ('credential_type'), ('credentials'),
+    ('roles'), ('authorizations'), ('role_functions');
@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS idx_user_attributes_name_value ON user_attributes(name, attr_value, user_id);
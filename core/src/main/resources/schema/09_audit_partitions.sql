@@ -0,0 +1,11 @@
+ALTER TABLE audit_log ADD COLUMN IF NOT EXISTS
+    partition_month INT GENERATED ALWAYS AS (EXTRACT(YEAR FROM instant_at) * 100 + EXTRACT(MONTH FROM instant_at));
+
+CREATE INDEX IF NOT EXISTS idx_audit_log_partition_month ON audit_log(partition_month, instant_at);
+
+CREATE TABLE IF NOT EXISTS audit_log_archive (
+    partition_month INT PRIMARY KEY,
+    file_path VARCHAR(1000) NOT NULL,
+    row_count BIGINT NOT NULL,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
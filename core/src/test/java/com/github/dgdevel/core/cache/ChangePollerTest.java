@@ -0,0 +1,221 @@
+package com.github.dgdevel.core.cache;
+
+import com.github.dgdevel.core.config.Config;
+import com.github.dgdevel.core.db.DatabaseManager;
+import com.github.dgdevel.core.model.Address;
+import com.github.dgdevel.core.model.AddressType;
+import com.github.dgdevel.core.model.User;
+import com.github.dgdevel.core.registry.UserRegistry;
+import com.github.dgdevel.core.search.UserSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangePollerTest {
+    private static final String DB_URL = "jdbc:h2:mem:testchanges;DB_CLOSE_DELAY=-1";
+
+    private DatabaseManager databaseManager;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        Config config = new Config("0.0.0.0", 0, 0, DB_URL, null, null);
+        config.setChangeTriggers(true);
+        databaseManager = new DatabaseManager(config);
+        databaseManager.connect();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (databaseManager != null) {
+            databaseManager.cleanup();
+            databaseManager.disconnect();
+        }
+    }
+
+    @Test
+    public void testOutOfBandWriteBumpsOnlyItsTable() throws SQLException {
+        TableVersions tableVersions = new TableVersions();
+        ChangePoller poller = new ChangePoller(databaseManager, tableVersions);
+        assertTrue(poller.poll().isEmpty());
+        long[] config = tableVersions.snapshot(List.of("config"));
+        long[] users = tableVersions.snapshot(List.of("users"));
+
+        // a separate session, as an operator's console would be
+        try (Connection console = DriverManager.getConnection(DB_URL);
+             Statement stmt = console.createStatement()) {
+            stmt.executeUpdate("INSERT INTO config (namespace, config_key, config_value) VALUES ('app', 'mode', 'x')");
+            stmt.executeUpdate("UPDATE config SET config_value = 'y' WHERE config_key = 'mode'");
+        }
+
+        assertEquals(Set.of("config"), poller.poll());
+        assertFalse(tableVersions.isCurrent(List.of("config"), config));
+        assertTrue(tableVersions.isCurrent(List.of("users"), users));
+        assertTrue(poller.poll().isEmpty());
+    }
+
+    @Test
+    public void testCounterMovesOncePerStatement() throws SQLException {
+        long before = databaseManager.getTableChangeCounters().get("config");
+        try (Connection console = DriverManager.getConnection(DB_URL);
+             Statement stmt = console.createStatement()) {
+            stmt.executeUpdate("INSERT INTO config (namespace, config_key, config_value) VALUES ('app', 'a', '1'), ('app', 'b', '2')");
+            stmt.executeUpdate("UPDATE config SET config_value = 'x' WHERE namespace = 'app'");
+        }
+        assertEquals(before + 2, databaseManager.getTableChangeCounters().get("config"));
+    }
+
+    @Test
+    public void testTriggersAreOptIn() throws SQLException {
+        databaseManager.cleanup();
+        databaseManager.disconnect();
+        databaseManager = new DatabaseManager(DB_URL, null, null);
+        databaseManager.connect();
+        ChangePoller poller = new ChangePoller(databaseManager, new TableVersions());
+        poller.poll();
+
+        try (Connection console = DriverManager.getConnection(DB_URL);
+             Statement stmt = console.createStatement()) {
+            stmt.executeUpdate("INSERT INTO config (namespace, config_key, config_value) VALUES ('app', 'mode', 'x')");
+        }
+        assertTrue(poller.poll().isEmpty());
+    }
+
+    @Test
+    public void testOwnTransactionsAreNotReported() throws SQLException {
+        ChangePoller poller = new ChangePoller(databaseManager, new TableVersions());
+        poller.poll();
+
+        databaseManager.inTransaction(() -> databaseManager.setConfigValue("app", "mode", "x"));
+        assertThrows(SQLException.class, () -> databaseManager.inTransaction(() -> {
+            databaseManager.setConfigValue("app", "rolled", "back");
+            throw new SQLException("fail");
+        }));
+        assertTrue(poller.poll().isEmpty());
+
+        // a local and an outside write to the same table between two polls
+        databaseManager.inTransaction(() -> databaseManager.setConfigValue("app", "mode", "y"));
+        try (Connection console = DriverManager.getConnection(DB_URL);
+             Statement stmt = console.createStatement()) {
+            stmt.executeUpdate("UPDATE config SET config_value = 'z' WHERE config_key = 'mode'");
+        }
+        assertEquals(Set.of("config"), poller.poll());
+    }
+
+    @Test
+    public void testLocalUserCreateDoesNotRebuildSearchIndex() throws Exception {
+        TableVersions tableVersions = new TableVersions();
+        UserRegistry userRegistry = new UserRegistry(databaseManager.getConnection());
+        AtomicInteger loads = new AtomicInteger();
+        UserSearchIndex index = new UserSearchIndex(builder -> {
+            loads.incrementAndGet();
+            databaseManager.onPooledConnection(() -> {
+                userRegistry.loadSearchIndex(builder);
+                return null;
+            });
+        });
+        index.watch(tableVersions, 0);
+        index.rebuild();
+        ChangePoller poller = new ChangePoller(databaseManager, tableVersions);
+        poller.poll();
+
+        User user = new User();
+        user.setDisplayName("Local Writer");
+        user.setActive(true);
+        Long id = databaseManager.inTransaction(() -> userRegistry.create(user));
+        index.putUser(id, user.getDisplayName(), true);
+        tableVersions.bump(Set.of("users"));
+
+        assertTrue(poller.poll().isEmpty());
+        Thread.sleep(100);
+        assertEquals(1, loads.get());
+
+        try (Connection console = DriverManager.getConnection(DB_URL);
+             Statement stmt = console.createStatement()) {
+            stmt.executeUpdate("UPDATE users SET display_name = 'Console Writer' WHERE id = " + id);
+        }
+        assertEquals(Set.of("users"), poller.poll());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (index.search("console", 10).isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline, "index was not rebuilt");
+            Thread.sleep(10);
+        }
+        assertEquals(2, loads.get());
+        index.close();
+    }
+
+    @Test
+    public void testLocalAddressWritesUpdateSearchIndex() throws Exception {
+        TableVersions tableVersions = new TableVersions();
+        UserRegistry userRegistry = new UserRegistry(databaseManager.getConnection());
+        AtomicInteger loads = new AtomicInteger();
+        UserSearchIndex index = new UserSearchIndex(builder -> {
+            loads.incrementAndGet();
+            databaseManager.onPooledConnection(() -> {
+                userRegistry.loadSearchIndex(builder);
+                return null;
+            });
+        });
+        index.watch(tableVersions, 0);
+        userRegistry.setSearchIndex(index);
+        User user = new User();
+        user.setDisplayName("Address Owner");
+        user.setActive(true);
+        Long userId = databaseManager.inTransaction(() -> userRegistry.create(user));
+        index.rebuild();
+        ChangePoller poller = new ChangePoller(databaseManager, tableVersions);
+        poller.poll();
+
+        Address address = new Address();
+        address.setAddressType(AddressType.HOME);
+        address.setEmail("first.mail@example.com");
+        Long addressId = databaseManager.inTransaction(() -> userRegistry.addAddress(userId, address));
+        assertEquals(List.of(userId), index.search("first.mail", 10).stream().map(User::getId).toList());
+
+        Address rolledBack = new Address();
+        rolledBack.setAddressType(AddressType.WORK);
+        rolledBack.setEmail("never@example.com");
+        assertThrows(SQLException.class, () -> databaseManager.inTransaction(() -> {
+            userRegistry.addAddress(userId, rolledBack);
+            throw new SQLException("fail");
+        }));
+        assertTrue(index.search("never", 10).isEmpty());
+
+        address.setId(addressId);
+        address.setEmail("second.mail@example.com");
+        databaseManager.inTransaction(() -> userRegistry.updateAddress(address));
+        assertTrue(index.search("first", 10).isEmpty());
+        assertEquals(1, index.search("second", 10).size());
+
+        databaseManager.inTransaction(() -> userRegistry.deleteAddress(addressId));
+        assertTrue(index.search("second", 10).isEmpty());
+
+        assertTrue(poller.poll().isEmpty());
+        assertEquals(1, loads.get());
+        index.close();
+    }
+
+    @Test
+    public void testUncommittedWriteIsNotSeen() throws SQLException {
+        ChangePoller poller = new ChangePoller(databaseManager, new TableVersions());
+        poller.poll();
+        try (Connection console = DriverManager.getConnection(DB_URL)) {
+            console.setAutoCommit(false);
+            try (Statement stmt = console.createStatement()) {
+                stmt.executeUpdate("INSERT INTO roles (code, name) VALUES ('ops', 'Operators')");
+            }
+            assertTrue(poller.poll().isEmpty());
+            console.commit();
+        }
+        assertEquals(Set.of("roles"), poller.poll());
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.dgdevel.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceDataTest {
+
+    @Test
+    public void testLoadsOnceUntilInvalidated() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        ReferenceData referenceData = new ReferenceData();
+        referenceData.register(ReferenceData.ROLES, loads::incrementAndGet);
+
+        assertEquals(1, (int) referenceData.get(ReferenceData.ROLES));
+        assertEquals(1, (int) referenceData.get(ReferenceData.ROLES));
+        referenceData.invalidate(ReferenceData.ROLES);
+        assertEquals(2, (int) referenceData.get(ReferenceData.ROLES));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testPreloadRunsLoadersInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        ReferenceData referenceData = new ReferenceData();
+        for (String name : new String[]{ReferenceData.CONFIG, ReferenceData.TRANSLATIONS}) {
+            referenceData.register(name, () -> {
+                bothStarted.countDown();
+                try {
+                    // each loader only finishes once the other one has started
+                    assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return name;
+            });
+        }
+
+        assertFalse(referenceData.isWarm());
+        referenceData.preload();
+        assertTrue(referenceData.isWarm());
+        assertEquals(ReferenceData.CONFIG, referenceData.get(ReferenceData.CONFIG));
+        assertEquals(2, referenceData.getLoadTimings().size());
+    }
+
+    @Test
+    public void testLoadOverlappingInvalidationIsNotKept() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ReferenceData referenceData = new ReferenceData();
+        referenceData.register(ReferenceData.MENU_TREE, () -> {
+            int load = loads.incrementAndGet();
+            if (load == 1) {
+                loading.countDown();
+                try {
+                    invalidated.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return load;
+        });
+
+        CompletableFuture<Object> stale = CompletableFuture.supplyAsync(() -> {
+            try {
+                return referenceData.get(ReferenceData.MENU_TREE);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        referenceData.invalidate(ReferenceData.MENU_TREE);
+        invalidated.countDown();
+
+        assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+        assertEquals(2, (int) referenceData.get(ReferenceData.MENU_TREE));
+    }
+
+    @Test
+    public void testBackgroundDatasetServesPreviousValueDuringOneReload() throws Exception {
+        CountDownLatch reloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ReferenceData referenceData = new ReferenceData();
+        referenceData.registerReloadedInBackground(ReferenceData.USER_ATTRIBUTE_INDEX, () -> {
+            int load = loads.incrementAndGet();
+            if (load == 2) {
+                reloading.countDown();
+                try {
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return load;
+        });
+
+        assertEquals(1, (int) referenceData.get(ReferenceData.USER_ATTRIBUTE_INDEX));
+        referenceData.invalidate(ReferenceData.USER_ATTRIBUTE_INDEX);
+        assertTrue(reloading.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            referenceData.invalidate(ReferenceData.USER_ATTRIBUTE_INDEX);
+            assertEquals(1, (int) referenceData.get(ReferenceData.USER_ATTRIBUTE_INDEX));
+        }
+        release.countDown();
+
+        // the second load overlapped the later invalidations, so exactly one more load follows it
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((int) referenceData.get(ReferenceData.USER_ATTRIBUTE_INDEX) != 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, (int) referenceData.get(ReferenceData.USER_ATTRIBUTE_INDEX));
+        Thread.sleep(100);
+        assertEquals(3, loads.get());
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.dgdevel.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultCacheTest {
+
+    @Test
+    public void testEntryLivesUntilItsTableIsWritten() throws Exception {
+        TableVersions tableVersions = new TableVersions();
+        ResultCache cache = new ResultCache(tableVersions, 100);
+        AtomicInteger computed = new AtomicInteger();
+        List<String> tables = List.of("menu", "functions");
+
+        assertEquals(1, cache.get("generic/getMenuTree", new Object[0], tables, computed::incrementAndGet));
+        assertEquals(1, cache.get("generic/getMenuTree", new Object[0], tables, computed::incrementAndGet));
+
+        tableVersions.bump(List.of("users"));
+        assertEquals(1, cache.get("generic/getMenuTree", new Object[0], tables, computed::incrementAndGet));
+
+        tableVersions.bump(List.of("functions"));
+        assertEquals(2, cache.get("generic/getMenuTree", new Object[0], tables, computed::incrementAndGet));
+
+        tableVersions.bumpAll();
+        assertEquals(3, cache.get("generic/getMenuTree", new Object[0], tables, computed::incrementAndGet));
+
+        Map<String, Object> stats = cache.getStats().get("generic/getMenuTree");
+        assertEquals(2L, stats.get("hits"));
+        assertEquals(3L, stats.get("misses"));
+        assertEquals(0.4, (Double) stats.get("hit_rate"), 0.0001);
+    }
+
+    @Test
+    public void testArgumentsArePartOfTheKey() throws Exception {
+        ResultCache cache = new ResultCache(new TableVersions(), 100);
+        List<String> tables = List.of("translations");
+        assertEquals("hello", cache.get("generic/translate", new Object[]{"greeting", "en"}, tables, () -> "hello"));
+        assertEquals("ciao", cache.get("generic/translate", new Object[]{"greeting", "it"}, tables, () -> "ciao"));
+        assertEquals("hello", cache.get("generic/translate", new Object[]{"greeting", "en"}, tables, () -> "other"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        ResultCache cache = new ResultCache(new TableVersions(), 2);
+        List<String> tables = List.of("functions");
+        cache.get("generic/findFunctionByName", new Object[]{"a"}, tables, () -> "a");
+        cache.get("generic/findFunctionByName", new Object[]{"b"}, tables, () -> "b");
+        cache.get("generic/findFunctionByName", new Object[]{"a"}, tables, () -> "stale");
+        cache.get("generic/findFunctionByName", new Object[]{"c"}, tables, () -> "c");
+        assertEquals(2, cache.size());
+
+        assertEquals("a", cache.get("generic/findFunctionByName", new Object[]{"a"}, tables, () -> "reloaded"));
+        assertEquals("reloaded", cache.get("generic/findFunctionByName", new Object[]{"b"}, tables, () -> "reloaded"));
+    }
+
+    @Test
+    public void testReferenceDataFollowsTableVersions() throws Exception {
+        TableVersions tableVersions = new TableVersions();
+        ReferenceData referenceData = new ReferenceData();
+        AtomicInteger loads = new AtomicInteger();
+        referenceData.register(ReferenceData.ROLES, loads::incrementAndGet, "roles");
+        referenceData.watch(tableVersions);
+
+        assertEquals(1, (int) referenceData.get(ReferenceData.ROLES));
+        tableVersions.bump(Set.of("menu"));
+        assertEquals(1, (int) referenceData.get(ReferenceData.ROLES));
+        tableVersions.bump(Set.of("roles"));
+        assertEquals(2, (int) referenceData.get(ReferenceData.ROLES));
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.dgdevel.core.cluster;
+
+import com.github.dgdevel.core.cache.TableVersions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvalidationBusTest {
+    private static final int BASE_PORT = 18280;
+
+    private final List<InvalidationBus> buses = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        for (InvalidationBus bus : buses) {
+            bus.close();
+        }
+    }
+
+    private InvalidationBus node(int index, int nodes, TableVersions tableVersions) throws InterruptedException {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            if (i != index) {
+                peers.add(new InetSocketAddress("127.0.0.1", BASE_PORT + i));
+            }
+        }
+        InvalidationBus bus = new InvalidationBus(tableVersions, "127.0.0.1", BASE_PORT + index, peers);
+        buses.add(bus);
+        bus.start();
+        return bus;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testWriteOnOneNodeInvalidatesTheOthers() throws Exception {
+        TableVersions[] versions = {new TableVersions(), new TableVersions(), new TableVersions()};
+        List<InvalidationBus> nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            nodes.add(node(i, 3, versions[i]));
+        }
+        for (InvalidationBus bus : nodes) {
+            await(() -> bus.getConnectedPeers() == 2);
+        }
+        long[] roles1 = versions[1].snapshot(List.of("roles"));
+        long[] roles2 = versions[2].snapshot(List.of("roles"));
+        long[] config2 = versions[2].snapshot(List.of("config"));
+
+        versions[0].bump(Set.of("roles"));
+
+        await(() -> !versions[1].isCurrent(List.of("roles"), roles1));
+        await(() -> !versions[2].isCurrent(List.of("roles"), roles2));
+        assertTrue(versions[2].isCurrent(List.of("config"), config2));
+        for (InvalidationBus bus : nodes) {
+            assertEquals(0, bus.getGapFlushes());
+        }
+    }
+
+    @Test
+    public void testMissedEventsFlushEverything() throws Exception {
+        TableVersions versionsA = new TableVersions();
+        InvalidationBus a = node(0, 2, versionsA);
+        // written while node B is not listening: the event is lost
+        versionsA.bump(Set.of("menu"));
+
+        TableVersions versionsB = new TableVersions();
+        long[] users = versionsB.snapshot(List.of("users"));
+        InvalidationBus b = node(1, 2, versionsB);
+
+        await(() -> b.getGapFlushes() == 1);
+        assertFalse(versionsB.isCurrent(List.of("users"), users));
+        assertEquals(0, a.getGapFlushes());
+    }
+
+    @Test
+    public void testSequenceGapFlushesEverything() {
+        TableVersions tableVersions = new TableVersions();
+        InvalidationBus bus = new InvalidationBus(tableVersions, "127.0.0.1", BASE_PORT, List.of());
+        bus.receive(42L, 0, null);
+        bus.receive(42L, 1, Set.of("roles"));
+        long[] config = tableVersions.snapshot(List.of("config"));
+        assertEquals(0, bus.getGapFlushes());
+
+        bus.receive(42L, 3, Set.of("roles"));
+        assertEquals(1, bus.getGapFlushes());
+        assertFalse(tableVersions.isCurrent(List.of("config"), config));
+    }
+}
@@ -213,4 +213,122 @@ public class DatabaseManagerTest {
         assertEquals(1, result.getTotalCount());
         assertEquals(1, result.getPage().size());
     }
+
+    private void insertAuditLogAt(String instant, String payload) throws SQLException {
+        Long id = databaseManager.auditLog(null, "SYSTEM", payload);
+        try (java.sql.PreparedStatement stmt = databaseManager.getConnection().prepareStatement(
+                "UPDATE audit_log SET instant_at = ? WHERE id = ?")) {
+            stmt.setTimestamp(1, java.sql.Timestamp.valueOf(instant));
+            stmt.setLong(2, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    @Test
+    public void testAuditLogListWithInstantRange() throws SQLException {
+        insertAuditLogAt("2020-01-15 10:00:00", "january");
+        insertAuditLogAt("2020-02-15 10:00:00", "february");
+        insertAuditLogAt("2020-03-15 10:00:00", "march");
+
+        Paginator paginator = new Paginator();
+        paginator.setPageNumber(1);
+        paginator.setPageSize(10);
+        paginator.setFilters(java.util.Map.of("instant_from", "2020-02-01 00:00:00", "instant_to", "2020-03-01 00:00:00"));
+
+        PaginatedList result = databaseManager.auditLogList(paginator);
+        assertEquals(1, result.getTotalCount());
+        java.util.Map<?, ?> entry = (java.util.Map<?, ?>) result.getPage().get(0);
+        assertEquals("february", entry.get("payload"));
+    }
+
+    @Test
+    public void testAuditLogListRejectsMalformedInstant() {
+        Paginator paginator = new Paginator();
+        paginator.setPageNumber(1);
+        paginator.setPageSize(10);
+        paginator.setFilters(java.util.Map.of("instant_from", "yesterday"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> databaseManager.auditLogList(paginator));
+        assertEquals("Invalid timestamp format: yesterday", e.getMessage());
+    }
+
+    @Test
+    public void testAuditPartitions() throws SQLException {
+        insertAuditLogAt("2020-01-15 10:00:00", "january");
+        insertAuditLogAt("2020-01-20 10:00:00", "january again");
+        insertAuditLogAt("2020-03-15 10:00:00", "march");
+
+        assertEquals(java.util.List.of(202001, 202003), databaseManager.getAuditPartitions());
+    }
+
+    @Test
+    public void testArchiveAuditPartition(@org.junit.jupiter.api.io.TempDir java.nio.file.Path archiveDir) throws Exception {
+        insertAuditLogAt("2020-01-15 10:00:00", "january");
+        insertAuditLogAt("2020-01-20 10:00:00", "january again");
+        insertAuditLogAt("2020-03-15 10:00:00", "march");
+
+        long archived = databaseManager.archiveAuditPartition(202001, archiveDir);
+        assertEquals(2, archived);
+        assertEquals(java.util.List.of(202003), databaseManager.getAuditPartitions());
+
+        java.nio.file.Path file = archiveDir.resolve("audit_log_202001.ndjson.gz");
+        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(
+                new java.util.zip.GZIPInputStream(java.nio.file.Files.newInputStream(file))))) {
+            java.util.List<String> lines = reader.lines().toList();
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).contains("\"payload\":\"january\""));
+        }
+
+        java.util.List<java.util.Map<String, Object>> archives = databaseManager.getAuditArchives();
+        assertEquals(1, archives.size());
+        assertEquals(202001, archives.get(0).get("partition_month"));
+        assertEquals(2L, archives.get(0).get("row_count"));
+    }
+
+    @Test
+    public void testArchiveSkipsPartitionArchivedElsewhere(@org.junit.jupiter.api.io.TempDir java.nio.file.Path archiveDir)
+            throws Exception {
+        insertAuditLogAt("2020-01-15 10:00:00", "january");
+        insertAuditLogAt("2020-01-20 10:00:00", "january again");
+        assertEquals(2, databaseManager.archiveAuditPartition(202001, archiveDir));
+        java.nio.file.Path file = archiveDir.resolve("audit_log_202001.ndjson.gz");
+        byte[] archive = java.nio.file.Files.readAllBytes(file);
+
+        // a second node that listed the partition before the first one committed
+        assertEquals(0, databaseManager.archiveAuditPartition(202001, archiveDir));
+        assertArrayEquals(archive, java.nio.file.Files.readAllBytes(file));
+        assertEquals(2L, databaseManager.getAuditArchives().get(0).get("row_count"));
+
+        // nothing left to archive
+        assertEquals(0, databaseManager.archiveAuditPartition(202002, archiveDir));
+        assertEquals(1, databaseManager.getAuditArchives().size());
+        try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(archiveDir)) {
+            assertEquals(java.util.List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    public void testArchiveDoesNotOverwriteExistingFile(@org.junit.jupiter.api.io.TempDir java.nio.file.Path archiveDir)
+            throws Exception {
+        java.nio.file.Path existing = archiveDir.resolve("audit_log_202001.ndjson.gz");
+        java.nio.file.Files.writeString(existing, "kept");
+        insertAuditLogAt("2020-01-15 10:00:00", "january");
+
+        assertEquals(1, databaseManager.archiveAuditPartition(202001, archiveDir));
+        assertEquals("kept", java.nio.file.Files.readString(existing));
+        java.nio.file.Path file = archiveDir.resolve("audit_log_202001.1.ndjson.gz");
+        assertTrue(java.nio.file.Files.exists(file));
+        assertEquals(file.toAbsolutePath().toString(), databaseManager.getAuditArchives().get(0).get("file_path"));
+    }
+
+    @Test
+    public void testAuditRetentionJobArchivesOnlyExpiredPartitions(@org.junit.jupiter.api.io.TempDir java.nio.file.Path archiveDir)
+            throws SQLException {
+        insertAuditLogAt("2020-01-15 10:00:00", "old");
+        databaseManager.auditLog(null, "SYSTEM", "current");
+
+        java.util.List<Integer> archived = new AuditRetentionJob(databaseManager, archiveDir, 3).archiveExpiredPartitions();
+        assertEquals(java.util.List.of(202001), archived);
+        assertEquals(1, databaseManager.getAuditPartitions().size());
+    }
 }
@@ -0,0 +1,80 @@
+package com.github.dgdevel.core.db;
+
+import com.github.dgdevel.core.config.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadReplicaTest {
+    private static final String PRIMARY_URL = "jdbc:h2:mem:testprimary;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA1_URL = "jdbc:h2:mem:testreplica1;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA2_URL = "jdbc:h2:mem:testreplica2;DB_CLOSE_DELAY=-1";
+
+    private DatabaseManager replica1;
+    private DatabaseManager replica2;
+    private DatabaseManager databaseManager;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        replica1 = new DatabaseManager(REPLICA1_URL, null, null);
+        replica1.connect();
+        replica1.setConfigValue("node", "name", "replica1");
+        replica2 = new DatabaseManager(REPLICA2_URL, null, null);
+        replica2.connect();
+        replica2.setConfigValue("node", "name", "replica2");
+
+        Config config = new Config("0.0.0.0", 0, 0, PRIMARY_URL, null, null);
+        config.setDbReadUrls(List.of(REPLICA1_URL, REPLICA2_URL));
+        config.setReadYourWritesMillis(60000);
+        databaseManager = new DatabaseManager(config);
+        databaseManager.connect();
+        databaseManager.setConfigValue("node", "name", "primary");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        for (DatabaseManager manager : new DatabaseManager[] { databaseManager, replica1, replica2 }) {
+            if (manager != null) {
+                manager.cleanup();
+                manager.disconnect();
+            }
+        }
+    }
+
+    @Test
+    public void testReadsAreBalancedAcrossReplicas() throws SQLException {
+        assertTrue(databaseManager.hasReplicas());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            seen.add(databaseManager.onReplica(() -> databaseManager.getConfigValue("node", "name")));
+        }
+        assertEquals(Set.of("replica1", "replica2"), seen);
+    }
+
+    @Test
+    public void testRecentWriteSticksToPrimary() throws SQLException {
+        long lastWrite = System.currentTimeMillis();
+        String value = databaseManager.onReplica(() -> databaseManager.getConfigValue("node", "name"), lastWrite);
+        assertEquals("primary", value);
+    }
+
+    @Test
+    public void testReadInsideTransactionStaysOnPrimary() throws SQLException {
+        String value = databaseManager.inTransaction(
+            () -> databaseManager.onReplica(() -> databaseManager.getConfigValue("node", "name")));
+        assertEquals("primary", value);
+    }
+
+    @Test
+    public void testWithoutReplicasReadsFromPrimary() throws SQLException {
+        assertFalse(replica1.hasReplicas());
+        assertEquals("replica1", replica1.onReplica(() -> replica1.getConfigValue("node", "name")));
+    }
+}
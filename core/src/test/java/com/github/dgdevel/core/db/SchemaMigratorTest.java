@@ -0,0 +1,105 @@
+package com.github.dgdevel.core.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+    private static final String URL = "jdbc:h2:mem:testmigrations";
+
+    private Connection connection;
+    private Connection lockConnection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(URL);
+        lockConnection = DriverManager.getConnection(URL);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        lockConnection.close();
+        connection.close();
+    }
+
+    @Test
+    public void testAppliesEachScriptOnce() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(connection, lockConnection);
+        int scripts = migrator.readIndex().size();
+        assertEquals(scripts, migrator.migrate());
+        assertEquals(0, migrator.migrate());
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM schema_version")) {
+            rs.next();
+            assertEquals(scripts, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testRefusesModifiedScript() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(connection, lockConnection);
+        migrator.migrate();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("UPDATE schema_version SET checksum = checksum + 1 WHERE script = '02_user_service.sql'");
+        }
+        SQLException e = assertThrows(SQLException.class, migrator::migrate);
+        assertTrue(e.getMessage().contains("02_user_service.sql"));
+    }
+
+    @Test
+    public void testWaitsForAnotherNodeHoldingTheLock() throws Exception {
+        try (Connection otherNode = DriverManager.getConnection(URL)) {
+            try (Statement stmt = otherNode.createStatement()) {
+                stmt.execute("CREATE TABLE schema_lock (id INT PRIMARY KEY)");
+                stmt.execute("INSERT INTO schema_lock (id) VALUES (1)");
+            }
+            otherNode.setAutoCommit(false);
+            try (Statement stmt = otherNode.createStatement()) {
+                stmt.executeQuery("SELECT id FROM schema_lock WHERE id = 1 FOR UPDATE").close();
+            }
+
+            SchemaMigrator migrator = new SchemaMigrator(connection, lockConnection);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<Integer> migration = executor.submit(migrator::migrate);
+                Thread.sleep(300);
+                assertFalse(migration.isDone());
+                try (Statement stmt = otherNode.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM schema_version")) {
+                    rs.next();
+                    assertEquals(0, rs.getInt(1));
+                }
+
+                otherNode.rollback();
+                assertEquals(migrator.readIndex().size(), migration.get(30, TimeUnit.SECONDS));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testIndexListsEveryScript() throws SQLException {
+        String[] files = new File("src/main/resources/schema").list((dir, name) -> name.endsWith(".sql"));
+        assertNotNull(files);
+        Arrays.sort(files);
+        List<String> index = new SchemaMigrator(connection, lockConnection).readIndex();
+        assertEquals(Arrays.asList(files), index);
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.dgdevel.core.db;
+
+import com.github.dgdevel.core.common.PaginatedList;
+import com.github.dgdevel.core.common.Paginator;
+import com.github.dgdevel.core.config.Config;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentAuditStoreTest {
+    @TempDir
+    Path directory;
+
+    private static Paginator paginator(int pageNumber, int pageSize, Map<String, String> filters) {
+        Paginator paginator = new Paginator();
+        paginator.setPageNumber(pageNumber);
+        paginator.setPageSize(pageSize);
+        paginator.setFilters(filters);
+        return paginator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> page(PaginatedList result) {
+        return (List<Map<String, Object>>) result.getPage();
+    }
+
+    @Test
+    public void testLogAndListAcrossSealedBlocksAndTail() throws SQLException {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 4, 1024 * 1024)) {
+            for (int i = 1; i <= 10; i++) {
+                assertEquals((long) i, store.log(i % 2 == 0 ? 7L : null, i % 3 == 0 ? "LOGIN" : "SYSTEM", "event " + i));
+            }
+            assertEquals(1, store.getSegmentCount());
+
+            PaginatedList all = store.list(paginator(1, 100, null));
+            assertEquals(10, all.getTotalCount());
+            assertEquals(10L, page(all).get(0).get("id"));
+
+            PaginatedList logins = store.list(paginator(1, 100, Map.of("type_code", "LOGIN")));
+            assertEquals(3, logins.getTotalCount());
+
+            PaginatedList user = store.list(paginator(1, 100, Map.of("user_id", "7", "type_code", "LOGIN")));
+            assertEquals(1, user.getTotalCount());
+            assertEquals("event 6", page(user).get(0).get("payload"));
+        }
+    }
+
+    @Test
+    public void testSortingAndPagination() throws SQLException {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 2, 1024 * 1024)) {
+            store.log(3L, "B", "first");
+            store.log(1L, "C", "second");
+            store.log(2L, "A", "third");
+
+            Paginator byType = paginator(1, 2, null);
+            byType.setSortKey("type_code");
+            byType.setSortDirection("ASC");
+            PaginatedList firstPage = store.list(byType);
+            assertEquals(3, firstPage.getTotalCount());
+            assertEquals(2, firstPage.getPage().size());
+            assertEquals("A", page(firstPage).get(0).get("type_code"));
+            assertEquals("B", page(firstPage).get(1).get("type_code"));
+
+            byType.setPageNumber(2);
+            PaginatedList secondPage = store.list(byType);
+            assertEquals(1, secondPage.getPage().size());
+            assertEquals("C", page(secondPage).get(0).get("type_code"));
+        }
+    }
+
+    @Test
+    public void testPagesAcrossManyBlocks() throws SQLException {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 4, 1024 * 1024)) {
+            for (int i = 1; i <= 50; i++) {
+                store.log(i <= 8 ? 1L : 2L, i % 5 == 0 ? "LOGIN" : "SYSTEM", "event " + i);
+            }
+
+            PaginatedList<Map<String, Object>> newest = store.list(paginator(3, 5, null));
+            assertEquals(50, newest.getTotalCount());
+            assertEquals(List.of(40L, 39L, 38L, 37L, 36L), newest.getPage().stream().map(row -> row.get("id")).toList());
+
+            Paginator oldestFirst = paginator(2, 5, null);
+            oldestFirst.setSortKey("instant_at");
+            oldestFirst.setSortDirection("ASC");
+            PaginatedList<Map<String, Object>> oldest = store.list(oldestFirst);
+            assertEquals(50, oldest.getTotalCount());
+            assertEquals(List.of(6L, 7L, 8L, 9L, 10L), oldest.getPage().stream().map(row -> row.get("id")).toList());
+
+            // the first two blocks hold only user 1, the others only user 2
+            PaginatedList<Map<String, Object>> user = store.list(paginator(1, 3, Map.of("user_id", "1")));
+            assertEquals(8, user.getTotalCount());
+            assertEquals(List.of(8L, 7L, 6L), user.getPage().stream().map(row -> row.get("id")).toList());
+            assertEquals(10, store.list(paginator(1, 3, Map.of("type_code", "LOGIN"))).getTotalCount());
+
+            PaginatedList<Map<String, Object>> beyond = store.list(paginator(20, 5, null));
+            assertEquals(50, beyond.getTotalCount());
+            assertTrue(beyond.getPage().isEmpty());
+        }
+    }
+
+    @Test
+    public void testRejectsNullPayload() throws SQLException {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 4, 1024 * 1024)) {
+            assertThrows(SQLException.class, () -> store.log(1L, "SYSTEM", null));
+            assertThrows(SQLException.class, () -> store.log(1L, null, "payload"));
+            assertEquals(1L, store.log(1L, "SYSTEM", "payload"));
+        }
+    }
+
+    @Test
+    public void testInstantRangeFilter() throws SQLException {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 2, 1024 * 1024)) {
+            store.log(null, "SYSTEM", "now");
+            long future = System.currentTimeMillis() + 3600000;
+            assertEquals(0, store.list(paginator(1, 10, Map.of("instant_from", String.valueOf(future)))).getTotalCount());
+            assertEquals(1, store.list(paginator(1, 10, Map.of("instant_to", String.valueOf(future)))).getTotalCount());
+        }
+    }
+
+    @Test
+    public void testReopenRecoversSegmentsAndTail() throws SQLException {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 4, 1024 * 1024)) {
+            for (int i = 0; i < 6; i++) {
+                store.log(1L, "SYSTEM", "event " + i);
+            }
+        }
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 4, 1024 * 1024)) {
+            assertEquals(6, store.list(paginator(1, 100, null)).getTotalCount());
+            assertEquals(7L, store.log(1L, "SYSTEM", "after reopen"));
+        }
+    }
+
+    @Test
+    public void testReopenDiscardsTornBlock() throws Exception {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 2, 1024 * 1024)) {
+            for (int i = 0; i < 4; i++) {
+                store.log(null, "SYSTEM", "event " + i);
+            }
+        }
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.filter(path -> path.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 2, 1024 * 1024)) {
+            assertEquals(2, store.list(paginator(1, 100, null)).getTotalCount());
+        }
+    }
+
+    @Test
+    public void testSegmentsRollOver() throws SQLException {
+        try (SegmentAuditStore store = new SegmentAuditStore(directory, 1, 64)) {
+            for (int i = 0; i < 5; i++) {
+                store.log(null, "SYSTEM", "a payload long enough to fill a small segment " + i);
+            }
+            assertEquals(5, store.getSegmentCount());
+            assertEquals(5, store.list(paginator(1, 100, null)).getTotalCount());
+        }
+    }
+
+    @Test
+    public void testDatabaseManagerUsesSegmentBackend() throws SQLException {
+        Config config = new Config("0.0.0.0", 0, 0, "jdbc:h2:mem:testsegment;DB_CLOSE_DELAY=-1", null, null);
+        config.setAuditBackend("segment");
+        config.setAuditSegmentDir(directory.toString());
+        DatabaseManager databaseManager = new DatabaseManager(config);
+        databaseManager.connect();
+        try {
+            Long id = databaseManager.auditLog(null, "LOGIN", "segment login");
+            assertEquals(1L, id);
+            PaginatedList result = databaseManager.auditLogList(paginator(1, 10, Map.of("type_code", "LOGIN")));
+            assertEquals(1, result.getTotalCount());
+            assertTrue(databaseManager.getAuditPartitions().isEmpty());
+        } finally {
+            databaseManager.cleanup();
+            databaseManager.disconnect();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.dgdevel.core.db;
+
+import com.github.dgdevel.core.config.Config;
+import com.github.dgdevel.core.model.Role;
+import com.github.dgdevel.core.model.User;
+import com.github.dgdevel.core.registry.AuthorizationRegistry;
+import com.github.dgdevel.core.registry.UserRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionManagerTest {
+    private DatabaseManager databaseManager;
+
+    private void connect(boolean groupCommit) throws SQLException {
+        Config config = new Config("0.0.0.0", 0, 0, "jdbc:h2:mem:testtx;DB_CLOSE_DELAY=-1", null, null);
+        config.setDbPoolSize(4);
+        config.setGroupCommit(groupCommit);
+        config.setGroupCommitWindowMillis(20);
+        databaseManager = new DatabaseManager(config);
+        databaseManager.connect();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (databaseManager != null) {
+            databaseManager.cleanup();
+            databaseManager.disconnect();
+        }
+    }
+
+    @Test
+    public void testCommit() throws SQLException {
+        connect(false);
+        databaseManager.inTransaction(() -> {
+            databaseManager.setConfigValue("tx", "a", "1");
+            databaseManager.setConfigValue("tx", "b", "2");
+            return null;
+        });
+        assertEquals("1", databaseManager.getConfigValue("tx", "a"));
+        assertEquals("2", databaseManager.getConfigValue("tx", "b"));
+    }
+
+    @Test
+    public void testRollbackOnException() throws SQLException {
+        connect(false);
+        assertThrows(SQLException.class, () -> databaseManager.inTransaction(() -> {
+            databaseManager.setConfigValue("tx", "a", "1");
+            throw new SQLException("boom");
+        }));
+        assertNull(databaseManager.getConfigValue("tx", "a"));
+    }
+
+    @Test
+    public void testNestedJoinsOuterTransaction() throws SQLException {
+        connect(false);
+        assertThrows(RuntimeException.class, () -> databaseManager.inTransaction(() -> {
+            databaseManager.inTransaction(() -> databaseManager.setConfigValue("tx", "inner", "1"));
+            throw new RuntimeException("boom");
+        }));
+        assertNull(databaseManager.getConfigValue("tx", "inner"));
+    }
+
+    @Test
+    public void testGroupCommitCoalescesConcurrentUnits() throws Exception {
+        connect(true);
+        int writers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                String key = "k" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return databaseManager.inTransaction(() -> databaseManager.setConfigValue("group", key, key));
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < writers; i++) {
+            assertEquals("k" + i, databaseManager.getConfigValue("group", "k" + i));
+        }
+        long commits = databaseManager.getTransactionManager().getGroupCommitCount();
+        assertTrue(commits >= 1 && commits < writers, "expected coalesced commits, got " + commits);
+    }
+
+    @Test
+    public void testGroupCommitRollsBackOnlyFailedUnit() throws SQLException {
+        connect(true);
+        databaseManager.inTransaction(() -> databaseManager.setConfigValue("group", "kept", "1"));
+        assertThrows(SQLException.class, () -> databaseManager.inTransaction(() -> {
+            databaseManager.setConfigValue("group", "discarded", "1");
+            throw new SQLException("boom");
+        }));
+        assertEquals("1", databaseManager.getConfigValue("group", "kept"));
+        assertNull(databaseManager.getConfigValue("group", "discarded"));
+    }
+
+    @Test
+    public void testConcurrentOverlappingAuthorizeInsertsOnce() throws Exception {
+        connect(false);
+        UserRegistry userRegistry = new UserRegistry(databaseManager.getConnection());
+        AuthorizationRegistry authorizationRegistry = new AuthorizationRegistry(databaseManager.getConnection());
+        User user = new User();
+        user.setDisplayName("Concurrent");
+        user.setActive(true);
+        Long userId = userRegistry.create(user);
+        Role role = new Role();
+        role.setCode("RACE");
+        role.setName("Race");
+        Long roleId = authorizationRegistry.create(role);
+        Timestamp from = new Timestamp(System.currentTimeMillis());
+        Timestamp until = new Timestamp(System.currentTimeMillis() + 3600000);
+
+        int attempts = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(attempts);
+        CountDownLatch start = new CountDownLatch(1);
+        int succeeded = 0;
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < attempts; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return databaseManager.inTransaction(() -> authorizationRegistry.authorize(userId, roleId, from, until));
+                }));
+            }
+            start.countDown();
+            for (Future<Long> future : futures) {
+                try {
+                    future.get();
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(SQLException.class, e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, succeeded);
+    }
+}
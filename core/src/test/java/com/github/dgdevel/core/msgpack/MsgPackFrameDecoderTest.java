@@ -0,0 +1,56 @@
+package com.github.dgdevel.core.msgpack;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MsgPackFrameDecoderTest {
+    private static byte[] request(String method, int id) throws Exception {
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            packer.packArrayHeader(4);
+            packer.packString("2.0");
+            packer.packString(method);
+            packer.packArrayHeader(0);
+            packer.packInt(id);
+            return packer.toByteArray();
+        }
+    }
+
+    @Test
+    public void testSplitsConcatenatedRequests() throws Exception {
+        byte[] first = request("generic/ping", 1);
+        byte[] second = request("user/findById", 2);
+        EmbeddedChannel channel = new EmbeddedChannel(new MsgPackFrameDecoder());
+        channel.writeInbound(Unpooled.wrappedBuffer(first, second));
+
+        ByteBuf frame = channel.readInbound();
+        assertEquals(first.length, frame.readableBytes());
+        frame.release();
+        frame = channel.readInbound();
+        assertEquals(second.length, frame.readableBytes());
+        frame.release();
+        assertNull(channel.readInbound());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testWaitsForIncompleteRequest() throws Exception {
+        byte[] data = request("generic/ping", 1);
+        EmbeddedChannel channel = new EmbeddedChannel(new MsgPackFrameDecoder());
+        channel.writeInbound(Unpooled.wrappedBuffer(Arrays.copyOfRange(data, 0, 5)));
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(Unpooled.wrappedBuffer(Arrays.copyOfRange(data, 5, data.length)));
+        ByteBuf frame = channel.readInbound();
+        assertEquals(data.length, frame.readableBytes());
+        frame.release();
+        channel.finishAndReleaseAll();
+    }
+}
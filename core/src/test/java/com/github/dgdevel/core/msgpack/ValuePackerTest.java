@@ -0,0 +1,134 @@
+package com.github.dgdevel.core.msgpack;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dgdevel.core.common.PaginatedList;
+import com.github.dgdevel.core.model.Address;
+import com.github.dgdevel.core.model.AddressType;
+import com.github.dgdevel.core.model.Function;
+import com.github.dgdevel.core.model.Menu;
+import com.github.dgdevel.core.model.User;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ExtensionValue;
+import org.msgpack.value.Value;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValuePackerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String packToJson(Object value) throws Exception {
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            ValuePacker.packValue(packer, value);
+            try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(packer.toByteArray())) {
+                Value unpacked = unpacker.unpackValue();
+                return unpacked.toJson();
+            }
+        }
+    }
+
+    private void assertSameAsJackson(Object value) throws Exception {
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(value)), objectMapper.readTree(packToJson(value)));
+    }
+
+    @Test
+    public void testUserMatchesJacksonOutput() throws Exception {
+        User user = new User();
+        user.setId(7L);
+        user.setDisplayName("Alice");
+        user.setActive(true);
+        assertSameAsJackson(user);
+
+        User partial = new User();
+        partial.setDisplayName("Bob");
+        assertEquals("{\"display_name\":\"Bob\",\"active\":false}", packToJson(partial));
+    }
+
+    @Test
+    public void testNestedMenuTreeMatchesJacksonOutput() throws Exception {
+        Function function = new Function();
+        function.setId(3L);
+        function.setName("users");
+        Menu child = new Menu();
+        child.setId(2L);
+        child.setParentId(1L);
+        child.setFunction(function);
+        Menu root = new Menu();
+        root.setId(1L);
+        root.setChildren(List.of(child));
+        assertSameAsJackson(List.of(root));
+    }
+
+    @Test
+    public void testPaginatedAddressesMatchJacksonOutput() throws Exception {
+        Address address = new Address();
+        address.setId(1L);
+        address.setUserId(7L);
+        address.setAddressType(AddressType.WORK);
+        address.setCity("Rome");
+        PaginatedList<Address> page = new PaginatedList<>();
+        page.setPage(List.of(address));
+        page.setTotalCount(1);
+        assertSameAsJackson(page);
+    }
+
+    @Test
+    public void testCompactModePacksModelsAsExtensionArrays() throws Exception {
+        User user = new User();
+        user.setId(7L);
+        user.setDisplayName("Alice");
+        PaginatedList<User> page = new PaginatedList<>();
+        page.setPage(List.of(user));
+        page.setTotalCount(1);
+
+        byte[] compact;
+        byte[] plain;
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            ValuePacker.packValue(packer, page, true);
+            compact = packer.toByteArray();
+        }
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            ValuePacker.packValue(packer, page);
+            plain = packer.toByteArray();
+        }
+        assertTrue(compact.length < plain.length);
+
+        Map<String, Object> userType = ValuePacker.getCompactTypes().stream()
+            .filter(type -> "User".equals(type.get("name"))).findFirst().orElseThrow();
+        try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(compact)) {
+            ExtensionValue value = unpacker.unpackValue().asExtensionValue();
+            try (MessageUnpacker payload = MessagePack.newDefaultUnpacker(value.getData())) {
+                ExtensionValue first = payload.unpackValue().asArrayValue().get(0).asArrayValue().get(0).asExtensionValue();
+                assertEquals(((Number) userType.get("id")).byteValue(), first.getType());
+            }
+        }
+    }
+
+    @Test
+    public void testPackedSizeMatchesPackedBytes() throws Exception {
+        User user = new User();
+        user.setId(-40000L);
+        user.setDisplayName("Zo\u00eb \u6771\u4eac \ud83d\ude00 \ud800".repeat(40));
+        PaginatedList<User> page = new PaginatedList<>();
+        page.setPage(java.util.Collections.nCopies(300, user));
+        page.setTotalCount(70000);
+        Map<String, Object> map = new java.util.LinkedHashMap<>();
+        map.put("page", page);
+        map.put("numbers", List.of(0, 127, 128, 255, 256, 65535, 65536, -32, -33, -128, -129, -32768, -32769, Long.MIN_VALUE, 1.5, 2.5f));
+        map.put("text", "x".repeat(70000));
+        map.put("empty", "");
+        map.put("large", 5_000_000_000L);
+
+        for (boolean compact : new boolean[] {false, true}) {
+            try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+                ValuePacker.packValue(packer, map, compact);
+                assertEquals(packer.toByteArray().length, ValuePacker.packedSize(map, compact));
+            }
+        }
+    }
+}
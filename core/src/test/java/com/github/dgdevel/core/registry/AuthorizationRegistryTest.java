@@ -1,5 +1,6 @@
 package com.github.dgdevel.core.registry;
 
+import com.github.dgdevel.core.cache.ReferenceData;
 import com.github.dgdevel.core.db.DatabaseManager;
 import com.github.dgdevel.core.model.Role;
 import com.github.dgdevel.core.model.User;
@@ -812,6 +813,45 @@ public class AuthorizationRegistryTest {
         assertTrue(authorizationRegistry.isUserInRole(userId, childRoleId));
     }
 
+    @Test
+    public void testMultiLevelHierarchyFromReferenceData() throws SQLException {
+        User user = new User();
+        user.setDisplayName("Test User");
+        user.setActive(true);
+        Long userId = userRegistry.create(user);
+
+        Role grandparentRole = new Role();
+        grandparentRole.setCode("SUPER_ADMIN");
+        grandparentRole.setName("Super Administrator");
+        Long grandparentRoleId = authorizationRegistry.create(grandparentRole);
+
+        Role parentRole = new Role();
+        parentRole.setCode("ADMIN");
+        parentRole.setName("Administrator");
+        parentRole.setParentCode("SUPER_ADMIN");
+        Long parentRoleId = authorizationRegistry.create(parentRole);
+
+        Role childRole = new Role();
+        childRole.setCode("ADMIN_READONLY");
+        childRole.setName("Read Only Admin");
+        childRole.setParentCode("ADMIN");
+        Long childRoleId = authorizationRegistry.create(childRole);
+
+        ReferenceData referenceData = new ReferenceData();
+        referenceData.register(ReferenceData.ROLES, authorizationRegistry::loadRoleParents);
+        authorizationRegistry.setReferenceData(referenceData);
+
+        Timestamp validFrom = new Timestamp(System.currentTimeMillis());
+        Timestamp validUntil = new Timestamp(System.currentTimeMillis() + 86400000L);
+        authorizationRegistry.authorize(userId, parentRoleId, validFrom, validUntil);
+
+        assertFalse(authorizationRegistry.isUserInRole(userId, grandparentRoleId));
+        assertTrue(authorizationRegistry.isUserInRole(userId, parentRoleId));
+        assertTrue(authorizationRegistry.isUserInRole(userId, childRoleId));
+        assertTrue(authorizationRegistry.isUserInAllRoles(userId, List.of(parentRoleId, childRoleId)));
+        assertFalse(authorizationRegistry.isUserInAllRoles(userId, List.of(grandparentRoleId, childRoleId)));
+    }
+
     @Test
     public void testFindByIdReturnsParent() throws SQLException {
         Role parentRole = new Role();
@@ -996,4 +1036,81 @@ public class AuthorizationRegistryTest {
             databaseManager2.disconnect();
         }
     }
+
+    @Test
+    public void testResolveSessionWithHierarchyAndFunctions() throws SQLException {
+        com.github.dgdevel.core.registry.GenericRegistry genericRegistry = new com.github.dgdevel.core.registry.GenericRegistry(databaseManager.getConnection());
+
+        User user = new User();
+        user.setDisplayName("Test User");
+        user.setActive(true);
+        Long userId = userRegistry.create(user);
+
+        Role parentRole = new Role();
+        parentRole.setCode("ADMIN");
+        parentRole.setName("Administrator");
+        Long parentRoleId = authorizationRegistry.create(parentRole);
+
+        Role childRole = new Role();
+        childRole.setCode("ADMIN_READONLY");
+        childRole.setName("Read Only Admin");
+        childRole.setParentCode("ADMIN");
+        Long childRoleId = authorizationRegistry.create(childRole);
+
+        Role otherRole = new Role();
+        otherRole.setCode("GUEST");
+        otherRole.setName("Guest");
+        authorizationRegistry.create(otherRole);
+
+        com.github.dgdevel.core.model.Function adminFunc = new com.github.dgdevel.core.model.Function();
+        adminFunc.setName("Admin Console");
+        Long adminFuncId = genericRegistry.createFunction(adminFunc);
+        com.github.dgdevel.core.model.Function reportFunc = new com.github.dgdevel.core.model.Function();
+        reportFunc.setName("Reports");
+        Long reportFuncId = genericRegistry.createFunction(reportFunc);
+        authorizationRegistry.addFunctionToRole(parentRoleId, adminFuncId);
+        authorizationRegistry.addFunctionToRole(childRoleId, reportFuncId);
+
+        Timestamp validFrom = new Timestamp(System.currentTimeMillis() - 1000);
+        Timestamp validUntil = new Timestamp(System.currentTimeMillis() + 86400000L);
+        authorizationRegistry.authorize(userId, parentRoleId, validFrom, validUntil);
+
+        com.github.dgdevel.core.model.Session session = authorizationRegistry.resolveSession(userId);
+
+        assertNotNull(session);
+        assertEquals(userId, session.getUser().getId());
+        assertEquals("Test User", session.getUser().getDisplayName());
+        assertEquals(List.of("ADMIN", "ADMIN_READONLY"), session.getRoleCodes());
+        // functions of inherited child roles are not granted, as in getMenuTree
+        assertEquals(List.of(adminFuncId), session.getFunctionIds());
+    }
+
+    @Test
+    public void testResolveSessionIgnoresExpiredAuthorizations() throws SQLException {
+        User user = new User();
+        user.setDisplayName("Test User");
+        user.setActive(true);
+        Long userId = userRegistry.create(user);
+
+        Role role = new Role();
+        role.setCode("ADMIN");
+        role.setName("Administrator");
+        Long roleId = authorizationRegistry.create(role);
+
+        Timestamp validFrom = new Timestamp(System.currentTimeMillis() - 86400000L);
+        Timestamp validUntil = new Timestamp(System.currentTimeMillis() - 1000);
+        authorizationRegistry.authorize(userId, roleId, validFrom, validUntil);
+
+        com.github.dgdevel.core.model.Session session = authorizationRegistry.resolveSession(userId);
+
+        assertNotNull(session);
+        assertEquals(userId, session.getUser().getId());
+        assertTrue(session.getRoleCodes().isEmpty());
+        assertTrue(session.getFunctionIds().isEmpty());
+    }
+
+    @Test
+    public void testResolveSessionUnknownUser() throws SQLException {
+        assertNull(authorizationRegistry.resolveSession(999L));
+    }
 }
@@ -1,17 +1,23 @@
 package com.github.dgdevel.core.registry;
 
+import com.github.dgdevel.core.cache.ReferenceData;
+import com.github.dgdevel.core.common.KeysetPage;
 import com.github.dgdevel.core.common.PaginatedList;
 import com.github.dgdevel.core.common.Paginator;
 import com.github.dgdevel.core.db.DatabaseManager;
 import com.github.dgdevel.core.model.Address;
 import com.github.dgdevel.core.model.AddressType;
+import com.github.dgdevel.core.model.Role;
 import com.github.dgdevel.core.model.User;
+import com.github.dgdevel.core.model.UserProfile;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -1001,4 +1007,180 @@ public class UserRegistryTest {
         assertEquals(1, addresses.size());
         assertNull(addresses.get(0).getFullname());
     }
+
+    @Test
+    public void testGetProfilesAssemblesEveryUserInRequestOrder() throws SQLException {
+        User alice = new User();
+        alice.setDisplayName("Alice");
+        alice.setActive(true);
+        Long aliceId = userRegistry.create(alice);
+        User bob = new User();
+        bob.setDisplayName("Bob");
+        bob.setActive(true);
+        Long bobId = userRegistry.create(bob);
+
+        userRegistry.setAttribute(aliceId, "locale", "en");
+        userRegistry.setAttribute(aliceId, "theme", "dark");
+        Address address = new Address();
+        address.setAddressType(AddressType.HOME);
+        address.setCity("Springfield");
+        userRegistry.addAddress(aliceId, address);
+
+        AuthorizationRegistry authorizationRegistry = new AuthorizationRegistry(databaseManager.getConnection());
+        Role role = new Role();
+        role.setCode("PROFILE_ADMIN");
+        role.setName("Admin");
+        Long roleId = authorizationRegistry.create(role);
+        long now = System.currentTimeMillis();
+        authorizationRegistry.authorize(aliceId, roleId, new Timestamp(now - 60000), new Timestamp(now + 60000));
+        authorizationRegistry.authorize(bobId, roleId, new Timestamp(now - 120000), new Timestamp(now - 60000));
+
+        List<UserProfile> profiles = userRegistry.getProfiles(List.of(bobId, aliceId, -1L, bobId));
+
+        assertEquals(2, profiles.size());
+        UserProfile bobProfile = profiles.get(0);
+        assertEquals(bobId, bobProfile.getUser().getId());
+        assertTrue(bobProfile.getAttributes().isEmpty());
+        assertTrue(bobProfile.getAddresses().isEmpty());
+        assertTrue(bobProfile.getRoles().isEmpty());
+
+        UserProfile aliceProfile = profiles.get(1);
+        assertEquals("Alice", aliceProfile.getUser().getDisplayName());
+        assertEquals(Map.of("locale", "en", "theme", "dark"), aliceProfile.getAttributes());
+        assertEquals(1, aliceProfile.getAddresses().size());
+        assertEquals("Springfield", aliceProfile.getAddresses().get(0).getCity());
+        assertEquals(1, aliceProfile.getRoles().size());
+        assertEquals("PROFILE_ADMIN", aliceProfile.getRoles().get(0).getCode());
+
+        assertEquals(aliceId, userRegistry.getProfile(aliceId).getUser().getId());
+        assertNull(userRegistry.getProfile(-1L));
+        assertTrue(userRegistry.getProfiles(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testGetProfilesSpansChunks() throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < UserRegistry.IN_CHUNK_SIZE + 5; i++) {
+            User user = new User();
+            user.setDisplayName("User " + i);
+            user.setActive(true);
+            ids.add(userRegistry.create(user));
+        }
+        Long lastId = ids.get(ids.size() - 1);
+        userRegistry.setAttribute(lastId, "locale", "en");
+        Address address = new Address();
+        address.setAddressType(AddressType.WORK);
+        address.setCity("Shelbyville");
+        userRegistry.addAddress(lastId, address);
+        List<Long> requested = new ArrayList<>(ids);
+        requested.add(-1L);
+
+        List<UserProfile> profiles = userRegistry.getProfiles(requested);
+
+        assertEquals(ids.size(), profiles.size());
+        assertEquals("User 0", profiles.get(0).getUser().getDisplayName());
+        UserProfile last = profiles.get(profiles.size() - 1);
+        assertEquals(lastId, last.getUser().getId());
+        assertEquals(Map.of("locale", "en"), last.getAttributes());
+        assertEquals("Shelbyville", last.getAddresses().get(0).getCity());
+    }
+
+    @Test
+    public void testFindByIdsSpansChunks() throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < UserRegistry.IN_CHUNK_SIZE + 5; i++) {
+            User user = new User();
+            user.setDisplayName("User " + i);
+            user.setActive(true);
+            ids.add(userRegistry.create(user));
+        }
+        List<Long> requested = new ArrayList<>(ids);
+        Collections.reverse(requested);
+        requested.add(-1L);
+        requested.add(ids.get(0));
+
+        List<User> users = userRegistry.findByIds(requested);
+
+        assertEquals(ids.size(), users.size());
+        assertEquals(ids.get(ids.size() - 1), users.get(0).getId());
+        assertEquals("User 0", users.get(users.size() - 1).getDisplayName());
+        assertTrue(userRegistry.findByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testBulkAttributes() throws SQLException {
+        User alice = new User();
+        alice.setDisplayName("Alice");
+        alice.setActive(true);
+        Long aliceId = userRegistry.create(alice);
+        User bob = new User();
+        bob.setDisplayName("Bob");
+        bob.setActive(true);
+        Long bobId = userRegistry.create(bob);
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("locale", "en");
+        attributes.put("theme", "dark");
+        attributes.put("age", 42);
+        assertTrue(userRegistry.setAttributes(aliceId, attributes));
+        assertTrue(userRegistry.setAttributes(aliceId, Map.of("theme", "light")));
+        assertTrue(userRegistry.setAttributes(bobId, Map.of("locale", "it")));
+        assertFalse(userRegistry.setAttributes(999999L, Map.of("locale", "en")));
+
+        assertEquals(Map.of("age", "42", "locale", "en", "theme", "light"), userRegistry.getAttributes(aliceId));
+        assertTrue(userRegistry.getAttributes(999999L).isEmpty());
+
+        Map<Long, Map<String, String>> locales = userRegistry.getAttributesForUsers(List.of(aliceId, bobId, 999999L), List.of("locale"));
+        assertEquals(Map.of(aliceId, Map.of("locale", "en"), bobId, Map.of("locale", "it")), locales);
+        Map<Long, Map<String, String>> all = userRegistry.getAttributesForUsers(List.of(aliceId), null);
+        assertEquals(3, all.get(aliceId).size());
+    }
+
+    private List<Long> findAllByAttribute(String name, String value, boolean prefix) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        Long after = null;
+        do {
+            KeysetPage<User> page = userRegistry.findByAttribute(name, value, prefix, after, 2L);
+            assertTrue(page.getPage().size() <= 2);
+            for (User user : page.getPage()) {
+                ids.add(user.getId());
+            }
+            after = page.getNextAfter();
+        } while (after != null);
+        return ids;
+    }
+
+    @Test
+    public void testFindByAttributeWithAndWithoutIndex() throws SQLException {
+        String[] departments = {"sales", "sales", "sales_ops", "sales", "support", "sa%les"};
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < departments.length; i++) {
+            User user = new User();
+            user.setDisplayName("User " + i);
+            user.setActive(true);
+            Long id = userRegistry.create(user);
+            userRegistry.setAttribute(id, "department", departments[i]);
+            ids.add(id);
+        }
+
+        List<Long> sales = List.of(ids.get(0), ids.get(1), ids.get(3));
+        List<Long> salesPrefix = List.of(ids.get(0), ids.get(1), ids.get(2), ids.get(3));
+        List<Long> escapedPrefix = List.of(ids.get(5));
+        assertEquals(sales, findAllByAttribute("department", "sales", false));
+        assertEquals(salesPrefix, findAllByAttribute("department", "sales", true));
+        assertEquals(escapedPrefix, findAllByAttribute("department", "sa%", true));
+        assertTrue(findAllByAttribute("tenant", "sales", false).isEmpty());
+
+        ReferenceData referenceData = new ReferenceData();
+        List<String> indexed = List.of("department");
+        referenceData.register(ReferenceData.USER_ATTRIBUTE_INDEX, () -> userRegistry.loadAttributeIndex(indexed), "user_attributes");
+        userRegistry.setReferenceData(referenceData, indexed);
+
+        assertEquals(sales, findAllByAttribute("department", "sales", false));
+        assertEquals(salesPrefix, findAllByAttribute("department", "sales", true));
+        assertEquals(escapedPrefix, findAllByAttribute("department", "sa%", true));
+        KeysetPage<User> first = userRegistry.findByAttribute("department", "sales", false, null, null);
+        assertNull(first.getNextAfter());
+        assertEquals("User 0", first.getPage().get(0).getDisplayName());
+    }
 }
@@ -0,0 +1,114 @@
+package com.github.dgdevel.core.rpc;
+
+import com.github.dgdevel.core.config.Config;
+import com.github.dgdevel.core.db.ConnectionContext;
+import com.github.dgdevel.core.db.DatabaseManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestExecutorTest {
+    private DatabaseManager databaseManager;
+    private RequestExecutor executor;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Config config = new Config("0.0.0.0", 0, 0, "jdbc:h2:mem:testdeadline;DB_CLOSE_DELAY=-1", null, null);
+        config.setWorkerThreads(2);
+        config.setDefaultRequestTimeoutMillis(10000);
+        config.setMethodTimeouts(Map.of("audit/list", 2000L));
+        databaseManager = new DatabaseManager(config);
+        databaseManager.connect();
+        executor = new RequestExecutor(config);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdown();
+        databaseManager.cleanup();
+        databaseManager.disconnect();
+    }
+
+    @Test
+    public void testDeadlineIsTheShorterOfRequestedAndMethodDefault() {
+        long arrival = System.nanoTime();
+        assertEquals(arrival + TimeUnit.MILLISECONDS.toNanos(2000), executor.deadlineNanos("audit/list", arrival, null));
+        assertEquals(arrival + TimeUnit.MILLISECONDS.toNanos(500), executor.deadlineNanos("audit/list", arrival, 500));
+        assertEquals(arrival + TimeUnit.MILLISECONDS.toNanos(2000), executor.deadlineNanos("audit/list", arrival, 60000));
+        assertEquals(arrival + TimeUnit.MILLISECONDS.toNanos(10000), executor.deadlineNanos("user/findBy", arrival, null));
+    }
+
+    @Test
+    public void testExpiredRequestIsDroppedWithoutRunning() {
+        long arrival = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        assertThrows(DeadlineExceededException.class,
+            () -> executor.run(executor.deadlineNanos("user/findBy", arrival, 100), () -> ran.getAndSet(true)));
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void testRunningQueryIsCancelledAtDeadline() {
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> executor.run(
+            executor.deadlineNanos("user/findBy", start, 300),
+            () -> {
+                try (PreparedStatement stmt = ConnectionContext.resolve(databaseManager.getConnection())
+                        .prepareStatement("SELECT SUM(X) FROM SYSTEM_RANGE(1, 100000000000)");
+                     ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testNoDeadlineRunsDirectly() throws Exception {
+        Config config = new Config("0.0.0.0", 0, 0, "jdbc:h2:mem:unused", null, null);
+        RequestExecutor unbounded = new RequestExecutor(config);
+        try {
+            assertEquals(0, unbounded.deadlineNanos("user/findBy", System.nanoTime(), null));
+            assertEquals("ok", unbounded.run(0, () -> "ok"));
+        } finally {
+            unbounded.shutdown();
+        }
+    }
+
+    @Test
+    public void testDrainRefusesNewRequestsAndWaitsForAccepted() throws Exception {
+        long acceptedArrival = System.nanoTime();
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        executor.submitAfter(CompletableFuture.completedFuture(null), () -> {
+            started.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.set(true);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.startDraining();
+        assertTrue(executor.isDraining());
+        executor.checkAccepting(acceptedArrival);
+        assertThrows(ShuttingDownException.class, () -> executor.checkAccepting(System.nanoTime()));
+
+        assertFalse(executor.awaitIdle(10));
+        assertTrue(executor.awaitIdle(5000));
+        assertTrue(finished.get());
+        assertEquals(0, executor.getActive());
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.dgdevel.core.rpc;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RpcMethodTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static RpcMethod method() {
+        List<RpcMethod> methods = new ArrayList<>();
+        new RpcMethod.Builder("test/method", "Test method", false, "Test error: ", methods::add).handle(
+            Param.required("id", ParamType.NUMBER, "Id"),
+            Param.optional("flag", ParamType.BOOLEAN, "Flag"),
+            Param.optional("ids", ParamType.NUMBER_ARRAY, "Ids"),
+            (id, flag, ids) -> id + ":" + flag + ":" + ids);
+        return methods.get(0);
+    }
+
+    private JsonParser parser(String json) throws Exception {
+        JsonParser parser = objectMapper.createParser(json);
+        parser.nextToken();
+        return parser;
+    }
+
+    @Test
+    public void testReadsPositionalJsonParams() throws Exception {
+        RpcMethod method = method();
+        Object[] args = method.readParams(parser("[\"42\", true, [1, \"2\"]]"));
+        assertEquals("42:true:[1, 2]", method.invoke(args));
+    }
+
+    @Test
+    public void testMissingRequiredParamIsInvalid() throws Exception {
+        RpcMethod method = method();
+        InvalidParamsException e = assertThrows(InvalidParamsException.class, () -> method.readParams(parser("[]")));
+        assertTrue(e.getMessage().contains("'id'"));
+        assertThrows(InvalidParamsException.class, method::readParams);
+    }
+
+    @Test
+    public void testInvalidJsonParamSkipsRemainingParams() throws Exception {
+        RpcMethod method = method();
+        JsonParser parser = parser("{\"params\": [\"abc\", {\"a\": [1]}, [3]], \"id\": 7}");
+        assertEquals("params", parser.nextFieldName());
+        parser.nextToken();
+        assertThrows(InvalidParamsException.class, () -> method.readParams(parser));
+        assertEquals("id", parser.nextFieldName());
+        assertEquals(JsonToken.VALUE_NUMBER_INT, parser.nextToken());
+    }
+
+    @Test
+    public void testReadsMsgPackParamsAndConsumesInvalidOnes() throws Exception {
+        RpcMethod method = method();
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            packer.packArrayHeader(3);
+            packer.packString("5");
+            packer.packNil();
+            packer.packArrayHeader(2).packLong(1).packString("2");
+            packer.packArrayHeader(2);
+            packer.packString("abc");
+            packer.packMapHeader(1).packString("a").packLong(1);
+            packer.packString("next");
+
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(packer.toByteArray());
+            assertEquals("5:null:[1, 2]", method.invoke(method.readParams(unpacker)));
+            assertThrows(InvalidParamsException.class, () -> method.readParams(unpacker));
+            assertEquals("next", unpacker.unpackString());
+        }
+    }
+
+    @Test
+    public void testObjectParamFromMsgPackMap() throws Exception {
+        ParamType<Payload> type = ParamType.object(Payload.class);
+        try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+            packer.packMapHeader(2);
+            packer.packString("name").packString("x");
+            packer.packString("size").packInt(3);
+
+            Payload payload = type.read(MessagePack.newDefaultUnpacker(packer.toByteArray()));
+            assertEquals("x", payload.name);
+            assertEquals(3, payload.size);
+        }
+    }
+
+    public static class Payload {
+        public String name;
+        public int size;
+    }
+}
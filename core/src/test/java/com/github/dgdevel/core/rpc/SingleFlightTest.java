@@ -0,0 +1,137 @@
+package com.github.dgdevel.core.rpc;
+
+import com.github.dgdevel.core.cache.TableVersions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+    private static final List<String> TABLES = List.of("translations");
+
+    private static void block(CountDownLatch release) {
+        try {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Starts a leader blocked in its work, so that later calls find it in flight.
+     */
+    private static Future<SharedResult> lead(ExecutorService executor, SingleFlight singleFlight, Object[] args,
+                                             CountDownLatch release, AtomicInteger runs) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        Future<SharedResult> leader = executor.submit(() -> singleFlight.run("generic/translate", args, TABLES, 0, () -> {
+            running.countDown();
+            block(release);
+            return "run " + runs.incrementAndGet();
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        return leader;
+    }
+
+    @Test
+    public void testIdenticalReadsShareOneExecution() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(new TableVersions());
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object[] args = {"welcome", "en"};
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SharedResult> leader = lead(executor, singleFlight, args, release, runs);
+            List<Future<SharedResult>> joiners = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                joiners.add(executor.submit(() -> singleFlight.run("generic/translate", new Object[]{"welcome", "en"}, TABLES, 0,
+                    () -> "run " + runs.incrementAndGet())));
+            }
+            while (singleFlight.getJoined().getOrDefault("generic/translate", 0L) < 10) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            SharedResult shared = leader.get();
+            assertEquals("run 1", shared.getValue());
+            AtomicInteger encodings = new AtomicInteger();
+            for (Future<SharedResult> joiner : joiners) {
+                assertSame(shared, joiner.get());
+                shared.encoded("json", value -> {
+                    encodings.incrementAndGet();
+                    return ("\"" + value + "\"").getBytes(StandardCharsets.UTF_8);
+                });
+            }
+            assertEquals(1, runs.get());
+            assertEquals(1, encodings.get());
+        }
+        assertEquals(Map.of("generic/translate", 10L), singleFlight.getJoined());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void testDoesNotJoinExecutionOlderThanAWrite() throws Exception {
+        TableVersions tableVersions = new TableVersions();
+        SingleFlight singleFlight = new SingleFlight(tableVersions);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object[] args = {"welcome", "en"};
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SharedResult> leader = lead(executor, singleFlight, args, release, runs);
+
+            // the table changed after the execution started
+            tableVersions.bump(TABLES);
+            assertEquals("run 1", singleFlight.run("generic/translate", args, TABLES, 0, () -> "run " + runs.incrementAndGet()).getValue());
+
+            // the caller's connection wrote after the execution started
+            Future<SharedResult> fresh = lead(executor, singleFlight, args, release, runs);
+            Thread.sleep(2);
+            long lastWrite = System.currentTimeMillis();
+            assertEquals("run 2", singleFlight.run("generic/translate", args, TABLES, lastWrite, () -> "run " + runs.incrementAndGet()).getValue());
+
+            release.countDown();
+            assertNotSame(fresh.get(), leader.get());
+        }
+        assertEquals(4, runs.get());
+        assertTrue(singleFlight.getJoined().isEmpty());
+    }
+
+    @Test
+    public void testFailedExecutionIsNotShared() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(new TableVersions());
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object[] args = {"welcome", "en"};
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SharedResult> leader = executor.submit(() -> singleFlight.run("generic/translate", args, TABLES, 0, () -> {
+                running.countDown();
+                block(release);
+                throw new SQLException("Query timed out");
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            CompletableFuture<SharedResult> joiner = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return singleFlight.run("generic/translate", args, TABLES, 0, () -> "recomputed");
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, executor);
+            Thread.sleep(20);
+            release.countDown();
+
+            assertEquals("recomputed", joiner.get().getValue());
+            Exception e = assertThrows(Exception.class, leader::get);
+            assertInstanceOf(SQLException.class, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.dgdevel.core.search;
+
+import com.github.dgdevel.core.cache.TableVersions;
+import com.github.dgdevel.core.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserSearchIndexTest {
+
+    private static List<Long> ids(List<User> users) {
+        List<Long> ids = new ArrayList<>();
+        for (User user : users) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    private static UserSearchIndex index() throws Exception {
+        UserSearchIndex index = new UserSearchIndex(builder -> {
+            builder.addUser(1, "Alice Smith", true);
+            builder.addUser(2, "Alicia Keys", true);
+            builder.addUser(3, "Bob Alison", false);
+            builder.addUser(4, "Al", true);
+            builder.addUser(5, "Carol White", true);
+            builder.addEmail(5, 50, "alice.white@example.com");
+            builder.addEmail(42, 51, "orphan@example.com");
+        });
+        index.rebuild();
+        return index;
+    }
+
+    @Test
+    public void testRanksPrefixMatchesOnNamesAndEmails() throws Exception {
+        UserSearchIndex index = index();
+        assertEquals(5, index.size());
+
+        // exact first word, then first-word prefixes by name length, then later words, then emails
+        assertEquals(List.of(1L, 2L, 3L, 5L), ids(index.search("ali", 10)));
+        assertEquals(List.of(1L, 5L), ids(index.search("Alice", 10)));
+        assertEquals(List.of(4L, 1L), ids(index.search("al", 2)));
+        assertEquals(List.of(1L), ids(index.search("smi ali", 10)));
+        assertEquals(List.of(5L), ids(index.search("alice.w", 10)));
+        assertEquals(List.of(5L), ids(index.search("example", 10)));
+        assertFalse(index.search("bob", 10).get(0).isActive());
+        assertTrue(index.search("zed", 10).isEmpty());
+        assertTrue(index.search("   ", 10).isEmpty());
+    }
+
+    @Test
+    public void testPunctuatedQueriesUseTheIndexedWords() throws Exception {
+        UserSearchIndex index = new UserSearchIndex(builder -> {
+            builder.addUser(1, "Anna Smith-Jones", true);
+            builder.addUser(2, "Liam O'Brien", true);
+            builder.addUser(3, "Jane Roe", true);
+            builder.addEmail(3, 30, "jane.doe@example.com");
+            builder.addUser(4, "Doe Jones", true);
+        });
+        index.rebuild();
+
+        assertEquals(List.of(1L), ids(index.search("smith-jones", 10)));
+        assertEquals(List.of(1L), ids(index.search("Smith-Jo", 10)));
+        assertEquals(List.of(2L), ids(index.search("o'brien", 10)));
+        assertEquals(List.of(2L), ids(index.search("O\u2019Bri", 10)));
+        assertEquals(List.of(3L), ids(index.search("jane.doe", 10)));
+        assertEquals(List.of(3L), ids(index.search("jane.doe@example.com", 10)));
+        assertEquals(List.of(3L), ids(index.search("jane doe", 10)));
+        assertTrue(index.search("-- '", 10).isEmpty());
+    }
+
+    @Test
+    public void testIncrementalChangesSurviveRebuild() throws Exception {
+        List<UserSearchIndex> holder = new ArrayList<>();
+        UserSearchIndex index = new UserSearchIndex(builder -> {
+            builder.addUser(1, "Alice Smith", true);
+            // a write that commits while the index is loading, after its rows were read
+            holder.get(0).putUser(7, "Dave Grant", true);
+        });
+        holder.add(index);
+        index.rebuild();
+        assertEquals(List.of(7L), ids(index.search("dav", 10)));
+
+        index.putUser(1, "Alice Jones", true);
+        assertTrue(index.search("smith", 10).isEmpty());
+        assertEquals(List.of(1L), ids(index.search("jon", 10)));
+        index.setActive(1, false);
+        assertFalse(index.search("alice", 10).get(0).isActive());
+    }
+
+    @Test
+    public void testRebuildsOnRemoteWrites() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        UserSearchIndex index = new UserSearchIndex(builder -> {
+            int load = loads.incrementAndGet();
+            builder.addUser(load, "User " + load, true);
+        });
+        TableVersions tableVersions = new TableVersions();
+        index.watch(tableVersions, 0);
+        index.rebuild();
+
+        tableVersions.bumpRemote(Set.of("roles"));
+        tableVersions.bumpRemote(Set.of("users"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (index.search("user", 10).isEmpty() || index.search("user", 10).get(0).getId() != 2L) {
+            assertTrue(System.currentTimeMillis() < deadline, "index was not rebuilt");
+            Thread.sleep(10);
+        }
+        assertEquals(2, loads.get());
+        index.close();
+    }
+
+    @Test
+    public void testShortWordsMatchWholeWordsOnly() throws Exception {
+        UserSearchIndex index = new UserSearchIndex(builder -> {
+            builder.addUser(1, "A Smith", true);
+            builder.addUser(2, "Alice Smith", true);
+            for (int i = 0; i < UserSearchIndex.MAX_CANDIDATES + 1000; i++) {
+                builder.addUser(100 + i, "Userx" + i, true);
+            }
+            builder.addUser(99, "User", true);
+        });
+        index.rebuild();
+
+        assertEquals(List.of(1L), ids(index.search("a", 10)));
+        assertEquals(List.of(1L, 2L), ids(index.search("a smi", 10)));
+        // the exact word is scored before the candidates run out
+        assertEquals(List.of(99L), ids(index.search("user", 1)));
+        assertEquals(10, index.search("user", 10).size());
+    }
+
+    @Test
+    public void testReportsOfOneWriteRebuildOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        UserSearchIndex index = new UserSearchIndex(builder -> loads.incrementAndGet());
+        TableVersions tableVersions = new TableVersions();
+        index.watch(tableVersions, 200);
+        index.rebuild();
+
+        // the cluster bus and the change poller both report the same write
+        tableVersions.bumpRemote(Set.of("users"));
+        Thread.sleep(50);
+        tableVersions.bumpRemote(Set.of("users"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loads.get() < 2) {
+            assertTrue(System.currentTimeMillis() < deadline, "index was not rebuilt");
+            Thread.sleep(10);
+        }
+        Thread.sleep(400);
+        assertEquals(2, loads.get());
+        index.close();
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.dgdevel.core.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dgdevel.core.config.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionTest {
+    private final int jsonRpcPort = 18180;
+    private final int msgPackPort = 18181;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Server server;
+
+    @AfterEach
+    public void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    private Config config() {
+        return new Config("0.0.0.0", jsonRpcPort, msgPackPort, "jdbc:h2:mem:testadmission", null, null);
+    }
+
+    private JsonNode post(String body, String principal) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + jsonRpcPort).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (principal != null) {
+            connection.setRequestProperty("X-Principal", principal);
+        }
+        connection.setDoOutput(true);
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private static String ping(int id) {
+        return "{\"jsonrpc\": \"2.0\", \"method\": \"generic/ping\", \"params\": [], \"id\": " + id + "}";
+    }
+
+    @Test
+    public void testPerIpRateLimitShedsWithJsonRpcError() throws Exception {
+        Config config = config();
+        config.setRateLimitPerIp(0.001);
+        config.setRateLimitPerIpBurst(2);
+        server = new Server(config);
+        server.start();
+
+        assertNotNull(post(ping(1), null).get("result"));
+        assertNotNull(post(ping(2), null).get("result"));
+        JsonNode rejected = post(ping(3), null);
+        assertEquals(AdmissionController.RATE_LIMITED, rejected.get("error").get("code").asInt());
+        assertEquals(3, rejected.get("id").asInt());
+    }
+
+    @Test
+    public void testBatchIsChargedPerCallAndRejectedPerId() throws Exception {
+        Config config = config();
+        config.setRateLimitPerPrincipal(0.001);
+        config.setRateLimitPerPrincipalBurst(3);
+        server = new Server(config);
+        server.start();
+
+        JsonNode rejected = post("[" + ping(1) + "," + ping(2) + "," + ping(3) + "," + ping(4) + "]", "svc-a");
+        assertEquals(4, rejected.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 1, rejected.get(i).get("id").asInt());
+            assertEquals(AdmissionController.RATE_LIMITED, rejected.get(i).get("error").get("code").asInt());
+        }
+        assertNotNull(post(ping(5), "svc-a").get("result"));
+        assertNotNull(post(ping(6), "svc-b").get("result"));
+        assertNotNull(post(ping(7), null).get("result"));
+    }
+
+    @Test
+    public void testMsgPackRejectionKeepsConnectionOpen() throws Exception {
+        Config config = config();
+        config.setRateLimitPerPrincipal(0.001);
+        config.setRateLimitPerPrincipalBurst(1);
+        server = new Server(config);
+        server.start();
+
+        try (Socket socket = new Socket("localhost", msgPackPort);
+             MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(socket.getInputStream())) {
+            OutputStream out = socket.getOutputStream();
+            for (int id = 1; id <= 2; id++) {
+                try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+                    packer.packArrayHeader(5);
+                    packer.packString("2.0");
+                    packer.packString("generic/ping");
+                    packer.packArrayHeader(0);
+                    packer.packInt(id);
+                    packer.packMapHeader(2);
+                    packer.packString("keep_alive").packBoolean(true);
+                    packer.packString("principal").packString("svc-a");
+                    out.write(packer.toByteArray());
+                }
+            }
+            out.flush();
+
+            assertEquals(4, unpacker.unpackArrayHeader());
+            unpacker.skipValue();
+            assertTrue(unpacker.unpackValue().isStringValue());
+            assertTrue(unpacker.unpackValue().isNilValue());
+            assertEquals(1, unpacker.unpackInt());
+
+            assertEquals(4, unpacker.unpackArrayHeader());
+            unpacker.skipValue();
+            assertTrue(unpacker.unpackValue().isNilValue());
+            assertEquals(2, unpacker.unpackArrayHeader());
+            assertEquals(AdmissionController.RATE_LIMITED, unpacker.unpackInt());
+            unpacker.skipValue();
+            assertEquals(2, unpacker.unpackInt());
+        }
+    }
+
+    @Test
+    public void testMethodConcurrencyAndGlobalInFlight() {
+        Config config = config();
+        config.setMaxInFlight(2);
+        config.setMethodConcurrency(Map.of("user/findBy", 1));
+        AdmissionController controller = new AdmissionController(config);
+
+        AdmissionController.Ticket first = controller.admit("10.0.0.1", null, List.of("user/findBy"));
+        AdmissionException busy = assertThrows(AdmissionException.class,
+            () -> controller.admit("10.0.0.1", null, List.of("user/findBy")));
+        assertEquals(AdmissionController.METHOD_BUSY, busy.getCode());
+        assertEquals(1, controller.getInFlight());
+
+        AdmissionController.Ticket second = controller.admit("10.0.0.2", null, List.of("generic/ping"));
+        AdmissionException overloaded = assertThrows(AdmissionException.class,
+            () -> controller.admit("10.0.0.3", null, List.of("generic/ping")));
+        assertEquals(AdmissionController.OVERLOADED, overloaded.getCode());
+
+        first.release();
+        first.release();
+        second.release();
+        assertEquals(0, controller.getInFlight());
+        controller.admit("10.0.0.1", null, List.of("user/findBy")).release();
+        assertEquals(Map.of("rate_limited", 0L, "method_busy", 1L, "overloaded", 1L), controller.getRejected());
+    }
+
+    @Test
+    public void testPrincipalBucketsKeepTheMostRecentlySeen() {
+        Config config = config();
+        config.setRateLimitPerPrincipal(0.01);
+        config.setRateLimitPerPrincipalBurst(1);
+        AdmissionController controller = new AdmissionController(config);
+
+        controller.admit(null, "steady", List.of("generic/ping")).release();
+        for (int i = 0; i < 20000; i++) {
+            controller.admit(null, "rotating-" + i, List.of("generic/ping")).release();
+            if (i % 1000 == 0) {
+                assertThrows(AdmissionException.class, () -> controller.admit(null, "steady", List.of("generic/ping")));
+            }
+        }
+        assertEquals(10000, controller.getTrackedPrincipals());
+        assertEquals(20, controller.getRejected().get("rate_limited"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.dgdevel.core.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dgdevel.core.config.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HealthTest {
+    private final int jsonRpcPort = 18380;
+    private final int msgPackPort = 18381;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Server server;
+
+    @AfterEach
+    public void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    private void startServer() throws Exception {
+        Config config = new Config("0.0.0.0", jsonRpcPort, msgPackPort, "jdbc:h2:mem:testhealth", null, null);
+        config.setHealthCheckMillis(100);
+        server = new Server(config);
+        server.start();
+    }
+
+    private HttpURLConnection get(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + jsonRpcPort + path).openConnection();
+        connection.setRequestMethod("GET");
+        return connection;
+    }
+
+    private JsonNode body(HttpURLConnection connection) throws Exception {
+        try (InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private void awaitReady() throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!server.getHealthMonitor().isReady()) {
+            assertTrue(System.currentTimeMillis() < deadline, "server did not become ready");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void testLiveAndReadyOverHttp() throws Exception {
+        startServer();
+        awaitReady();
+
+        HttpURLConnection live = get("/health/live");
+        assertEquals(200, live.getResponseCode());
+        assertEquals("no-store", live.getHeaderField("Cache-Control"));
+        assertEquals("UP", body(live).get("status").asText());
+
+        HttpURLConnection ready = get("/health/ready");
+        assertEquals(200, ready.getResponseCode());
+        JsonNode readyBody = body(ready);
+        assertEquals("UP", readyBody.get("status").asText());
+        assertTrue(readyBody.get("database").get("up").asBoolean());
+        assertTrue(readyBody.get("pool").has("saturation"));
+        assertFalse(readyBody.get("executor").get("draining").asBoolean());
+    }
+
+    @Test
+    public void testReadyReportsDownWhileDraining() throws Exception {
+        startServer();
+        awaitReady();
+        server.getRequestExecutor().startDraining();
+
+        HttpURLConnection ready = get("/health/ready");
+        assertEquals(503, ready.getResponseCode());
+        JsonNode readyBody = body(ready);
+        assertEquals("DOWN", readyBody.get("status").asText());
+        assertTrue(readyBody.get("executor").get("draining").asBoolean());
+
+        assertEquals(200, get("/health/live").getResponseCode());
+    }
+
+    @Test
+    public void testReadyOverMsgPack() throws Exception {
+        startServer();
+        awaitReady();
+
+        try (Socket socket = new Socket("localhost", msgPackPort);
+             MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(socket.getInputStream())) {
+            OutputStream out = socket.getOutputStream();
+            try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+                packer.packArrayHeader(4);
+                packer.packString("2.0");
+                packer.packString(HealthMonitor.READY);
+                packer.packArrayHeader(0);
+                packer.packInt(1);
+                out.write(packer.toByteArray());
+            }
+            out.flush();
+
+            assertEquals(4, unpacker.unpackArrayHeader());
+            unpacker.skipValue();
+            Value result = unpacker.unpackValue();
+            assertTrue(result.isMapValue());
+            assertEquals("UP", result.asMapValue().map().get(ValueFactory.newString("status")).asStringValue().asString());
+            assertTrue(unpacker.unpackValue().isNilValue());
+            assertEquals(1, unpacker.unpackInt());
+        }
+    }
+}
@@ -70,6 +70,162 @@ public class ServerTest {
         assertTrue(jsonResponse.get("result").asText().matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\.\\d+"));
     }
 
+    @Test
+    public void testBatchRequest() throws Exception {
+        String request = """
+            [
+                {"jsonrpc": "2.0", "method": "generic/setConfigValue", "params": ["batch", "key", "value"], "id": 1},
+                {"jsonrpc": "2.0", "method": "invalid/method", "params": [], "id": 2},
+                {"jsonrpc": "2.0", "method": "generic/getConfigValue", "params": ["batch", "key"], "id": 3}
+            ]
+            """;
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + testPort).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(request.getBytes());
+            os.flush();
+        }
+
+        assertEquals(200, connection.getResponseCode());
+        JsonNode jsonResponse = objectMapper.readTree(connection.getInputStream());
+        assertTrue(jsonResponse.isArray());
+        assertEquals(3, jsonResponse.size());
+        assertEquals(1, jsonResponse.get(0).get("id").asInt());
+        assertEquals(-32601, jsonResponse.get(1).get("error").get("code").asInt());
+        assertEquals("value", jsonResponse.get(2).get("result").asText());
+    }
+
+    @Test
+    public void testBatchWithNonObjectElements() throws Exception {
+        JsonNode jsonResponse = post("""
+            [
+                1,
+                {"jsonrpc": "2.0", "method": "generic/setConfigValue", "params": ["batch", "other", "value"], "id": 1},
+                ["nested", {"id": 9}],
+                {"jsonrpc": "2.0", "method": "generic/getConfigValue", "params": ["batch", "other"], "id": 2}
+            ]
+            """);
+        assertTrue(jsonResponse.isArray());
+        assertEquals(4, jsonResponse.size());
+        assertEquals(-32600, jsonResponse.get(0).get("error").get("code").asInt());
+        assertEquals(1, jsonResponse.get(1).get("id").asInt());
+        assertEquals(-32600, jsonResponse.get(2).get("error").get("code").asInt());
+        assertEquals("value", jsonResponse.get(3).get("result").asText());
+    }
+
+    @Test
+    public void testGetProfilesRejectsTooManyIds() throws Exception {
+        StringBuilder ids = new StringBuilder();
+        for (int i = 1; i <= 1001; i++) {
+            ids.append(i == 1 ? "" : ",").append(i);
+        }
+        JsonNode response = post("""
+            {"jsonrpc": "2.0", "method": "user/getProfiles", "params": [[%s]], "id": 1}
+            """.formatted(ids));
+        assertEquals(-32602, response.get("error").get("code").asInt());
+
+        JsonNode empty = post("""
+            {"jsonrpc": "2.0", "method": "user/getProfiles", "params": [[-1, -2]], "id": 2}
+            """);
+        assertEquals(0, empty.get("result").size());
+    }
+
+    @Test
+    public void testGetProfileDropsRoleOnceAuthorizationExpires() throws Exception {
+        long userId = post("""
+            {"jsonrpc": "2.0", "method": "user/create", "params": [{"display_name": "Expiring Holder", "active": true}], "id": 1}
+            """).get("result").get("id").asLong();
+        long roleId = post("""
+            {"jsonrpc": "2.0", "method": "authorization/createRole", "params": [{"code": "expiring_profile", "name": "Expiring"}], "id": 2}
+            """).get("result").get("id").asLong();
+        long now = System.currentTimeMillis();
+        post("""
+            {"jsonrpc": "2.0", "method": "authorization/authorize", "params": [%d, %d, %d, %d], "id": 3}
+            """.formatted(userId, roleId, now - 60000, now + 1500));
+
+        String getProfile = """
+            {"jsonrpc": "2.0", "method": "user/getProfile", "params": [%d], "id": 4}
+            """.formatted(userId);
+        String getProfiles = """
+            {"jsonrpc": "2.0", "method": "user/getProfiles", "params": [[%d]], "id": 5}
+            """.formatted(userId);
+        JsonNode before = post(getProfile).get("result").get("roles");
+        assertEquals(1, before.size());
+        assertEquals("expiring_profile", before.get(0).get("code").asText());
+        assertEquals(1, post(getProfiles).get("result").get(0).get("roles").size());
+
+        Thread.sleep(Math.max(0, now + 2000 - System.currentTimeMillis()));
+        assertEquals(0, post(getProfile).get("result").get("roles").size());
+        assertEquals(0, post(getProfiles).get("result").get(0).get("roles").size());
+    }
+
+    @Test
+    public void testSetAttributesTakesStringMap() throws Exception {
+        long id = post("""
+            {"jsonrpc": "2.0", "method": "user/create", "params": [{"display_name": "Attribute Holder", "active": true}], "id": 1}
+            """).get("result").get("id").asLong();
+
+        JsonNode set = post("""
+            {"jsonrpc": "2.0", "method": "user/setAttributes", "params": [%d, {"locale": "en", "age": 42}], "id": 2}
+            """.formatted(id));
+        assertTrue(set.get("result").get("success").asBoolean());
+        JsonNode attributes = post("""
+            {"jsonrpc": "2.0", "method": "user/getAttributes", "params": [%d], "id": 3}
+            """.formatted(id)).get("result");
+        assertEquals("en", attributes.get("locale").asText());
+        assertEquals("42", attributes.get("age").asText());
+
+        JsonNode invalid = post("""
+            {"jsonrpc": "2.0", "method": "user/setAttributes", "params": [%d, ["locale"]], "id": 4}
+            """.formatted(id));
+        assertEquals(-32602, invalid.get("error").get("code").asInt());
+    }
+
+    @Test
+    public void testAuditLogListRejectsMalformedInstant() throws Exception {
+        JsonNode response = post("""
+            {"jsonrpc": "2.0", "method": "audit/list", "params": [{"pageNumber": 1, "pageSize": 10, "filters": {"instant_from": "yesterday"}}], "id": 1}
+            """);
+        assertEquals(-32602, response.get("error").get("code").asInt());
+    }
+
+    private JsonNode post(String request) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + testPort).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(request.getBytes());
+        }
+        assertEquals(200, connection.getResponseCode());
+        return objectMapper.readTree(connection.getInputStream());
+    }
+
+    @Test
+    public void testSearchFindsUserCreatedThroughRpc() throws Exception {
+        JsonNode created = post("""
+            {"jsonrpc": "2.0", "method": "user/create", "params": [{"display_name": "Zebulon Quixote", "active": true}], "id": 1}
+            """);
+        long id = created.get("result").get("id").asLong();
+
+        JsonNode found = post("""
+            {"jsonrpc": "2.0", "method": "user/search", "params": ["quix zeb"], "id": 2}
+            """);
+        assertEquals(1, found.get("result").size());
+        assertEquals(id, found.get("result").get(0).get("id").asLong());
+
+        post("""
+            {"jsonrpc": "2.0", "method": "user/update", "params": [{"id": %d, "display_name": "Zebulon Marsh", "active": true}], "id": 3}
+            """.formatted(id));
+        assertEquals(0, post("""
+            {"jsonrpc": "2.0", "method": "user/search", "params": ["quix"], "id": 4}
+            """).get("result").size());
+    }
+
     @Test
     public void testInvalidMethod() throws Exception {
         String request = """
@@ -1140,4 +1296,25 @@ public class ServerTest {
         assertEquals(0, jsonResponse.get("result").get("totalCount").asInt());
         assertEquals(0, jsonResponse.get("result").get("page").size());
     }
+
+    @Test
+    public void testSchemaEtagRevalidation() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + testPort + "/schema").openConnection();
+        connection.setRequestMethod("GET");
+        assertEquals(200, connection.getResponseCode());
+        String etag = connection.getHeaderField("ETag");
+        assertNotNull(etag);
+        connection.getInputStream().readAllBytes();
+
+        HttpURLConnection revalidation = (HttpURLConnection) new URL("http://localhost:" + testPort + "/schema").openConnection();
+        revalidation.setRequestMethod("GET");
+        revalidation.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, revalidation.getResponseCode());
+        assertEquals(etag, revalidation.getHeaderField("ETag"));
+
+        HttpURLConnection stale = (HttpURLConnection) new URL("http://localhost:" + testPort + "/schema").openConnection();
+        stale.setRequestMethod("GET");
+        stale.setRequestProperty("If-None-Match", "\"stale\"");
+        assertEquals(200, stale.getResponseCode());
+    }
 }